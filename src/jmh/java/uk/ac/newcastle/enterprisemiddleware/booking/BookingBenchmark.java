@@ -0,0 +1,233 @@
+package uk.ac.newcastle.enterprisemiddleware.booking;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
+import uk.ac.newcastle.enterprisemiddleware.hotel.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.util.BenchmarkSupport;
+import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.validation.ConstraintViolationException;
+import javax.validation.ValidationException;
+import javax.ws.rs.core.Response;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * <p>Measures {@link BookingValidator#validateBooking} and the create and find methods of {@link BookingRepository}
+ * against an in-memory H2 database holding {@link #DAYS} days of bookings for each of {@link #HOTELS} hotels.</p>
+ *
+ * <p>The {@link HotelAvailabilityIndex} is loaded from the database once, as at start-up; the benchmarks do not book
+ * through it.</p>
+ *
+ * <p>{@link #rejectTakenBooking} and {@link #rejectTakenBookingWithStackTraces} compare the conflict path of a double
+ * booking with the stackless exceptions it now throws and with exceptions filling in their stack traces, as they did
+ * before. Both run {@link #REQUEST_DEPTH} frames down, since the cost of a stack trace grows with the depth of the
+ * stack.</p>
+ *
+ * @author Howie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingBenchmark {
+
+    static final int HOTELS = 20;
+
+    static final int DAYS = 50;
+
+    static final LocalDate FIRST_DAY = LocalDate.now().plusYears(1);
+
+    /** Roughly the number of frames below the validator in a request: executor, RESTEasy and interceptor frames. */
+    static final int REQUEST_DEPTH = 40;
+
+    EntityManagerFactory emf;
+    EntityManager em;
+    BookingRepository crud;
+    BookingValidator validator;
+
+    long[] hotelIds = new long[HOTELS];
+    Long customerId;
+
+    Booking free;
+    Booking taken;
+    Booking invalid;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        emf = BenchmarkSupport.entityManagerFactory("booking");
+        em = emf.createEntityManager();
+        crud = new BookingRepository();
+        crud.log = BenchmarkSupport.logger(BookingRepository.class);
+        crud.em = em;
+        crud.batchSize = 50;
+        HotelAvailabilityIndex availabilityIndex = new HotelAvailabilityIndex();
+        availabilityIndex.log = BenchmarkSupport.logger(HotelAvailabilityIndex.class);
+        availabilityIndex.crud = crud;
+        validator = new BookingValidator();
+        validator.validator = BenchmarkSupport.validator();
+        validator.crud = crud;
+        validator.availabilityIndex = availabilityIndex;
+        validator.registry = new SimpleMeterRegistry();
+        validator.init();
+
+        Customer customer = new Customer("Jane", "Doe", "jane@example.com", "(0201) 222-3333");
+        customerId = BenchmarkSupport.inTransaction(em, () -> {
+            em.persist(customer);
+            return customer.getId();
+        });
+        for (int i = 0; i < HOTELS; i++) {
+            Hotel hotel = new Hotel();
+            hotel.setHotelName("Hotel " + i);
+            hotel.setPostcode("NE1" + String.format("%03d", i));
+            hotel.setPhoneNumber(String.format("(0201) 333-%04d", i));
+            hotelIds[i] = BenchmarkSupport.inTransaction(em, () -> {
+                em.persist(hotel);
+                return hotel.getId();
+            });
+            for (int day = 0; day < DAYS; day++) {
+                Booking booking = booking(hotelIds[i], day);
+                BenchmarkSupport.inTransaction(em, () -> crud.create(booking));
+            }
+        }
+        BenchmarkSupport.inTransaction(em, () -> {
+            availabilityIndex.onStart(null);
+            return null;
+        });
+        free = booking(hotelIds[0], DAYS);
+        taken = booking(hotelIds[0], DAYS / 2);
+        invalid = new Booking(null, customerId, Date.valueOf(LocalDate.now().minusDays(1)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        emf.close();
+    }
+
+    Booking booking(Long hotelId, int day) {
+        return new Booking(hotelId, customerId, Date.valueOf(FIRST_DAY.plusDays(day)));
+    }
+
+    static Map<String, String> reasons() {
+        Map<String, String> responseObj = new HashMap<>();
+        responseObj.put("hotelAndDate", "That hotelAndDate is already used, please use a unique hotelAndDate");
+        return responseObj;
+    }
+
+    static <T> T atRequestDepth(int frames, Supplier<T> work) {
+        return frames == 0 ? work.get() : atRequestDepth(frames - 1, work);
+    }
+
+    /**
+     * <p>A Booking on a free date: bean validation plus the availability check.</p>
+     */
+    @Benchmark
+    public Booking validateFreeBooking() {
+        validator.validateBooking(free);
+        return free;
+    }
+
+    /**
+     * <p>A Booking on a date the hotel is already booked.</p>
+     */
+    @Benchmark
+    public UniqueHotelAndDateException validateTakenBooking() {
+        try {
+            validator.validateBooking(taken);
+            throw new IllegalStateException("Booking should be taken");
+        } catch (UniqueHotelAndDateException e) {
+            return e;
+        }
+    }
+
+    /**
+     * <p>A Booking on a date the hotel is already booked, rejected as {@code BookingRestService} does: the
+     * UniqueHotelAndDateException thrown by the validator becomes a 409 RestServiceException.</p>
+     */
+    @Benchmark
+    public RestServiceException rejectTakenBooking() {
+        return atRequestDepth(REQUEST_DEPTH, () -> {
+            try {
+                validator.validateBooking(taken);
+                throw new IllegalStateException("Booking should be taken");
+            } catch (UniqueHotelAndDateException e) {
+                return new RestServiceException("hotel details supplied in request body conflict with another booking",
+                        reasons(), Response.Status.CONFLICT, e);
+            }
+        });
+    }
+
+    /**
+     * <p>The same path with the exceptions filling in their stack traces: the baseline for {@link #rejectTakenBooking}.
+     * A plain ValidationException stands in for UniqueHotelAndDateException, and a 500 RestServiceException, which keeps
+     * its stack trace, for the 409 one.</p>
+     */
+    @Benchmark
+    public RestServiceException rejectTakenBookingWithStackTraces() {
+        return atRequestDepth(REQUEST_DEPTH, () -> {
+            try {
+                validator.validator.validate(taken);
+                if (validator.hotelAndDateAlreadyExists(taken.getHotelId(), taken.getBookingDate(), taken.getId())) {
+                    throw new ValidationException("Unique Hotel And Date Violation");
+                }
+                throw new IllegalStateException("Booking should be taken");
+            } catch (ValidationException e) {
+                return new RestServiceException("hotel details supplied in request body conflict with another booking",
+                        reasons(), Response.Status.INTERNAL_SERVER_ERROR, e);
+            }
+        });
+    }
+
+    /**
+     * <p>A Booking breaking its field constraints, which fails before the availability check.</p>
+     */
+    @Benchmark
+    public ConstraintViolationException validateInvalidBooking() {
+        try {
+            validator.validateBooking(invalid);
+            throw new IllegalStateException("Booking should not be valid");
+        } catch (ConstraintViolationException e) {
+            return e;
+        }
+    }
+
+    /**
+     * <p>Creates a Booking in its own transaction and reads it back by hotel and date in another. Each call books the
+     * next hotel in turn, on the first day after the ones booked before.</p>
+     */
+    @Benchmark
+    public Booking createAndFind() throws Exception {
+        Booking booking = booking(hotelIds[next % HOTELS], DAYS + 1 + next++ / HOTELS);
+        BenchmarkSupport.inTransaction(em, () -> crud.create(booking));
+        return BenchmarkSupport.inTransaction(em,
+                () -> crud.findByHotelAndDate(booking.getHotelId(), booking.getBookingDate()));
+    }
+
+    @Benchmark
+    public List<Booking> findByHotelId() throws Exception {
+        return BenchmarkSupport.inTransaction(em, () -> crud.findByHotelId(hotelIds[HOTELS / 2]));
+    }
+}
@@ -0,0 +1,117 @@
+package uk.ac.newcastle.enterprisemiddleware.customer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.newcastle.enterprisemiddleware.util.BenchmarkSupport;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.validation.ConstraintViolationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures {@link CustomerValidator#validateCustomer} and the create and find methods of
+ * {@link CustomerRepository} against an in-memory H2 database holding {@link #CUSTOMERS} customers.</p>
+ *
+ * @author Howie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CustomerBenchmark {
+
+    static final int CUSTOMERS = 1000;
+
+    EntityManagerFactory emf;
+    EntityManager em;
+    CustomerRepository crud;
+    CustomerValidator validator;
+
+    Customer valid;
+    Customer invalid;
+    Long existingId;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        emf = BenchmarkSupport.entityManagerFactory("customer");
+        em = emf.createEntityManager();
+        crud = new CustomerRepository();
+        crud.log = BenchmarkSupport.logger(CustomerRepository.class);
+        crud.em = em;
+        validator = new CustomerValidator();
+        validator.validator = BenchmarkSupport.validator();
+        validator.crud = crud;
+
+        for (int i = 0; i < CUSTOMERS; i++) {
+            Customer customer = customer("existing" + i);
+            BenchmarkSupport.inTransaction(em, () -> crud.create(customer));
+            existingId = customer.getId();
+        }
+        valid = customer("new");
+        invalid = new Customer("J0hn", "", "not-an-email", "0191 222 3333");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        emf.close();
+    }
+
+    static Customer customer(String name) {
+        return new Customer("Jane", "Doe", name + "@example.com", "(0201) 222-3333");
+    }
+
+    /**
+     * <p>A valid new Customer: bean validation plus the lookup of its email.</p>
+     */
+    @Benchmark
+    public Customer validateValidCustomer() throws Exception {
+        return BenchmarkSupport.inTransaction(em, () -> {
+            validator.validateCustomer(valid);
+            return valid;
+        });
+    }
+
+    /**
+     * <p>A Customer breaking every field constraint, which fails before the database is consulted.</p>
+     */
+    @Benchmark
+    public ConstraintViolationException validateInvalidCustomer() throws Exception {
+        try {
+            validator.validateCustomer(invalid);
+            throw new IllegalStateException("Customer should not be valid");
+        } catch (ConstraintViolationException e) {
+            return e;
+        }
+    }
+
+    /**
+     * <p>Creates a Customer in its own transaction and reads it back by email in another, as a POST followed by a GET
+     * would.</p>
+     */
+    @Benchmark
+    public Customer createAndFind() throws Exception {
+        Customer customer = customer("created" + next++);
+        BenchmarkSupport.inTransaction(em, () -> crud.create(customer));
+        return BenchmarkSupport.inTransaction(em, () -> crud.findByEmail(customer.getEmail()));
+    }
+
+    @Benchmark
+    public Customer findById() throws Exception {
+        return BenchmarkSupport.inTransaction(em, () -> crud.findById(existingId));
+    }
+}
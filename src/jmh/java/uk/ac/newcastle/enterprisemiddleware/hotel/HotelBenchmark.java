@@ -0,0 +1,130 @@
+package uk.ac.newcastle.enterprisemiddleware.hotel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.newcastle.enterprisemiddleware.util.BenchmarkSupport;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.validation.ConstraintViolationException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures {@link HotelValidator#validateHotel} and the create and find methods of {@link HotelRepository}
+ * against an in-memory H2 database holding {@link #HOTELS} hotels.</p>
+ *
+ * @author Howie
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotelBenchmark {
+
+    static final int HOTELS = 1000;
+
+    EntityManagerFactory emf;
+    EntityManager em;
+    HotelRepository crud;
+    HotelValidator validator;
+
+    Hotel valid;
+    Hotel invalid;
+    Long existingId;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        emf = BenchmarkSupport.entityManagerFactory("hotel");
+        em = emf.createEntityManager();
+        crud = new HotelRepository();
+        crud.log = BenchmarkSupport.logger(HotelRepository.class);
+        crud.em = em;
+        validator = new HotelValidator();
+        validator.validator = BenchmarkSupport.validator();
+        validator.crud = crud;
+
+        for (int i = 0; i < HOTELS; i++) {
+            Hotel hotel = hotel(i);
+            BenchmarkSupport.inTransaction(em, () -> crud.create(hotel));
+            existingId = hotel.getId();
+        }
+        valid = hotel(HOTELS + 1);
+        invalid = new Hotel();
+        invalid.setHotelName("");
+        invalid.setPostcode("ne1 7ru");
+        invalid.setPhoneNumber("0191 222 3333");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+        emf.close();
+    }
+
+    static Hotel hotel(int number) {
+        Hotel hotel = new Hotel();
+        hotel.setHotelName("Hotel " + number);
+        hotel.setPostcode("NE" + (1000 + number % 9000));
+        hotel.setPhoneNumber(String.format("(0201) %03d-%04d", number / 10000 % 1000, number % 10000));
+        return hotel;
+    }
+
+    /**
+     * <p>A valid new Hotel: bean validation plus the lookup of its phone number.</p>
+     */
+    @Benchmark
+    public Hotel validateValidHotel() throws Exception {
+        return BenchmarkSupport.inTransaction(em, () -> {
+            validator.validateHotel(valid);
+            return valid;
+        });
+    }
+
+    /**
+     * <p>A Hotel breaking every field constraint, which fails before the database is consulted.</p>
+     */
+    @Benchmark
+    public ConstraintViolationException validateInvalidHotel() throws Exception {
+        try {
+            validator.validateHotel(invalid);
+            throw new IllegalStateException("Hotel should not be valid");
+        } catch (ConstraintViolationException e) {
+            return e;
+        }
+    }
+
+    /**
+     * <p>Creates a Hotel in its own transaction and reads it back by phone number in another, as a POST followed by a
+     * GET would.</p>
+     */
+    @Benchmark
+    public Hotel createAndFind() throws Exception {
+        Hotel hotel = hotel(HOTELS + 2 + next++);
+        BenchmarkSupport.inTransaction(em, () -> crud.create(hotel));
+        return BenchmarkSupport.inTransaction(em, () -> crud.findByPhoneNumber(hotel.getPhoneNumber()));
+    }
+
+    @Benchmark
+    public Hotel findById() throws Exception {
+        return BenchmarkSupport.inTransaction(em, () -> crud.findById(existingId));
+    }
+
+    @Benchmark
+    public List<Hotel> findByPostcode() throws Exception {
+        return BenchmarkSupport.inTransaction(em, () -> crud.findByPostcode("NE1500"));
+    }
+}
@@ -0,0 +1,133 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.contact.Contact;
+import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
+import uk.ac.newcastle.enterprisemiddleware.hotel.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.travelAgent.TravelAgentBooking;
+import uk.ac.newcastle.enterprisemiddleware.travelAgent.TravelAgentSaga;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Builds what the CDI container would otherwise inject into validators and repositories, so that the JMH
+ * benchmarks can exercise them without starting Quarkus.</p>
+ *
+ * <p>The persistence unit is bootstrapped directly with Hibernate against an in-memory H2 database, with the same
+ * dialect, batch size and sequence allocation size as the application. Transactions are resource local rather than
+ * JTA, which leaves out the cost of the transaction manager but not of the SQL.</p>
+ *
+ * @author Howie
+ */
+public final class BenchmarkSupport {
+
+    private static final Class<?>[] ENTITIES = {
+            Contact.class, Customer.class, Hotel.class, Booking.class, TravelAgentBooking.class, TravelAgentSaga.class
+    };
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * <p>Starts a persistence unit with all entities of the application, on an empty in-memory H2 database.</p>
+     *
+     * @param name The name of the database; benchmarks running in the same fork should use different names
+     * @return The EntityManagerFactory; close it in the tear-down of the benchmark
+     */
+    public static EntityManagerFactory entityManagerFactory(String name) {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.URL, "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+                .applySetting(AvailableSettings.USER, "sa")
+                .applySetting(AvailableSettings.PASS, "")
+                .applySetting(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, "50")
+                .applySetting(AvailableSettings.SHOW_SQL, "false")
+                .build();
+        MetadataSources sources = new MetadataSources(registry);
+        for (Class<?> entity : ENTITIES) {
+            sources.addAnnotatedClass(entity);
+        }
+        return sources.buildMetadata().buildSessionFactory();
+    }
+
+    /**
+     * <p>Runs the given work in a transaction of the given EntityManager, and clears the persistence context
+     * afterwards, as the end of a request would.</p>
+     *
+     * @param em The EntityManager
+     * @param work The work to run
+     * @return The result of the work
+     */
+    public static <T> T inTransaction(EntityManager em, Callable<T> work) throws Exception {
+        EntityTransaction transaction = em.getTransaction();
+        transaction.begin();
+        try {
+            T result = work.call();
+            transaction.commit();
+            return result;
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            em.clear();
+        }
+    }
+
+    /**
+     * <p>Returns a Validator configured like the one of the application, minus the expression language support in
+     * messages, which none of the constraints use.</p>
+     *
+     * @return The Validator
+     */
+    public static Validator validator() {
+        return Validation.byDefaultProvider()
+                .configure()
+                .messageInterpolator(new ParameterMessageInterpolator())
+                .buildValidatorFactory()
+                .getValidator();
+    }
+
+    /**
+     * <p>Returns an ObjectMapper configured like the one Quarkus gives RESTEasy Reactive.</p>
+     *
+     * @return The ObjectMapper
+     */
+    public static ObjectMapper objectMapper() {
+        return JsonMapper.builder()
+                .findAndAddModules()
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+                .build();
+    }
+
+    /**
+     * <p>Returns a Logger for the given class that builds its INFO records as usual but writes them nowhere, so the
+     * benchmarks include the cost of the logging calls without flooding their output.</p>
+     *
+     * @param type The class the logger is for
+     * @return The Logger
+     */
+    public static Logger logger(Class<?> type) {
+        Logger log = Logger.getLogger(type.getName());
+        log.setUseParentHandlers(false);
+        log.setLevel(Level.INFO);
+        return log;
+    }
+}
@@ -0,0 +1,107 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
+import uk.ac.newcastle.enterprisemiddleware.hotel.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.travelAgent.TravelAgentBooking;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the Jackson serialization of the lists returned by the {@code GET} endpoints of customers, hotels,
+ * bookings and travel agent bookings, with the ObjectMapper settings Quarkus uses.</p>
+ *
+ * @author Howie
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000"})
+    int size;
+
+    ObjectWriter writer;
+
+    List<Customer> customers;
+    List<Hotel> hotels;
+    List<Booking> bookings;
+    List<TravelAgentBooking> travelAgentBookings;
+
+    @Setup
+    public void setUp() {
+        writer = BenchmarkSupport.objectMapper().writer();
+        customers = new ArrayList<>(size);
+        hotels = new ArrayList<>(size);
+        bookings = new ArrayList<>(size);
+        travelAgentBookings = new ArrayList<>(size);
+        LocalDate firstDay = LocalDate.now().plusYears(1);
+        for (int i = 0; i < size; i++) {
+            long id = i + 1;
+
+            Customer customer = new Customer("Jane", "Doe", "customer" + i + "@example.com", "(0201) 222-3333");
+            customer.setId(id);
+            customers.add(customer);
+
+            Hotel hotel = new Hotel();
+            hotel.setId(id);
+            hotel.setHotelName("Hotel " + i);
+            hotel.setPostcode("NE1" + String.format("%03d", i % 1000));
+            hotel.setPhoneNumber("(0201) 333-4444");
+            hotels.add(hotel);
+
+            Booking booking = new Booking(id, id, Date.valueOf(firstDay.plusDays(i)));
+            booking.setId(id);
+            bookings.add(booking);
+
+            TravelAgentBooking travelAgentBooking = new TravelAgentBooking();
+            travelAgentBooking.setId(id);
+            travelAgentBooking.setHotelCustomerId(id);
+            travelAgentBooking.setFlightCustomerId(id);
+            travelAgentBooking.setTaxiCustomerId(id);
+            travelAgentBooking.setHotelBookingId(id);
+            travelAgentBooking.setFlightBookingId(id);
+            travelAgentBooking.setTaxiBookingId(id);
+            travelAgentBookings.add(travelAgentBooking);
+        }
+    }
+
+    @Benchmark
+    public byte[] customers() throws Exception {
+        return writer.writeValueAsBytes(customers);
+    }
+
+    @Benchmark
+    public byte[] hotels() throws Exception {
+        return writer.writeValueAsBytes(hotels);
+    }
+
+    @Benchmark
+    public byte[] bookings() throws Exception {
+        return writer.writeValueAsBytes(bookings);
+    }
+
+    @Benchmark
+    public byte[] travelAgentBookings() throws Exception {
+        return writer.writeValueAsBytes(travelAgentBookings);
+    }
+}
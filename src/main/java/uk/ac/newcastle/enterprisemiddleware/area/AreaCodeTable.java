@@ -0,0 +1,195 @@
+package uk.ac.newcastle.enterprisemiddleware.area;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Keeps the whole table of US area codes in memory, so resolving the area of a phone number is an array lookup
+ * instead of a call to the remote {@link AreaService}.</p>
+ *
+ * <p>The table is an array indexed by the three digit area code. It is loaded from the remote service in the background
+ * on startup and then every {@code area-codes.refresh-interval}. When {@code area-codes.snapshot-file} is set, each
+ * successful load is also written to that file and the file is read on startup, so the table is available straight
+ * away even if the remote service is not. Without a snapshot file to read, the classpath resource
+ * {@code area-codes.seed-resource}, if set, is read instead; it is never written.</p>
+ *
+ * <p>Until the table has been loaded once, area codes are resolved with a remote call as before.</p>
+ *
+ * @author Howie
+ * @see AreaService
+ */
+@ApplicationScoped
+public class AreaCodeTable {
+
+    private static final int CODES = 1000;
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @RestClient
+    AreaService areaService;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @ConfigProperty(name = "area-codes.refresh-interval", defaultValue = "PT6H")
+    Duration refreshInterval;
+
+    @ConfigProperty(name = "area-codes.snapshot-file")
+    Optional<String> snapshotFile;
+
+    @ConfigProperty(name = "area-codes.seed-resource")
+    Optional<String> seedResource;
+
+    /** The loaded table, or null until the first load. Replaced as a whole, never modified. */
+    private volatile Area[] areas;
+
+    private ScheduledExecutorService refresher;
+
+    void onStart(@Observes StartupEvent event) {
+        Optional<Path> snapshot = snapshotFile.map(Paths::get).filter(Files::isReadable);
+        if (snapshot.isPresent()) {
+            loadSnapshot(snapshot.get());
+        } else {
+            seedResource.ifPresent(this::loadSeed);
+        }
+
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "area-code-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * <p>Returns the Area with the given three digit code.</p>
+     *
+     * @param code The area code
+     * @return The Area with that code
+     * @throws InvalidAreaCodeException If no Area has that code
+     */
+    public Area findById(int code) {
+        Area[] table = areas;
+        if (table == null) {
+            return findRemotely(code);
+        }
+
+        Area area = code >= 0 && code < CODES ? table[code] : null;
+        if (area == null) {
+            throw new InvalidAreaCodeException("The area code provided does not exist");
+        }
+        return area;
+    }
+
+    /**
+     * <p>Reloads the table from the remote service, keeping the current table if that fails.</p>
+     */
+    void refresh() {
+        try {
+            List<Area> loaded = areaService.getAreas();
+            if (loaded == null || loaded.isEmpty()) {
+                log.warning("AreaCodeTable -- refresh returned no area codes, keeping the current table.");
+                return;
+            }
+            areas = index(loaded);
+            log.info(() -> "AreaCodeTable -- refresh loaded " + loaded.size() + " area codes.");
+            snapshotFile.map(Paths::get).ifPresent(path -> writeSnapshot(path, loaded));
+        } catch (RuntimeException e) {
+            log.warning(() -> "AreaCodeTable -- refresh failed, keeping the current table: " + e);
+        }
+    }
+
+    private Area findRemotely(int code) {
+        try {
+            return areaService.getAreaById(code);
+        } catch (ClientErrorException e) {
+            if (e.getResponse().getStatusInfo() == Response.Status.NOT_FOUND) {
+                throw new InvalidAreaCodeException("The area code provided does not exist", e);
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private void loadSnapshot(Path path) {
+        try {
+            load(path.toUri().toURL());
+        } catch (IOException e) {
+            log.log(Level.WARNING, "AreaCodeTable -- could not read snapshot " + path, e);
+        }
+    }
+
+    private void loadSeed(String resource) {
+        URL url = Thread.currentThread().getContextClassLoader().getResource(resource);
+        if (url == null) {
+            log.warning(() -> "AreaCodeTable -- seed resource " + resource + " not found.");
+            return;
+        }
+        try {
+            load(url);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "AreaCodeTable -- could not read seed resource " + resource, e);
+        }
+    }
+
+    private void load(URL source) throws IOException {
+        List<Area> loaded = mapper.readValue(source, new TypeReference<List<Area>>() {});
+        areas = index(loaded);
+        log.info(() -> "AreaCodeTable -- loaded " + loaded.size() + " area codes from " + source);
+    }
+
+    private void writeSnapshot(Path path, List<Area> loaded) {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, "area-codes", ".tmp");
+            mapper.writeValue(temp.toFile(), loaded);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "AreaCodeTable -- could not write snapshot " + path, e);
+        }
+    }
+
+    private static Area[] index(List<Area> loaded) {
+        Area[] table = new Area[CODES];
+        for (Area area : loaded) {
+            if (area.getId() >= 0 && area.getId() < CODES) {
+                table[area.getId()] = area;
+            }
+        }
+        return table;
+    }
+}
@@ -1,6 +1,7 @@
 package uk.ac.newcastle.enterprisemiddleware.area;
 
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+import uk.ac.newcastle.enterprisemiddleware.util.Guarded;
 
 import javax.enterprise.context.Dependent;
 import javax.ws.rs.GET;
@@ -17,6 +18,7 @@ import java.util.List;
  */
 @Path("/areas")
 @RegisterRestClient(configKey = "area-api")
+@Guarded("area-api")
 public interface AreaService {
 
     @GET
@@ -1,8 +1,12 @@
 package uk.ac.newcastle.enterprisemiddleware.booking;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.hibernate.validator.constraints.Range;
 import uk.ac.newcastle.enterprisemiddleware.travelAgent.TravelAgentBooking;
+import uk.ac.newcastle.enterprisemiddleware.util.PooledSequenceGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.Future;
@@ -20,19 +24,24 @@ import java.util.Date;
 @Entity
 @NamedQueries({
         @NamedQuery(name = Booking.FIND_ALL,query = "SELECT b FROM Booking b ORDER BY b.id ASC"),
-        @NamedQuery(name = Booking.FIND_BY_HOTEL_AND_DATE,query = "SELECT b FROM Booking b WHERE b.hotelId = :hotelId AND b.bookingDate = :bookingDate")
+        @NamedQuery(name = Booking.FIND_BY_HOTEL_AND_DATE,query = "SELECT b FROM Booking b WHERE b.hotelId = :hotelId AND b.bookingDate = :bookingDate"),
+        @NamedQuery(name = Booking.FIND_BOOKED_DATES,query = "SELECT b.hotelId, b.bookingDate FROM Booking b ORDER BY b.id ASC")
 })
 @XmlRootElement
-@Table(name = "booking",uniqueConstraints = @UniqueConstraint(columnNames = {"hotel_id","booking_date"}))
+@Table(name = "booking",uniqueConstraints = @UniqueConstraint(columnNames = {"hotel_id","booking_date"}), indexes = {
+        @Index(name = "idx_booking_customer_id", columnList = "customer_id")
+})
 public class Booking implements Serializable {
     private static final long serialVersionUID = 1347673944325L;
 
     public static final String FIND_ALL = "Booking.findAll";
     public static final String FIND_BY_HOTEL_AND_DATE = "Booking.findByHotelAndDate";
+    public static final String FIND_BOOKED_DATES = "Booking.findBookedDates";
 
     @Id
-    @TableGenerator(name = "BOOKING_ID",table = "PK_BOOKING_GENERATE_TABLE")
-    @GeneratedValue(strategy = GenerationType.TABLE,generator = "BOOKING_ID")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "BOOKING_ID")
+    @GenericGenerator(name = "BOOKING_ID", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "booking_seq"))
     private Long id;
 
     @NotNull
@@ -0,0 +1,90 @@
+package uk.ac.newcastle.enterprisemiddleware.booking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The outcome of a batch of Bookings posted to {@link BookingRestService}, with one entry per Booking in the order
+ * they were submitted.<p/>
+ *
+ * @author Howie
+ */
+public class BookingBatchResult {
+
+    private int created;
+
+    private int failed;
+
+    private final List<Item> results = new ArrayList<>();
+
+    public int getCreated() {
+        return created;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public List<Item> getResults() {
+        return results;
+    }
+
+    /**
+     * <p>Records the outcome of one Booking.</p>
+     *
+     * @param item The outcome, at the position of its Booking in the batch
+     */
+    void add(Item item) {
+        results.add(item);
+        if (item.getStatus() == 201) {
+            created++;
+        } else {
+            failed++;
+        }
+    }
+
+    /**
+     * <p>The outcome of a single Booking: the HTTP status it would have received on its own, and either the id it was
+     * stored under or the reasons it was rejected.<p/>
+     */
+    public static class Item {
+
+        private final int index;
+
+        private final int status;
+
+        private Long id;
+
+        private Map<String, String> reasons;
+
+        Item(int index, int status) {
+            this.index = index;
+            this.status = status;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        void setId(Long id) {
+            this.id = id;
+        }
+
+        public Map<String, String> getReasons() {
+            return reasons;
+        }
+
+        void setReasons(Map<String, String> reasons) {
+            this.reasons = reasons;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package uk.ac.newcastle.enterprisemiddleware.booking;
 
+import io.micrometer.core.annotation.Timed;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
 import javax.enterprise.context.Dependent;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
@@ -8,10 +11,16 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import uk.ac.newcastle.enterprisemiddleware.util.EntityStreams;
+
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link BookingService} with the
@@ -21,6 +30,7 @@ import java.util.logging.Logger;
  * @see Booking
  * @see javax.persistence.EntityManager
  */
+@Timed("app.repository")
 @Dependent
 public class BookingRepository {
     @Inject
@@ -30,19 +40,36 @@ public class BookingRepository {
     @Inject
     EntityManager em;
 
+    @ConfigProperty(name = "quarkus.hibernate-orm.jdbc.statement-batch-size", defaultValue = "50")
+    int batchSize;
+
     /**
      * <p>Returns a List of all persisted {@link Booking} objects, sorted alphabetically by id.</p>
      *
      *  @return List of Booking objects
      */
     List<Booking> findAllBooking(){
-        log.info("BookingRepository -- findAllBooking method starts execution.");
+        log.fine("BookingRepository -- findAllBooking method starts execution.");
         TypedQuery<Booking> query = em.createNamedQuery(Booking.FIND_ALL, Booking.class);
         List<Booking> resultList = query.getResultList();
-        log.info("BookingRepository -- findAllBooking method completes execution.");
+        log.fine("BookingRepository -- findAllBooking method completes execution.");
         return resultList;
     }
 
+    /**
+     * <p>Returns the hotel id and date of every persisted {@link Booking}, sorted by id, without loading the Bookings
+     * themselves.</p>
+     *
+     * @return Stream of {hotelId, bookingDate} rows, which has to be closed
+     * @see EntityStreams#scroll
+     */
+    Stream<Object[]> streamBookedDates(){
+        log.fine("BookingRepository -- streamBookedDates method starts execution.");
+        Stream<Object[]> stream = EntityStreams.scroll(em.createNamedQuery(Booking.FIND_BOOKED_DATES, Object[].class), em);
+        log.fine("BookingRepository -- streamBookedDates method completes execution.");
+        return stream;
+    }
+
     /**
      * <p>Returns a single Booking object, specified by a Long id.<p/>
      *
@@ -50,9 +77,9 @@ public class BookingRepository {
      * @return The Booking with the specified id
      */
     Booking findById(Long id){
-        log.info("BookingRepository -- findById method starts execution.");
+        log.fine("BookingRepository -- findById method starts execution.");
         Booking booking = em.find(Booking.class, id);
-        log.info("BookingRepository -- findById method completes execution.");
+        log.fine("BookingRepository -- findById method completes execution.");
         return booking;
     }
 
@@ -61,15 +88,15 @@ public class BookingRepository {
      *
      * @param hotelId The hotelId field of the Booking to be returned
      * @param bookingDate The bookingDate field of the Booking to be returned
-     * @return The Booking with the specified hotelId and bookingDate
+     * @return The Booking with the specified hotelId and bookingDate; or null if there is none
      */
     Booking findByHotelAndDate(Long hotelId, Date bookingDate){
-        log.info("BookingRepository -- findByHotelAndDate method starts execution.");
+        log.fine("BookingRepository -- findByHotelAndDate method starts execution.");
         TypedQuery<Booking> query = em.createNamedQuery(Booking.FIND_BY_HOTEL_AND_DATE, Booking.class)
                 .setParameter("hotelId",hotelId).setParameter("bookingDate",bookingDate);
-        Booking resultList = query.getSingleResult();
-        log.info("BookingRepository -- findByHotelAndDate method completes execution.");
-        return resultList;
+        List<Booking> bookings = query.getResultList();
+        log.fine("BookingRepository -- findByHotelAndDate method completes execution.");
+        return bookings.isEmpty() ? null : bookings.get(0);
     }
 
     /**
@@ -79,13 +106,13 @@ public class BookingRepository {
      * @return The Booking with the specified hotelId
      */
     List<Booking> findByHotelId(Long hotelId){
-        log.info("BookingRepository -- findByHotelId method starts execution.");
+        log.fine("BookingRepository -- findByHotelId method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Booking> criteria = cb.createQuery(Booking.class);
         Root<Booking> booking = criteria.from(Booking.class);
         criteria.select(booking).where(cb.equal(booking.get("hotelId"), hotelId));
         List<Booking> resultList = em.createQuery(criteria).getResultList();
-        log.info("BookingRepository -- findByHotelId method completes execution.");
+        log.fine("BookingRepository -- findByHotelId method completes execution.");
         return resultList;
     }
 
@@ -96,16 +123,81 @@ public class BookingRepository {
      * @return The Booking with the specified customerId
      */
     List<Booking> findByCustomerId(Long customerId){
-        log.info("BookingRepository -- findByCustomerId method starts execution.");
+        log.fine("BookingRepository -- findByCustomerId method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Booking> criteria = cb.createQuery(Booking.class);
         Root<Booking> booking = criteria.from(Booking.class);
         criteria.select(booking).where(cb.equal(booking.get("customerId"), customerId));
         List<Booking> resultList = em.createQuery(criteria).getResultList();
-        log.info("BookingRepository -- findByCustomerId method completes execution.");
+        log.fine("BookingRepository -- findByCustomerId method completes execution.");
+        return resultList;
+    }
+
+    /**
+     * <p>Returns a page of Booking objects matching any combination of customerId, hotelId and bookingDate, sorted by id.</p>
+     *
+     * <p>Every filter that is null is left out of the WHERE clause, so all filtering and paging happens in a single
+     * query on the database rather than over a full table load. The TravelAgentBooking of each Booking, which is
+     * always loaded with it, is fetched in the same query.</p>
+     *
+     * @param customerId The customerId field of the Bookings to be returned; or null
+     * @param hotelId The hotelId field of the Bookings to be returned; or null
+     * @param bookingDate The bookingDate field of the Bookings to be returned; or null
+     * @param after The id after which the page starts; or null for the first page
+     * @param offset The number of matching Bookings to skip
+     * @param limit The maximum number of Bookings to return; or null for no limit
+     * @return The Bookings matching every supplied filter
+     */
+    List<Booking> findByFilter(Long customerId, Long hotelId, Date bookingDate, Long after, int offset, Integer limit){
+        log.fine("BookingRepository -- findByFilter method starts execution.");
+        TypedQuery<Booking> query = em.createQuery(filter(customerId, hotelId, bookingDate, after)).setFirstResult(offset);
+        if (limit != null) {
+            query.setMaxResults(limit);
+        }
+        List<Booking> resultList = query.getResultList();
+        log.fine("BookingRepository -- findByFilter method completes execution.");
         return resultList;
     }
 
+    /**
+     * <p>Returns the Booking objects matching any combination of customerId, hotelId and bookingDate, sorted by id, as a
+     * stream read from the database one batch at a time.</p>
+     *
+     * @param customerId The customerId field of the Bookings to be returned; or null
+     * @param hotelId The hotelId field of the Bookings to be returned; or null
+     * @param bookingDate The bookingDate field of the Bookings to be returned; or null
+     * @param after The id after which the stream starts; or null to start from the first Booking
+     * @return The Bookings matching every supplied filter, as a stream that has to be closed
+     * @see EntityStreams#scroll
+     */
+    Stream<Booking> streamByFilter(Long customerId, Long hotelId, Date bookingDate, Long after){
+        log.fine("BookingRepository -- streamByFilter method starts execution.");
+        Stream<Booking> stream = EntityStreams.scroll(em.createQuery(filter(customerId, hotelId, bookingDate, after)), em);
+        log.fine("BookingRepository -- streamByFilter method completes execution.");
+        return stream;
+    }
+
+    private CriteriaQuery<Booking> filter(Long customerId, Long hotelId, Date bookingDate, Long after) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Booking> criteria = cb.createQuery(Booking.class);
+        Root<Booking> booking = criteria.from(Booking.class);
+        booking.fetch("travelAgentBooking", JoinType.LEFT);
+        List<Predicate> predicates = new ArrayList<>();
+        if (customerId != null) {
+            predicates.add(cb.equal(booking.get("customerId"), customerId));
+        }
+        if (hotelId != null) {
+            predicates.add(cb.equal(booking.get("hotelId"), hotelId));
+        }
+        if (bookingDate != null) {
+            predicates.add(cb.equal(booking.get("bookingDate"), bookingDate));
+        }
+        if (after != null) {
+            predicates.add(cb.gt(booking.get("id"), after));
+        }
+        return criteria.select(booking).where(predicates.toArray(new Predicate[0])).orderBy(cb.asc(booking.get("id")));
+    }
+
     /**
      * <p>Persists the provided Booking object to the application database using the EntityManager.</p>
      *
@@ -114,12 +206,36 @@ public class BookingRepository {
      * @throws Exception
      */
     Booking create(Booking booking) throws Exception {
-        log.info("BookingRepository -- create method Creating " + booking.getId());
+        log.fine(() -> "BookingRepository -- create method Creating " + booking.getId());
         em.persist(booking);
-        log.info("BookingRepository -- create method completes execution.");
+        log.fine("BookingRepository -- create method completes execution.");
         return booking;
     }
 
+    /**
+     * <p>Persists the provided Booking objects to the application database using the EntityManager.</p>
+     *
+     * <p>The persistence context is flushed and cleared once per JDBC batch, so the inserts go to the database as batched
+     * statements and memory use does not grow with the number of Bookings.</p>
+     *
+     * @param bookings The Booking objects to be persisted
+     * @return The Booking objects that have been persisted
+     * @throws Exception
+     */
+    List<Booking> createAll(List<Booking> bookings) throws Exception {
+        log.fine(() -> "BookingRepository -- createAll method Creating " + bookings.size() + " bookings");
+        for (int i = 0; i < bookings.size(); i++) {
+            em.persist(bookings.get(i));
+            if ((i + 1) % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        log.fine("BookingRepository -- createAll method completes execution.");
+        return bookings;
+    }
+
     /**
      * <p>Updates an existing Booking object in the application database with the provided Booking object.</p>
      *
@@ -128,9 +244,9 @@ public class BookingRepository {
      * @throws Exception
      */
     Booking update(Booking booking) throws Exception {
-        log.info("BookingRepository -- update method Updating " + booking.getId());
+        log.fine(() -> "BookingRepository -- update method Updating " + booking.getId());
         em.merge(booking);
-        log.info("BookingRepository -- update method completes execution.");
+        log.fine("BookingRepository -- update method completes execution.");
         return booking;
     }
 
@@ -142,13 +258,13 @@ public class BookingRepository {
      * @throws Exception
      */
     Booking delete(Booking booking) throws Exception {
-        log.info("BookingRepository -- delete method Deleting " + booking.getId());
+        log.fine(() -> "BookingRepository -- delete method Deleting " + booking.getId());
         if (booking.getId() != null) {
             em.remove(em.merge(booking));
         } else {
-            log.info("BookingRepository -- delete method - No Id was found so can't Delete.");
+            log.fine("BookingRepository -- delete method - No Id was found so can't Delete.");
         }
-        log.info("BookingRepository -- delete method completes execution.");
+        log.fine("BookingRepository -- delete method completes execution.");
         return booking;
     }
 }
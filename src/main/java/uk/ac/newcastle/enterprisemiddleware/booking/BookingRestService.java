@@ -1,5 +1,6 @@
 package uk.ac.newcastle.enterprisemiddleware.booking;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
@@ -10,6 +11,8 @@ import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
 import uk.ac.newcastle.enterprisemiddleware.customer.CustomerService;
 import uk.ac.newcastle.enterprisemiddleware.hotel.Hotel;
 import uk.ac.newcastle.enterprisemiddleware.hotel.HotelService;
+import uk.ac.newcastle.enterprisemiddleware.util.JsonArrayOutput;
+import uk.ac.newcastle.enterprisemiddleware.util.KeysetPage;
 import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
 
 import javax.inject.Inject;
@@ -18,16 +21,23 @@ import javax.transaction.Transactional;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.logging.Logger;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * <p>This class produces a RESTful service exposing the functionality of {@link BookingService}.</p>
@@ -41,6 +51,9 @@ import java.util.stream.Collectors;
 @Consumes(MediaType.APPLICATION_JSON)
 public class BookingRestService {
 
+    /** Largest number of Bookings accepted in a single batch. */
+    private static final int MAX_BATCH_SIZE = 1000;
+
     @Inject
     @Named("logger")
     Logger log;
@@ -54,9 +67,17 @@ public class BookingRestService {
     @Inject
     CustomerService customerService;
 
+    @Inject
+    ObjectMapper mapper;
+
     /**
      * <p>Return all the Bookings.  They are sorted alphabetically by Id.</p>
      *
+     * <p>The customerId, hotelId and bookingDate filters and the paging are all applied by the database in a single
+     * query. Given a limit or an after cursor, a Link header with rel="next" plus an X-Next-Cursor header point at the
+     * next page if there is one. With stream=true every matching Booking after the cursor is written out while it is
+     * read from the database, and offset and limit are ignored.</p>
+     *
      * @return A Response containing a list of Bookings
      */
     @GET
@@ -64,34 +85,54 @@ public class BookingRestService {
     @Operation(summary = "Fetch all Bookings", description = "Returns a JSON array of all stored Booking objects.")
     @APIResponses(value = {
             @APIResponse(responseCode = "200", description ="Booking found"),
-            @APIResponse(responseCode = "400", description = "Wrong format of booking date"),
+            @APIResponse(responseCode = "400", description = "Wrong format of booking date or invalid paging parameters"),
             @APIResponse(responseCode = "500", description = "Booking with date not found")
     })
     public Response retrieveAllBookings(@QueryParam("customerId")Long customerId,
                                         @QueryParam("hotelId")Long hotelId,
                                         @Parameter(description = "date format is yyyy-MM-dd")
-                                        @QueryParam("bookingDate")String bookingDate) {
-        log.info("BookingRestService -- retrieveAllBookings starts execution.");
-        List<Booking> bookings = bookingService.findAllBooking();
+                                        @QueryParam("bookingDate")String bookingDate,
+                                        @Parameter(description = "id of the last booking of the previous page")
+                                        @QueryParam("after") Long after,
+                                        @Parameter(description = "number of matching bookings to skip")
+                                        @QueryParam("offset") @DefaultValue("0") int offset,
+                                        @Parameter(description = "maximum number of bookings to return")
+                                        @QueryParam("limit") Integer limit,
+                                        @Parameter(description = "write every matching booking as it is read")
+                                        @QueryParam("stream") boolean stream,
+                                        @Context UriInfo uriInfo) {
+        log.fine("BookingRestService -- retrieveAllBookings starts execution.");
 
-        if(customerId != null){
-            bookings = bookings.stream().filter(e -> e.getCustomerId().equals(customerId)).collect(Collectors.toList());
-        }
-        if(hotelId != null){
-            bookings = bookings.stream().filter(e -> e.getHotelId().equals(hotelId)).collect(Collectors.toList());
+        if(offset < 0){
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
         }
+        KeysetPage.validate(after, limit);
+
+        Date date = null;
         if(bookingDate != null){
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
             try {
-                Date date = sdf.parse(bookingDate);
-                bookings = bookings.stream().filter(e -> e.getBookingDate().equals(date)).collect(Collectors.toList());
+                date = sdf.parse(bookingDate);
             } catch (ParseException e) {
                 throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
             }
         }
 
-        log.info("BookingRestService -- retrieveAllBookings completes execution.");
-        return Response.ok(bookings).build();
+        if(stream){
+            log.fine("BookingRestService -- retrieveAllBookings completes execution.");
+            return Response.ok(new JsonArrayOutput(bookingService.streamByFilter(customerId, hotelId, date, after), mapper))
+                    .build();
+        }
+        if(after == null && limit == null){
+            List<Booking> bookings = bookingService.findByFilter(customerId, hotelId, date, null, offset, null);
+            log.fine("BookingRestService -- retrieveAllBookings completes execution.");
+            return Response.ok(bookings).build();
+        }
+        int size = KeysetPage.size(limit);
+        List<Booking> bookings = bookingService.findByFilter(customerId, hotelId, date, after, offset, size + 1);
+
+        log.fine("BookingRestService -- retrieveAllBookings completes execution.");
+        return KeysetPage.ok(bookings, size, Booking::getId, uriInfo).build();
     }
 
     /**
@@ -114,12 +155,12 @@ public class BookingRestService {
     public Response retrieveBookingById(
             @Parameter(description = "Id of Booking to be fetched")
             @PathParam("id") Long id) {
-        log.info("BookingRestService -- retrieveBookingById starts execution.");
+        log.fine("BookingRestService -- retrieveBookingById starts execution.");
         Booking booking = bookingService.findById(id);
         if (booking == null) {
             throw new RestServiceException("No Booking with the id " + id + " was found!", Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Booking = " + booking);
+        log.fine(() -> "findById " + id + ": found Booking = " + booking);
         return Response.ok(booking).build();
     }
 
@@ -146,7 +187,7 @@ public class BookingRestService {
             @Parameter(description = "JSON representation of Booking object to be added to the database", required = true)
                     Booking booking){
 
-        log.info("BookingRestService -- createBooking starts execution.");
+        log.fine("BookingRestService -- createBooking starts execution.");
 
         Customer customer = customerService.findById(booking.getCustomerId());
         if(customer == null){
@@ -181,10 +222,137 @@ public class BookingRestService {
             throw new RestServiceException(e);
         }
 
-        log.info("BookingRestService -- createBooking completes execution. booking:");
+        log.fine("BookingRestService -- createBooking completes execution. booking:");
         return builder.build();
     }
 
+    /**
+     * <p>Creates a batch of new Bookings from the values provided, in a single transaction. Every Booking is checked the
+     * same way as by {@link #createBooking(Booking)}, but the referenced customers and hotels are looked up with one
+     * query each and the valid Bookings are inserted with JDBC statement batching.</p>
+     *
+     * <p>Invalid Bookings do not stop the rest of the batch. The response lists, for each Booking in the order given,
+     * the status it would have received on its own and either its new id or the reasons it was rejected.</p>
+     *
+     * <p>Each valid Booking claims its hotel and date before anything is written, so one racing a single Booking or
+     * another batch for the same hotel and date is rejected with 409 rather than failing the batch; the claims are
+     * dropped if the batch rolls back.</p>
+     *
+     * @param bookings The Booking objects to be written to the database using
+     * {@link BookingService#createAll(List)}
+     * @return A Response containing the per-Booking outcome of the batch
+     */
+    @POST
+    @Path("/batch")
+    @Operation(description = "Add a batch of new Bookings to the database")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "Batch processed; see the result of each Booking"),
+            @APIResponse(responseCode = "400", description = "Empty or oversized batch supplied in request body"),
+            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request")
+    })
+    @Transactional
+    public Response createBookings(
+            @Parameter(description = "JSON array of Booking objects to be added to the database", required = true)
+                    List<Booking> bookings) {
+
+        log.fine("BookingRestService -- createBookings starts execution.");
+
+        if (bookings == null || bookings.isEmpty() || bookings.size() > MAX_BATCH_SIZE) {
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+
+        Set<Long> customerIds = new HashSet<>(customerService.findExistingIds(bookings.stream()
+                .filter(Objects::nonNull).map(Booking::getCustomerId).filter(Objects::nonNull).collect(Collectors.toSet())));
+        Set<Long> hotelIds = new HashSet<>(hotelService.findExistingIds(bookings.stream()
+                .filter(Objects::nonNull).map(Booking::getHotelId).filter(Objects::nonNull).collect(Collectors.toSet())));
+
+        BookingBatchResult result = new BookingBatchResult();
+        List<BookingBatchResult.Item> acceptedItems = new ArrayList<>();
+        List<Booking> acceptedBookings = new ArrayList<>();
+        Set<Booking> batchHotelAndDates = new HashSet<>();
+
+        for (int i = 0; i < bookings.size(); i++) {
+            Booking booking = bookings.get(i);
+            BookingBatchResult.Item item = checkBatchBooking(i, booking, customerIds, hotelIds, batchHotelAndDates);
+            if (item.getStatus() == Response.Status.CREATED.getStatusCode()) {
+                acceptedItems.add(item);
+                acceptedBookings.add(booking);
+            }
+            result.add(item);
+        }
+
+        try {
+            bookingService.createAll(acceptedBookings);
+        } catch (Exception e) {
+            throw new RestServiceException(e);
+        }
+        for (int i = 0; i < acceptedItems.size(); i++) {
+            acceptedItems.get(i).setId(acceptedBookings.get(i).getId());
+        }
+
+        log.fine(() -> "BookingRestService -- createBookings completes execution. created = " + result.getCreated()
+                + ", failed = " + result.getFailed());
+        return Response.ok(result).build();
+    }
+
+    /**
+     * <p>Works out whether a Booking from a batch can be created, without touching the database, and if so claims its
+     * hotel and date for the transaction.</p>
+     *
+     * @param index The position of the Booking in the batch
+     * @param booking The Booking to check
+     * @param customerIds The ids of the customers referenced by the batch that exist
+     * @param hotelIds The ids of the hotels referenced by the batch that exist
+     * @param batchHotelAndDates The hotel and date pairs claimed by earlier Bookings in the batch
+     * @return The outcome for the Booking; status 201 if it can be created
+     */
+    private BookingBatchResult.Item checkBatchBooking(int index, Booking booking, Set<Long> customerIds,
+                                                      Set<Long> hotelIds, Set<Booking> batchHotelAndDates) {
+        Map<String, String> responseObj = new HashMap<>();
+        Response.Status status = Response.Status.CREATED;
+
+        if (booking == null) {
+            responseObj.put("booking", "The booking must not be null");
+            status = Response.Status.BAD_REQUEST;
+        } else {
+            booking.setId(null);
+            try {
+                bookingService.validate(booking);
+            } catch (ConstraintViolationException ce) {
+                for (ConstraintViolation<?> violation : ce.getConstraintViolations()) {
+                    responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
+                }
+                status = Response.Status.BAD_REQUEST;
+            } catch (UniqueHotelAndDateException e) {
+                responseObj.put("hotelAndDate", "That hotelAndDate is already used, please use a unique hotelAndDate");
+                status = Response.Status.CONFLICT;
+            }
+
+            if (status == Response.Status.CREATED && !customerIds.contains(booking.getCustomerId())) {
+                responseObj.put("customerId", "No customer with the id " + booking.getCustomerId() + " was found!");
+                status = Response.Status.NOT_FOUND;
+            }
+            if (status == Response.Status.CREATED && !hotelIds.contains(booking.getHotelId())) {
+                responseObj.put("hotelId", "No hotel with the id " + booking.getHotelId() + " was found!");
+                status = Response.Status.NOT_FOUND;
+            }
+            if (status == Response.Status.CREATED && !batchHotelAndDates.add(booking)) {
+                responseObj.put("hotelAndDate", "That hotelAndDate is already used earlier in this batch");
+                status = Response.Status.CONFLICT;
+            }
+            if (status == Response.Status.CREATED && !bookingService.claim(booking)) {
+                responseObj.put("hotelAndDate", "That hotelAndDate is already used, please use a unique hotelAndDate");
+                status = Response.Status.CONFLICT;
+            }
+        }
+
+        BookingBatchResult.Item item = new BookingBatchResult.Item(index, status.getStatusCode());
+        if (!responseObj.isEmpty()) {
+            item.setReasons(responseObj);
+        }
+        return item;
+    }
+
     /**
      * <p>Updates the Booking with the ID provided in the database. Performs validation, and will return a JAX-RS response
      * with either 200 (ok), or with a map of fields, and related errors.</p>
@@ -236,7 +404,7 @@ public class BookingRestService {
             throw new RestServiceException(e);
         }
 
-        log.info("cancelBooking completed. Booking = " + booking);
+        log.log(Level.FINE, "cancelBooking completed. Booking = {0}", booking);
         return builder.build();
     }
 }
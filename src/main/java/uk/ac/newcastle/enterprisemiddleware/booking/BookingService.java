@@ -1,11 +1,15 @@
 package uk.ac.newcastle.enterprisemiddleware.booking;
 
+import io.micrometer.core.annotation.Timed;
+
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.validation.ConstraintViolationException;
 import java.util.Date;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -14,6 +18,7 @@ import java.util.logging.Logger;
  * @see BookingValidator
  * @see BookingRepository
  */
+@Timed("app.service")
 @Dependent
 public class BookingService {
     @Inject
@@ -26,6 +31,9 @@ public class BookingService {
     @Inject
     BookingRepository crud;
 
+    @Inject
+    HotelAvailabilityIndex availabilityIndex;
+
     /**
      * <p>Returns a List of all persisted {@link Booking} objects, sorted alphabetically by Id.<p/>
      *
@@ -70,29 +78,106 @@ public class BookingService {
      *
      * @param hotelId The hotelId field of the Booking to be returned
      * @param bookingDate The bookingDate field of the Booking to be returned
-     * @return The Booking with the specified hotelId and bookingDate
+     * @return The Booking with the specified hotelId and bookingDate; or null if there is none
      */
     Booking findByHotelAndDate(Long hotelId, Date bookingDate){
         return crud.findByHotelAndDate(hotelId,bookingDate);
     }
 
+    /**
+     * <p>Returns a page of Booking objects matching any combination of customerId, hotelId and bookingDate.</p>
+     *
+     * @param customerId The customerId field of the Bookings to be returned; or null
+     * @param hotelId The hotelId field of the Bookings to be returned; or null
+     * @param bookingDate The bookingDate field of the Bookings to be returned; or null
+     * @param after The id after which the page starts; or null for the first page
+     * @param offset The number of matching Bookings to skip
+     * @param limit The maximum number of Bookings to return; or null for no limit
+     * @return The Bookings matching every supplied filter
+     */
+    List<Booking> findByFilter(Long customerId, Long hotelId, Date bookingDate, Long after, int offset, Integer limit){
+        return crud.findByFilter(customerId, hotelId, bookingDate, after, offset, limit);
+    }
+
+    /**
+     * <p>Returns the Booking objects matching any combination of customerId, hotelId and bookingDate as a stream.</p>
+     *
+     * @param customerId The customerId field of the Bookings to be returned; or null
+     * @param hotelId The hotelId field of the Bookings to be returned; or null
+     * @param bookingDate The bookingDate field of the Bookings to be returned; or null
+     * @param after The id after which the stream starts; or null to start from the first Booking
+     * @return The Bookings matching every supplied filter, as a stream that has to be closed
+     */
+    Stream<Booking> streamByFilter(Long customerId, Long hotelId, Date bookingDate, Long after){
+        return crud.streamByFilter(customerId, hotelId, bookingDate, after);
+    }
+
     /**
      * <p>Writes the provided Booking object to the application database.<p/>
      *
-     * <p>Validates the data in the provided Booking object using a {@link BookingValidator} object.<p/>
+     * <p>Validates the data in the provided Booking object using a {@link BookingValidator} object, then claims the
+     * hotel and date in the {@link HotelAvailabilityIndex} until the transaction completes, so of several requests
+     * racing for the same hotel and date only one gets to write; the others fail straight away.<p/>
      *
      * @param booking The Booking object to be written to the database using a {@link BookingRepository} object
      * @return The Booking object that has been successfully written to the application database
+     * @throws UniqueHotelAndDateException If the hotel is booked on that date, or is being booked by another request
      * @throws Exception
      */
     public Booking create(Booking booking) throws Exception {
-        log.info("BookingService.create() - Creating " + booking.getHotelId() + " _ " + booking.getBookingDate());
+        log.fine(() -> "BookingService.create() - Creating " + booking.getHotelId() + " _ " + booking.getBookingDate());
         validator.validateBooking(booking);
 
+        if (!availabilityIndex.claim(booking)) {
+            validator.claimConflict();
+            throw new UniqueHotelAndDateException("Unique Hotel And Date Violation");
+        }
         return crud.create(booking);
     }
 
 
+    /**
+     * <p>Checks the provided Booking object using a {@link BookingValidator} object, without writing it.<p/>
+     *
+     * @param booking The Booking object to be validated
+     * @throws ConstraintViolationException If Bean Validation errors exist
+     * @throws UniqueHotelAndDateException If a Booking for the same hotel and date already exists
+     */
+    void validate(Booking booking) throws ConstraintViolationException, UniqueHotelAndDateException {
+        validator.validateBooking(booking);
+    }
+
+    /**
+     * <p>Claims the hotel and date of a validated Booking in the {@link HotelAvailabilityIndex} until the transaction
+     * completes, as {@link #create(Booking)} does. The claim is dropped if the transaction rolls back, and the date
+     * marked as taken if it commits.<p/>
+     *
+     * @param booking The Booking about to be written to the database
+     * @return true if the hotel and date have been claimed; false if they are being booked by another request
+     */
+    boolean claim(Booking booking) {
+        if (availabilityIndex.claim(booking)) {
+            return true;
+        }
+        validator.claimConflict();
+        return false;
+    }
+
+    /**
+     * <p>Writes the provided Booking objects, which must already have been validated with {@link #validate(Booking)}
+     * and claimed with {@link #claim(Booking)} in the same transaction, to the application database in JDBC
+     * batches.<p/>
+     *
+     * @param bookings The Booking objects to be written to the database
+     * @return The Booking objects that have been successfully written to the application database
+     * @throws Exception
+     */
+    List<Booking> createAll(List<Booking> bookings) throws Exception {
+        log.fine(() -> "BookingService.createAll() - Creating " + bookings.size() + " bookings");
+
+        return crud.createAll(bookings);
+    }
+
     /**
      * <p>Deletes the provided Booking object from the application database if found there.<p/>
      *
@@ -101,14 +186,15 @@ public class BookingService {
      * @throws Exception
      */
     public Booking delete(Booking booking) throws Exception {
-        log.info("delete() - Deleting " + booking.toString());
+        log.fine(() -> "delete() - Deleting " + booking.toString());
 
         Booking deletedBooking = null;
 
         if (booking.getId() != null) {
             deletedBooking = crud.delete(booking);
+            availabilityIndex.release(booking);
         } else {
-            log.info("delete() - No ID was found so can't Delete.");
+            log.fine("delete() - No ID was found so can't Delete.");
         }
 
         return deletedBooking;
@@ -1,8 +1,11 @@
 package uk.ac.newcastle.enterprisemiddleware.booking;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.Validator;
@@ -13,6 +16,9 @@ import java.util.Set;
 /**
  * <p>This class provides methods to check Booking objects against arbitrary requirements.</p>
  *
+ * <p>Bookings refused because the hotel is already booked that day are counted by the {@code booking.conflicts}
+ * counter, tagged with the check that refused them.</p>
+ *
  * @author Howie
  * @see Booking
  * @see BookingRepository
@@ -26,19 +32,57 @@ public class BookingValidator {
     @Inject
     BookingRepository crud;
 
+    @Inject
+    HotelAvailabilityIndex availabilityIndex;
+
+    @Inject
+    MeterRegistry registry;
+
+    private Counter validationConflicts;
+    private Counter claimConflicts;
+
+    @PostConstruct
+    void init() {
+        validationConflicts = conflictCounter("validation");
+        claimConflicts = conflictCounter("claim");
+    }
+
     /**
      * <p>Validates the given Booking object and throws validation exceptions based on the type of error. If the error is standard
      * bean validation errors then it will throw a ConstraintValidationException with the set of the constraints violated.<p/>
      *
+     * <p>If the error is caused because the hotel is already booked on that date it throws a UniqueHotelAndDateException
+     * so that it can be interpreted separately.</p>
+     *
      * @param booking The Booking object to be validated
      * @throws ConstraintViolationException If Bean Validation errors exist
+     * @throws UniqueHotelAndDateException If a Booking for the same hotel and date already exists
      */
-    void validateBooking(Booking booking) throws ConstraintViolationException {
+    void validateBooking(Booking booking) throws ConstraintViolationException, UniqueHotelAndDateException {
         Set<ConstraintViolation<Booking>> violations = validator.validate(booking);
 
         if (!violations.isEmpty()) {
             throw new ConstraintViolationException(new HashSet<ConstraintViolation<?>>(violations));
         }
+
+        if (hotelAndDateAlreadyExists(booking.getHotelId(), booking.getBookingDate(), booking.getId())) {
+            validationConflicts.increment();
+            throw new UniqueHotelAndDateException("Unique Hotel And Date Violation");
+        }
+    }
+
+    /**
+     * <p>Counts a Booking that passed validation but lost the claim on its hotel and date to a concurrent one.</p>
+     */
+    void claimConflict() {
+        claimConflicts.increment();
+    }
+
+    private Counter conflictCounter(String check) {
+        return Counter.builder("booking.conflicts")
+                .description("Bookings refused because the hotel is already booked that day")
+                .tag("check", check)
+                .register(registry);
     }
 
     /**
@@ -48,30 +92,24 @@ public class BookingValidator {
      * <p>Since Update will being using hotelId and booking_date that is already in the database we need to make sure that it is the hotelId and booking_date
      * from the record being updated.</p>
      *
+     * <p>The check is answered by the {@link HotelAvailabilityIndex}; the database is only consulted when a taken date
+     * has to be matched against the record being updated.</p>
+     *
      * @param hotelId The hotelId and bookingDate to check is unique
      * @param bookingDate The hotelId and bookingDate to check is unique
      * @param id The booking id to check the email against if it was found
      * @return boolean which represents whether the email was found, and if so if it belongs to the Booking with hotelId and booking_date
      */
     boolean hotelAndDateAlreadyExists(Long hotelId, Date bookingDate, Long id) {
-        Booking booking = null;
-        Booking bookingWithID = null;
-        try {
-            booking = crud.findByHotelAndDate(hotelId,bookingDate);
-        } catch (NoResultException e) {
-            // ignore
-        }
+        boolean booked = availabilityIndex.isBooked(hotelId, bookingDate);
 
-        if (booking != null && id != null) {
-            try {
-                bookingWithID = crud.findById(id);
-                if (bookingWithID != null && bookingWithID.getHotelId().equals(hotelId) && bookingWithID.getBookingDate().equals(bookingDate)) {
-                    booking = null;
-                }
-            } catch (NoResultException e) {
-                // ignore
+        if (booked && id != null) {
+            Booking bookingWithID = crud.findById(id);
+            if (bookingWithID != null && bookingWithID.getHotelId().equals(hotelId)
+                    && HotelAvailabilityIndex.epochDay(bookingWithID.getBookingDate()) == HotelAvailabilityIndex.epochDay(bookingDate)) {
+                booked = false;
             }
         }
-        return booking != null;
+        return booked;
     }
 }
@@ -0,0 +1,320 @@
+package uk.ac.newcastle.enterprisemiddleware.booking;
+
+import io.quarkus.runtime.StartupEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.Transactional;
+import javax.transaction.TransactionSynchronizationRegistry;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * <p>Keeps the booked dates of every hotel in memory, so availability can be answered without a database round trip.</p>
+ *
+ * <p>Each hotel has a bitset indexed by epoch day, holding one bit per date that has a {@link Booking}. The index is
+ * loaded from the database on startup and kept up to date by {@link BookingService}; changes made inside a transaction
+ * are only applied once that transaction commits, so a rolled back booking never shows up as taken.</p>
+ *
+ * <p>While a new Booking is being written, its date is claimed: until the transaction completes, every other attempt
+ * to book the same hotel on the same date is turned away at once instead of running into the unique constraint at
+ * commit. Claims and the dates they cover are checked and changed under one of {@value #LOCK_STRIPES} locks chosen by
+ * hotel and date, so contenders for different slots rarely wait on each other, and never for longer than the check.</p>
+ *
+ * <p>The unique constraint on the booking table remains the final word on whether a date is free.</p>
+ *
+ * @author Howie
+ * @see BookingService
+ * @see BookingValidator
+ */
+@ApplicationScoped
+public class HotelAvailabilityIndex {
+
+    /** Number of locks the (hotel, date) slots are spread over. */
+    static final int LOCK_STRIPES = 64;
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    BookingRepository crud;
+
+    @Inject
+    TransactionSynchronizationRegistry transactionRegistry;
+
+    private final ConcurrentMap<Long, BookedDays> bookedDays = new ConcurrentHashMap<>();
+
+    /** The (hotel, date) slots claimed by transactions in progress; each is removed when its transaction completes. */
+    private final Set<Slot> claimedSlots = ConcurrentHashMap.newKeySet();
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    {
+        Arrays.setAll(locks, i -> new Object());
+    }
+
+    /**
+     * <p>Loads the dates of every persisted Booking into the index, reading only the hotel id and date of each row.</p>
+     */
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        log.info("HotelAvailabilityIndex -- onStart starts execution.");
+        try (Stream<Object[]> rows = crud.streamBookedDates()) {
+            rows.forEach(row -> days((Long) row[0]).set(epochDay((Date) row[1])));
+        }
+        log.info(() -> "HotelAvailabilityIndex -- onStart completes execution. hotels = " + bookedDays.size());
+    }
+
+    /**
+     * <p>Checks whether the given hotel is booked on the given date.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param bookingDate The date to check
+     * @return true if a Booking exists for the hotel on that date
+     */
+    public boolean isBooked(Long hotelId, Date bookingDate) {
+        BookedDays days = bookedDays.get(hotelId);
+        return days != null && days.get(epochDay(bookingDate));
+    }
+
+    /**
+     * <p>Returns the booked dates of a hotel between two dates, both inclusive.</p>
+     *
+     * @param hotelId The id of the hotel
+     * @param from The first date of the range
+     * @param to The last date of the range
+     * @return A BitSet in which bit i is set if the hotel is booked on from + i days
+     */
+    public BitSet bookedBetween(Long hotelId, LocalDate from, LocalDate to) {
+        BookedDays days = bookedDays.get(hotelId);
+        if (days == null) {
+            return new BitSet();
+        }
+        return days.range(from.toEpochDay(), to.toEpochDay());
+    }
+
+    /**
+     * <p>Claims the date of the given Booking for the current transaction, unless the hotel is booked on that date or
+     * the date is claimed by another transaction.</p>
+     *
+     * <p>Once the transaction completes the claim is dropped, and if it committed the date is marked as taken, so
+     * {@link #book(Booking)} need not be called for a claimed Booking.</p>
+     *
+     * @param booking The Booking about to be written to the database
+     * @return true if the date has been claimed; false if it is taken or claimed already
+     */
+    public boolean claim(Booking booking) {
+        long hotelId = booking.getHotelId();
+        long day = epochDay(booking.getBookingDate());
+        Object lock = lock(hotelId, day);
+        Slot slot = new Slot(hotelId, day);
+        synchronized (lock) {
+            BookedDays booked = bookedDays.get(hotelId);
+            if ((booked != null && booked.get(day)) || !claimedSlots.add(slot)) {
+                return false;
+            }
+        }
+        afterCompletion(committed -> {
+            synchronized (lock) {
+                if (committed) {
+                    days(hotelId).set(day);
+                }
+                claimedSlots.remove(slot);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * <p>Marks the date of the given Booking as taken once the current transaction commits.</p>
+     *
+     * @param booking The Booking that has been written to the database
+     */
+    public void book(Booking booking) {
+        long hotelId = booking.getHotelId();
+        long day = epochDay(booking.getBookingDate());
+        afterCommit(() -> days(hotelId).set(day));
+    }
+
+    /**
+     * <p>Marks the date of the given Booking as free once the current transaction commits.</p>
+     *
+     * @param booking The Booking that has been removed from the database
+     */
+    public void release(Booking booking) {
+        long hotelId = booking.getHotelId();
+        long day = epochDay(booking.getBookingDate());
+        afterCommit(() -> {
+            BookedDays days = bookedDays.get(hotelId);
+            if (days != null) {
+                days.clear(day);
+            }
+        });
+    }
+
+    /**
+     * <p>Forgets every date of the given hotel once the current transaction commits.</p>
+     *
+     * @param hotelId The id of the hotel that has been removed from the database
+     */
+    public void releaseHotel(Long hotelId) {
+        afterCommit(() -> bookedDays.remove(hotelId));
+    }
+
+    private BookedDays days(Long hotelId) {
+        return bookedDays.computeIfAbsent(hotelId, id -> new BookedDays());
+    }
+
+    private Object lock(long hotelId, long day) {
+        return locks[Math.floorMod(Long.hashCode(hotelId * 31 + day), LOCK_STRIPES)];
+    }
+
+    private void afterCommit(Runnable update) {
+        afterCompletion(committed -> {
+            if (committed) {
+                update.run();
+            }
+        });
+    }
+
+    /**
+     * <p>Runs the update once the current transaction has completed, telling it whether the transaction committed; or
+     * right away, as committed, if there is no transaction.</p>
+     */
+    private void afterCompletion(Consumer<Boolean> update) {
+        if (transactionRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            update.accept(true);
+            return;
+        }
+        transactionRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                update.accept(status == Status.STATUS_COMMITTED);
+            }
+        });
+    }
+
+    /**
+     * <p>Converts a booking date to an epoch day the same way it is written to the DATE column, i.e. in the default
+     * time zone.</p>
+     */
+    static long epochDay(Date date) {
+        if (date instanceof java.sql.Date) {
+            return ((java.sql.Date) date).toLocalDate().toEpochDay();
+        }
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * <p>A date of a hotel, as a key of the claimed slots.</p>
+     */
+    private static final class Slot {
+
+        private final long hotelId;
+        private final long day;
+
+        Slot(long hotelId, long day) {
+            this.hotelId = hotelId;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Slot)) {
+                return false;
+            }
+            Slot other = (Slot) o;
+            return hotelId == other.hotelId && day == other.day;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hotelId * 31 + day);
+        }
+    }
+
+    /**
+     * <p>A growable bitset over epoch days. Words are only allocated for the span of dates that has been booked.</p>
+     */
+    static final class BookedDays {
+
+        private long[] words = new long[0];
+
+        /** Index of words[0], counted in 64-day words from the epoch. */
+        private long firstWord;
+
+        synchronized boolean get(long day) {
+            return (wordAt(day >> 6) & (1L << day)) != 0;
+        }
+
+        synchronized void set(long day) {
+            long word = day >> 6;
+            ensureCapacity(word);
+            words[(int) (word - firstWord)] |= 1L << day;
+        }
+
+        synchronized void clear(long day) {
+            long word = day >> 6;
+            if (word >= firstWord && word < firstWord + words.length) {
+                words[(int) (word - firstWord)] &= ~(1L << day);
+            }
+        }
+
+        synchronized BitSet range(long fromDay, long toDay) {
+            if (toDay < fromDay) {
+                return new BitSet();
+            }
+            long length = toDay - fromDay + 1;
+            long[] result = new long[(int) ((length + 63) >> 6)];
+            int shift = (int) (fromDay & 63);
+            long word = fromDay >> 6;
+            for (int i = 0; i < result.length; i++, word++) {
+                result[i] = shift == 0
+                        ? wordAt(word)
+                        : (wordAt(word) >>> shift) | (wordAt(word + 1) << (64 - shift));
+            }
+            int tail = (int) (length & 63);
+            if (tail != 0) {
+                result[result.length - 1] &= (1L << tail) - 1;
+            }
+            return BitSet.valueOf(result);
+        }
+
+        private long wordAt(long word) {
+            long index = word - firstWord;
+            return index < 0 || index >= words.length ? 0L : words[(int) index];
+        }
+
+        private void ensureCapacity(long word) {
+            if (words.length == 0) {
+                words = new long[1];
+                firstWord = word;
+            } else if (word < firstWord) {
+                long[] grown = new long[(int) (firstWord + words.length - word)];
+                System.arraycopy(words, 0, grown, (int) (firstWord - word), words.length);
+                words = grown;
+                firstWord = word;
+            } else if (word >= firstWord + words.length) {
+                words = Arrays.copyOf(words, (int) (word - firstWord + 1));
+            }
+        }
+    }
+}
@@ -7,6 +7,9 @@ import javax.validation.ValidationException;
  *
  * <p>This violates the uniqueness constraint.</p>
  *
+ * <p>It is an expected outcome of a request with a hotel and date that are already booked, turned into a 409 response,
+ * so no stack trace is filled in.</p>
+ *
  * @author howie
  */
 public class UniqueHotelAndDateException extends ValidationException {
@@ -21,4 +24,9 @@ public class UniqueHotelAndDateException extends ValidationException {
     public UniqueHotelAndDateException(Throwable cause) {
         super(cause);
     }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
@@ -1,5 +1,10 @@
 package uk.ac.newcastle.enterprisemiddleware.contact;
 
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import uk.ac.newcastle.enterprisemiddleware.util.PooledSequenceGenerator;
+
 import javax.persistence.*;
 import javax.validation.constraints.*;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -35,7 +40,9 @@ public class Contact implements Serializable {
     public static final String FIND_BY_EMAIL = "Contact.findByEmail";
 
     @Id
-    @GeneratedValue(strategy = GenerationType.TABLE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "CONTACT_ID")
+    @GenericGenerator(name = "CONTACT_ID", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "contact_seq"))
     private Long id;
 
     @NotNull
@@ -1,5 +1,7 @@
 package uk.ac.newcastle.enterprisemiddleware.contact;
 
+import io.micrometer.core.annotation.Timed;
+
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -23,6 +25,7 @@ import java.util.logging.Logger;
  * @see Contact
  * @see javax.persistence.EntityManager
  */
+@Timed("app.repository")
 @RequestScoped
 public class ContactRepository {
 
@@ -111,7 +114,7 @@ public class ContactRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact create(Contact contact) throws Exception {
-        log.info("ContactRepository.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
+        log.fine(() -> "ContactRepository.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
 
         // Write the contact to the database.
         em.persist(contact);
@@ -133,7 +136,7 @@ public class ContactRepository {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact update(Contact contact) throws Exception {
-        log.info("ContactRepository.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
+        log.fine(() -> "ContactRepository.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
 
         // Either update the contact or add it if it can't be found.
         em.merge(contact);
@@ -149,7 +152,7 @@ public class ContactRepository {
      * @throws Exception
      */
     Contact delete(Contact contact) throws Exception {
-        log.info("ContactRepository.delete() - Deleting " + contact.getFirstName() + " " + contact.getLastName());
+        log.fine(() -> "ContactRepository.delete() - Deleting " + contact.getFirstName() + " " + contact.getLastName());
 
         if (contact.getId() != null) {
             /*
@@ -168,7 +171,7 @@ public class ContactRepository {
             em.remove(em.merge(contact));
 
         } else {
-            log.info("ContactRepository.delete() - No ID was found so can't Delete.");
+            log.fine("ContactRepository.delete() - No ID was found so can't Delete.");
         }
 
         return contact;
@@ -145,7 +145,7 @@ public class ContactRestService {
             // Verify that the contact exists. Return 404, if not present.
             throw new RestServiceException("No Contact with the id " + id + " was found!", Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Contact = " + contact);
+        log.fine(() -> "findById " + id + ": found Contact = " + contact);
 
         return Response.ok(contact).build();
     }
@@ -212,7 +212,7 @@ public class ContactRestService {
             throw new RestServiceException(e);
         }
 
-        log.info("createContact completed. Contact = " + contact);
+        log.fine(() -> "createContact completed. Contact = " + contact);
         return builder.build();
     }
 
@@ -294,7 +294,7 @@ public class ContactRestService {
             throw new RestServiceException(e);
         }
 
-        log.info("updateContact completed. Contact = " + contact);
+        log.fine(() -> "updateContact completed. Contact = " + contact);
         return builder.build();
     }
 
@@ -339,7 +339,7 @@ public class ContactRestService {
             // Handle generic exceptions
             throw new RestServiceException(e);
         }
-        log.info("deleteContact completed. Contact = " + contact);
+        log.fine(() -> "deleteContact completed. Contact = " + contact);
         return builder.build();
     }
 }
\ No newline at end of file
@@ -1,17 +1,14 @@
 package uk.ac.newcastle.enterprisemiddleware.contact;
 
 
-import org.eclipse.microprofile.rest.client.inject.RestClient;
+import io.micrometer.core.annotation.Timed;
 import uk.ac.newcastle.enterprisemiddleware.area.Area;
-import uk.ac.newcastle.enterprisemiddleware.area.AreaService;
-import uk.ac.newcastle.enterprisemiddleware.area.InvalidAreaCodeException;
+import uk.ac.newcastle.enterprisemiddleware.area.AreaCodeTable;
 
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.validation.ConstraintViolationException;
-import javax.ws.rs.ClientErrorException;
-import javax.ws.rs.core.Response;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -29,6 +26,7 @@ import java.util.logging.Logger;
  * @see ContactValidator
  * @see ContactRepository
  */
+@Timed("app.service")
 @Dependent
 public class ContactService {
 
@@ -42,9 +40,8 @@ public class ContactService {
     @Inject
     ContactRepository crud;
 
-    //Removed temporarily due to non-existing AreaService
-    @RestClient
-    AreaService areaService;
+    @Inject
+    AreaCodeTable areaCodeTable;
 
     /**
      * <p>Returns a List of all persisted {@link Contact} objects, sorted alphabetically by last name.<p/>
@@ -107,25 +104,14 @@ public class ContactService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact create(Contact contact) throws Exception {
-        log.info("ContactService.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
+        log.fine(() -> "ContactService.create() - Creating " + contact.getFirstName() + " " + contact.getLastName());
 
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateContact(contact);
 
-
-
-        //Create client service instance to make REST requests to upstream service
-        try {
-            //Removed temporarily due to non-existing AreaService
-             Area area = areaService.getAreaById(Integer.parseInt(contact.getPhoneNumber().substring(1, 4)));
-             contact.setState(area.getState());
-        } catch (ClientErrorException e) {
-            if (e.getResponse().getStatusInfo() == Response.Status.NOT_FOUND) {
-                throw new InvalidAreaCodeException("The area code provided does not exist", e);
-            } else {
-                throw e;
-            }
-        }
+        // Look the area code up in the preloaded table; throws InvalidAreaCodeException if it does not exist.
+        Area area = areaCodeTable.findById(Integer.parseInt(contact.getPhoneNumber().substring(1, 4)));
+        contact.setState(area.getState());
 
         // Write the contact to the database.
         return crud.create(contact);
@@ -141,22 +127,14 @@ public class ContactService {
      * @throws ConstraintViolationException, ValidationException, Exception
      */
     Contact update(Contact contact) throws Exception {
-        log.info("ContactService.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
+        log.fine(() -> "ContactService.update() - Updating " + contact.getFirstName() + " " + contact.getLastName());
 
         // Check to make sure the data fits with the parameters in the Contact model and passes validation.
         validator.validateContact(contact);
 
-        try {
-            //Removed temporarily due to non-existing AreaService
-            Area area = areaService.getAreaById(Integer.parseInt(contact.getPhoneNumber().substring(1, 4)));
-            contact.setState(area.getState());
-        } catch (ClientErrorException e) {
-            if (e.getResponse().getStatusInfo() == Response.Status.NOT_FOUND) {
-                throw new InvalidAreaCodeException("The area code provided does not exist", e);
-            } else {
-                throw e;
-            }
-        }
+        // Look the area code up in the preloaded table; throws InvalidAreaCodeException if it does not exist.
+        Area area = areaCodeTable.findById(Integer.parseInt(contact.getPhoneNumber().substring(1, 4)));
+        contact.setState(area.getState());
 
         // Either update the contact or add it if it can't be found.
         return crud.update(contact);
@@ -170,14 +148,14 @@ public class ContactService {
      * @throws Exception
      */
     Contact delete(Contact contact) throws Exception {
-        log.info("delete() - Deleting " + contact.toString());
+        log.fine(() -> "delete() - Deleting " + contact.toString());
 
         Contact deletedContact = null;
 
         if (contact.getId() != null) {
             deletedContact = crud.delete(contact);
         } else {
-            log.info("delete() - No ID was found so can't Delete.");
+            log.fine("delete() - No ID was found so can't Delete.");
         }
 
         return deletedContact;
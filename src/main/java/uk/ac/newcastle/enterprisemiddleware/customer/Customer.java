@@ -1,7 +1,13 @@
 package uk.ac.newcastle.enterprisemiddleware.customer;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.util.PooledSequenceGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.*;
@@ -12,17 +18,25 @@ import java.util.List;
 /**
  * <p>this is a Domain object.<p/>
  * <p>The Customer class represents how customer resources are represented in the application database.<p/>
+ * <p>Customers are read far more often than they change, so they are kept in the second-level cache, by id and by
+ * email.<p/>
  *
  * @author Howie
  */
 
 @Entity
+@Cacheable
+@NaturalIdCache
 @NamedQueries({
         @NamedQuery(name = Customer.FIND_ALL, query = "SELECT c FROM Customer c ORDER BY c.id ASC"),
         @NamedQuery(name = Customer.FIND_BY_EMAIL, query = "SELECT c FROM Customer c WHERE c.email = :email"),
 })
 @XmlRootElement
-@Table(name = "customer", uniqueConstraints = @UniqueConstraint(columnNames = "email"))
+@Table(name = "customer", uniqueConstraints = @UniqueConstraint(columnNames = "email"), indexes = {
+        @Index(name = "idx_customer_first_name", columnList = "first_name"),
+        @Index(name = "idx_customer_last_name", columnList = "last_name"),
+        @Index(name = "idx_customer_phone_number", columnList = "phone_number")
+})
 public class Customer implements Serializable {
 
     private static final long serialVersionUID = 13423525325134325L;
@@ -31,8 +45,9 @@ public class Customer implements Serializable {
     public static final String FIND_BY_EMAIL = "Customer.findByEmail";
 
     @Id
-    @TableGenerator(name = "CUSTOMER_ID",table = "PK_CUSTOMER_GENERATE_TABLE")
-    @GeneratedValue(strategy = GenerationType.TABLE,generator = "CUSTOMER_ID")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "CUSTOMER_ID")
+    @GenericGenerator(name = "CUSTOMER_ID", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "customer_seq"))
     private Long id;
 
     @NotNull
@@ -52,6 +67,7 @@ public class Customer implements Serializable {
     @NotNull
     @NotEmpty
     @Email(message = "The email address must be in the format of name@domain.com")
+    @NaturalId(mutable = true)
     private String email;
 
     @NotNull
@@ -177,7 +193,6 @@ public class Customer implements Serializable {
                 ", lastName='" + lastName + '\'' +
                 ", email='" + email + '\'' +
                 ", phoneNumber='" + phoneNumber + '\'' +
-                ", bookingList=" + bookingList +
                 '}';
     }
 }
@@ -1,5 +1,8 @@
 package uk.ac.newcastle.enterprisemiddleware.customer;
 
+import io.micrometer.core.annotation.Timed;
+import org.hibernate.Session;
+
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -7,9 +10,15 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import uk.ac.newcastle.enterprisemiddleware.util.EntityStreams;
+
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link CustomerService} with the
@@ -19,6 +28,7 @@ import java.util.logging.Logger;
  * @see Customer
  * @see javax.persistence.EntityManager
  */
+@Timed("app.repository")
 @RequestScoped
 public class CustomerRepository {
 
@@ -35,10 +45,27 @@ public class CustomerRepository {
      *  @return List of Customer objects
      */
     List<Customer> findAllCustomer(){
-        log.info("CustomerRepository -- findAllCustomer method starts execution.");
+        log.fine("CustomerRepository -- findAllCustomer method starts execution.");
         TypedQuery<Customer> query = em.createNamedQuery(Customer.FIND_ALL, Customer.class);
         List<Customer> resultList = query.getResultList();
-        log.info("CustomerRepository -- findAllCustomer method completes execution.");
+        log.fine("CustomerRepository -- findAllCustomer method completes execution.");
+        return resultList;
+    }
+
+    /**
+     * <p>Returns the ids, out of those given, that belong to a persisted {@link Customer}, using a single IN query.</p>
+     *
+     * @param ids The ids to look up
+     * @return The ids of the Customers that exist
+     */
+    List<Long> findExistingIds(Collection<Long> ids){
+        log.fine("CustomerRepository -- findExistingIds method starts execution.");
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> criteria = cb.createQuery(Long.class);
+        Root<Customer> customer = criteria.from(Customer.class);
+        criteria.select(customer.get("id")).where(customer.get("id").in(ids));
+        List<Long> resultList = em.createQuery(criteria).getResultList();
+        log.fine("CustomerRepository -- findExistingIds method completes execution.");
         return resultList;
     }
 
@@ -49,24 +76,26 @@ public class CustomerRepository {
      * @return The Customer with the specified id
      */
     Customer findById(Long id){
-        log.info("CustomerRepository -- findByUserName method starts execution.");
+        log.fine("CustomerRepository -- findByUserName method starts execution.");
         Customer customer = em.find(Customer.class, id);
-        log.info("CustomerRepository -- findByUserName method completes execution.");
+        log.fine("CustomerRepository -- findByUserName method completes execution.");
         return customer;
     }
 
     /**
      * <p>Returns a single Customer object, specified by a String email.</p>
      *
+     * <p>The email is the natural id of a Customer, so the lookup is answered from the second-level cache when the
+     * Customer has been loaded before.</p>
+     *
      * @param email The email field of the Customer to be returned
-     * @return The Customer with the specified email
+     * @return The Customer with the specified email; or null if there is none
      */
     Customer findByEmail(String email) {
-        log.info("CustomerRepository -- findByEmail method starts execution.");
-        TypedQuery<Customer> query = em.createNamedQuery(Customer.FIND_BY_EMAIL, Customer.class).setParameter("email", email);
-        Customer singleResult = query.getSingleResult();
-        log.info("CustomerRepository -- findByEmail method completes execution.");
-        return singleResult;
+        log.fine("CustomerRepository -- findByEmail method starts execution.");
+        Customer customer = em.unwrap(Session.class).bySimpleNaturalId(Customer.class).load(email);
+        log.fine("CustomerRepository -- findByEmail method completes execution.");
+        return customer;
     }
 
     /**
@@ -76,13 +105,13 @@ public class CustomerRepository {
      * @return The Customer with the specified phoneNumber
      */
     List<Customer> findByPhoneNumber(String phoneNumber) {
-        log.info("CustomerRepository -- findByPhoneNumber method starts execution.");
+        log.fine("CustomerRepository -- findByPhoneNumber method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Customer> criteria = cb.createQuery(Customer.class);
         Root<Customer> customer = criteria.from(Customer.class);
         criteria.select(customer).where(cb.equal(customer.get("phoneNumber"), phoneNumber));
         List<Customer> resultList = em.createQuery(criteria).getResultList();
-        log.info("CustomerRepository -- findByPhoneNumber method completes execution.");
+        log.fine("CustomerRepository -- findByPhoneNumber method completes execution.");
         return resultList;
     }
 
@@ -93,13 +122,13 @@ public class CustomerRepository {
      * @return The Customers with the specified firstName
      */
     List<Customer> findAllByFirstName(String firstName) {
-        log.info("CustomerRepository -- findAllByFirstName method starts execution.");
+        log.fine("CustomerRepository -- findAllByFirstName method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Customer> criteria = cb.createQuery(Customer.class);
         Root<Customer> customer = criteria.from(Customer.class);
         criteria.select(customer).where(cb.equal(customer.get("firstName"), firstName));
         List<Customer> resultList = em.createQuery(criteria).getResultList();
-        log.info("CustomerRepository -- findByPhoneNumber method completes execution.");
+        log.fine("CustomerRepository -- findByPhoneNumber method completes execution.");
         return resultList;
     }
 
@@ -110,16 +139,73 @@ public class CustomerRepository {
      * @return The Customers with the specified lastName
      */
     List<Customer> findAllByLastName(String lastName) {
-        log.info("CustomerRepository -- findAllByLastName method starts execution.");
+        log.fine("CustomerRepository -- findAllByLastName method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Customer> criteria = cb.createQuery(Customer.class);
         Root<Customer> customer = criteria.from(Customer.class);
         criteria.select(customer).where(cb.equal(customer.get("lastName"), lastName));
         List<Customer> resultList = em.createQuery(criteria).getResultList();
-        log.info("CustomerRepository -- findAllByLastName method completes execution.");
+        log.fine("CustomerRepository -- findAllByLastName method completes execution.");
+        return resultList;
+    }
+
+    /**
+     * <p>Returns a page of Customer objects matching any combination of firstName and lastName, sorted by id.</p>
+     *
+     * <p>The page starts after the Customer with the id given as cursor, so it is read from the primary key index
+     * however deep into the table it lies.</p>
+     *
+     * @param firstName The firstName field of the Customers to be returned; or null
+     * @param lastName The lastName field of the Customers to be returned; or null
+     * @param after The id after which the page starts; or null for the first page
+     * @param limit The maximum number of Customers to return; or null for no limit
+     * @return The Customers matching every supplied filter
+     */
+    List<Customer> findByFilter(String firstName, String lastName, Long after, Integer limit) {
+        log.fine("CustomerRepository -- findByFilter method starts execution.");
+        TypedQuery<Customer> query = em.createQuery(filter(firstName, lastName, after));
+        if (limit != null) {
+            query.setMaxResults(limit);
+        }
+        List<Customer> resultList = query.getResultList();
+        log.fine("CustomerRepository -- findByFilter method completes execution.");
         return resultList;
     }
 
+    /**
+     * <p>Returns the Customer objects matching any combination of firstName and lastName, sorted by id, as a stream
+     * read from the database one batch at a time.</p>
+     *
+     * @param firstName The firstName field of the Customers to be returned; or null
+     * @param lastName The lastName field of the Customers to be returned; or null
+     * @param after The id after which the stream starts; or null to start from the first Customer
+     * @return The Customers matching every supplied filter, as a stream that has to be closed
+     * @see EntityStreams#scroll
+     */
+    Stream<Customer> streamByFilter(String firstName, String lastName, Long after) {
+        log.fine("CustomerRepository -- streamByFilter method starts execution.");
+        Stream<Customer> stream = EntityStreams.scroll(em.createQuery(filter(firstName, lastName, after)), em);
+        log.fine("CustomerRepository -- streamByFilter method completes execution.");
+        return stream;
+    }
+
+    private CriteriaQuery<Customer> filter(String firstName, String lastName, Long after) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Customer> criteria = cb.createQuery(Customer.class);
+        Root<Customer> customer = criteria.from(Customer.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (firstName != null) {
+            predicates.add(cb.equal(customer.get("firstName"), firstName));
+        }
+        if (lastName != null) {
+            predicates.add(cb.equal(customer.get("lastName"), lastName));
+        }
+        if (after != null) {
+            predicates.add(cb.gt(customer.get("id"), after));
+        }
+        return criteria.select(customer).where(predicates.toArray(new Predicate[0])).orderBy(cb.asc(customer.get("id")));
+    }
+
     /**
      * <p>Persists the provided Customer object to the application database using the EntityManager.</p>
      *
@@ -128,9 +214,9 @@ public class CustomerRepository {
      * @throws Exception
      */
     Customer create(Customer customer) throws Exception {
-        log.info("CustomerRepository -- create method Creating " + customer.getFirstName() + " " + customer.getLastName());
+        log.fine(() -> "CustomerRepository -- create method Creating " + customer.getFirstName() + " " + customer.getLastName());
         em.persist(customer);
-        log.info("CustomerRepository -- create method completes execution.");
+        log.fine("CustomerRepository -- create method completes execution.");
         return customer;
     }
 
@@ -142,9 +228,9 @@ public class CustomerRepository {
      * @throws Exception
      */
     Customer update(Customer customer) throws Exception {
-        log.info("CustomerRepository -- update method Updating " + customer.getFirstName() + " " + customer.getLastName());
+        log.fine(() -> "CustomerRepository -- update method Updating " + customer.getFirstName() + " " + customer.getLastName());
         em.merge(customer);
-        log.info("CustomerRepository -- update method completes execution.");
+        log.fine("CustomerRepository -- update method completes execution.");
         return customer;
     }
 
@@ -156,13 +242,13 @@ public class CustomerRepository {
      * @throws Exception
      */
     Customer delete(Customer customer) throws Exception {
-        log.info("CustomerRepository -- delete method Deleting " + customer.getFirstName() + " " + customer.getLastName());
+        log.fine(() -> "CustomerRepository -- delete method Deleting " + customer.getFirstName() + " " + customer.getLastName());
         if (customer.getId() != null) {
             em.remove(em.merge(customer));
         } else {
-            log.info("CustomerRepository -- delete method - No Id was found so can't Delete.");
+            log.fine("CustomerRepository -- delete method - No Id was found so can't Delete.");
         }
-        log.info("CustomerRepository -- delete method completes execution.");
+        log.fine("CustomerRepository -- delete method completes execution.");
         return customer;
     }
 
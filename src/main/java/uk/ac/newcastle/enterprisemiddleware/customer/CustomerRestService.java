@@ -1,5 +1,6 @@
 package uk.ac.newcastle.enterprisemiddleware.customer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
@@ -8,11 +9,12 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.jboss.resteasy.reactive.Cache;
 import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
 import uk.ac.newcastle.enterprisemiddleware.booking.BookingService;
+import uk.ac.newcastle.enterprisemiddleware.util.JsonArrayOutput;
+import uk.ac.newcastle.enterprisemiddleware.util.KeysetPage;
 import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.persistence.NoResultException;
 import javax.transaction.Transactional;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
@@ -21,8 +23,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 
 /**
  * <p>This class produces a RESTful service exposing the functionality of {@link CustomerService}.</p>
@@ -46,29 +50,48 @@ public class CustomerRestService {
     @Inject
     BookingService bookingService;
 
+    @Inject
+    ObjectMapper mapper;
+
     /**
      * <p>Return all the Customers.  They are sorted alphabetically by Id.</p>
      *
+     * <p>Without paging parameters every matching Customer is returned. Given a limit or an after cursor, a single page is
+     * returned, and a Link header with rel="next" plus an X-Next-Cursor header point at the next page if there is one.
+     * With stream=true every matching Customer after the cursor is written out while it is read from the database.</p>
+     *
      * @return A Response containing a list of Customers
      */
     @GET
     @Operation(summary = "Fetch all Customers", description = "Returns a JSON array of all stored Customer objects.")
-    public Response retrieveAllCustomers(@QueryParam("firstName") String firstName, @QueryParam("lastName") String lastName) {
-        log.info("CustomerRestService -- retrieveAllCustomers starts execution.");
-        List<Customer> customers;
-
-        if(firstName == null && lastName == null) {
-            customers = service.findAllCustomer();
-        } else if(lastName == null) {
-            customers = service.findAllByFirstName(firstName);
-        } else if(firstName == null) {
-            customers = service.findAllByLastName(lastName);
-        } else {
-            customers = service.findAllByFirstName(firstName);
-            customers.retainAll(service.findAllByLastName(lastName));
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="Customers found"),
+            @APIResponse(responseCode = "400", description = "Invalid paging parameters")
+    })
+    public Response retrieveAllCustomers(@QueryParam("firstName") String firstName, @QueryParam("lastName") String lastName,
+                                         @Parameter(description = "id of the last customer of the previous page")
+                                         @QueryParam("after") Long after,
+                                         @Parameter(description = "maximum number of customers to return")
+                                         @QueryParam("limit") Integer limit,
+                                         @Parameter(description = "write every matching customer as it is read")
+                                         @QueryParam("stream") boolean stream,
+                                         @Context UriInfo uriInfo) {
+        log.fine("CustomerRestService -- retrieveAllCustomers starts execution.");
+        KeysetPage.validate(after, limit);
+
+        if(stream) {
+            log.fine("CustomerRestService -- retrieveAllCustomers completes execution.");
+            return Response.ok(new JsonArrayOutput(service.streamByFilter(firstName, lastName, after), mapper)).build();
+        }
+        if(after == null && limit == null) {
+            List<Customer> customers = service.findByFilter(firstName, lastName, null, null);
+            log.fine("CustomerRestService -- retrieveAllCustomers completes execution.");
+            return Response.ok(customers).build();
         }
-        log.info("CustomerRestService -- retrieveAllCustomers completes execution.");
-        return Response.ok(customers).build();
+        int size = KeysetPage.size(limit);
+        List<Customer> customers = service.findByFilter(firstName, lastName, after, size + 1);
+        log.fine("CustomerRestService -- retrieveAllCustomers completes execution.");
+        return KeysetPage.ok(customers, size, Customer::getId, uriInfo).build();
     }
 
     /**
@@ -91,14 +114,12 @@ public class CustomerRestService {
     public Response retrieveCustomersByEmail(
             @Parameter(description = "Email of Customer to be fetched", required = true)
             @PathParam("email") String email) {
-        log.info("CustomerRestService -- retrieveCustomersByEmail starts execution.");
-        Customer customer;
-        try {
-            customer = service.findByEmail(email);
-        } catch (NoResultException e) {
+        log.fine("CustomerRestService -- retrieveCustomersByEmail starts execution.");
+        Customer customer = service.findByEmail(email);
+        if (customer == null) {
             throw new RestServiceException("No Customer with the email " + email + " was found!", Response.Status.NOT_FOUND);
         }
-        log.info("CustomerRestService -- retrieveCustomersByEmail completes execution.");
+        log.fine("CustomerRestService -- retrieveCustomersByEmail completes execution.");
         return Response.ok(customer).build();
     }
 
@@ -123,12 +144,12 @@ public class CustomerRestService {
             @Parameter(description = "Id of Customer to be fetched")
             @Schema(minimum = "0", required = true)
             @PathParam("id") long id) {
-        log.info("CustomerRestService -- retrieveCustomerById starts execution.");
+        log.fine("CustomerRestService -- retrieveCustomerById starts execution.");
         Customer customer = service.findById(id);
         if (customer == null) {
             throw new RestServiceException("No Customer with the id " + id + " was found!", Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Customer = " + customer);
+        log.fine(() -> "findById " + id + ": found Customer = " + customer);
         return Response.ok(customer).build();
     }
 
@@ -153,7 +174,7 @@ public class CustomerRestService {
             @Parameter(description = "JSON representation of Customer object to be added to the database", required = true)
                     Customer customer) {
 
-        log.info("CustomerRestService -- createCustomer starts execution.");
+        log.fine("CustomerRestService -- createCustomer starts execution.");
 
         if (customer == null) {
             throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
@@ -182,7 +203,7 @@ public class CustomerRestService {
             throw new RestServiceException(e);
         }
 
-        log.info("CustomerRestService -- createCustomer completes execution. Customer = " + customer);
+        log.fine(() -> "CustomerRestService -- createCustomer completes execution. Customer = " + customer);
         return builder.build();
     }
 
@@ -251,7 +272,7 @@ public class CustomerRestService {
             throw new RestServiceException(e);
         }
 
-        log.info("updateCustomer completed. customer = " + customer);
+        log.fine(() -> "updateCustomer completed. customer = " + customer);
         return builder.build();
     }
 
@@ -294,7 +315,7 @@ public class CustomerRestService {
         } catch (Exception e) {
             throw new RestServiceException(e);
         }
-        log.info("deleteContact completed. customer = " + customer);
+        log.fine(() -> "deleteContact completed. customer = " + customer);
         return builder.build();
     }
 }
@@ -1,10 +1,17 @@
 package uk.ac.newcastle.enterprisemiddleware.customer;
 
+import io.micrometer.core.annotation.Timed;
+import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.booking.BookingService;
+import uk.ac.newcastle.enterprisemiddleware.booking.HotelAvailabilityIndex;
+
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.Collection;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -13,6 +20,7 @@ import java.util.logging.Logger;
  * @see CustomerValidator
  * @see CustomerRepository
  */
+@Timed("app.service")
 @Dependent
 public class CustomerService {
 
@@ -26,6 +34,12 @@ public class CustomerService {
     @Inject
     CustomerRepository crud;
 
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    HotelAvailabilityIndex availabilityIndex;
+
     /**
      * <p>Returns a List of all persisted {@link Customer} objects, sorted alphabetically by Id.<p/>
      *
@@ -35,6 +49,16 @@ public class CustomerService {
         return crud.findAllCustomer();
     }
 
+    /**
+     * <p>Returns the ids, out of those given, that belong to a persisted Customer.<p/>
+     *
+     * @param ids The ids to look up
+     * @return The ids of the Customers that exist
+     */
+    public List<Long> findExistingIds(Collection<Long> ids) {
+        return crud.findExistingIds(ids);
+    }
+
     /**
      * <p>Returns a single Customer object, specified by a Long id.<p/>
      *
@@ -51,7 +75,7 @@ public class CustomerService {
      * <p>If there is more than one Customer with the specified email, only the first encountered will be returned.<p/>
      *
      * @param email The email field of the Customer to be returned
-     * @return The first Customer with the specified email
+     * @return The first Customer with the specified email; or null if there is none
      */
     public Customer findByEmail(String email) {
         return crud.findByEmail(email);
@@ -89,6 +113,31 @@ public class CustomerService {
         return crud.findAllByLastName(lastName);
     }
 
+    /**
+     * <p>Returns a page of Customer objects matching any combination of firstName and lastName.<p/>
+     *
+     * @param firstName The firstName field of the Customers to be returned; or null
+     * @param lastName The lastName field of the Customers to be returned; or null
+     * @param after The id after which the page starts; or null for the first page
+     * @param limit The maximum number of Customers to return; or null for no limit
+     * @return The Customers matching every supplied filter
+     */
+    List<Customer> findByFilter(String firstName, String lastName, Long after, Integer limit) {
+        return crud.findByFilter(firstName, lastName, after, limit);
+    }
+
+    /**
+     * <p>Returns the Customer objects matching any combination of firstName and lastName as a stream.<p/>
+     *
+     * @param firstName The firstName field of the Customers to be returned; or null
+     * @param lastName The lastName field of the Customers to be returned; or null
+     * @param after The id after which the stream starts; or null to start from the first Customer
+     * @return The Customers matching every supplied filter, as a stream that has to be closed
+     */
+    Stream<Customer> streamByFilter(String firstName, String lastName, Long after) {
+        return crud.streamByFilter(firstName, lastName, after);
+    }
+
     /**
      * <p>Writes the provided Customer object to the application database.<p/>
      *
@@ -99,7 +148,7 @@ public class CustomerService {
      * @throws Exception
      */
     public Customer create(Customer customer) throws Exception {
-        log.info("CustomerService.create() - Creating " + customer.getFirstName() + " " + customer.getLastName());
+        log.fine(() -> "CustomerService.create() - Creating " + customer.getFirstName() + " " + customer.getLastName());
         validator.validateCustomer(customer);
         // Write the customer to the database.
         return crud.create(customer);
@@ -115,7 +164,7 @@ public class CustomerService {
      * @throws Exception
      */
     Customer update(Customer customer) throws Exception {
-        log.info("CustomerService.update() - Updating " + customer.getFirstName() + " " + customer.getLastName());
+        log.fine(() -> "CustomerService.update() - Updating " + customer.getFirstName() + " " + customer.getLastName());
         validator.validateCustomer(customer);
 
         return crud.update(customer);
@@ -124,19 +173,24 @@ public class CustomerService {
     /**
      * <p>Deletes the provided Customer object from the application database if found there.<p/>
      *
+     * <p>The Customer's Bookings are removed along with it, so their dates are released in the
+     * {@link HotelAvailabilityIndex}.<p/>
+     *
      * @param customer The Customer object to be removed from the application database
      * @return The Customer object that has been successfully removed from the application database; or null
      * @throws Exception
      */
     Customer delete(Customer customer) throws Exception {
-        log.info("delete() - Deleting " + customer.toString());
+        log.fine(() -> "delete() - Deleting " + customer.toString());
 
         Customer deletedCustomer = null;
 
         if (customer.getId() != null) {
+            List<Booking> bookings = bookingService.findByCustomerId(customer.getId());
             deletedCustomer = crud.delete(customer);
+            bookings.forEach(availabilityIndex::release);
         } else {
-            log.info("delete() - No ID was found so can't Delete.");
+            log.fine("delete() - No ID was found so can't Delete.");
         }
 
         return deletedCustomer;
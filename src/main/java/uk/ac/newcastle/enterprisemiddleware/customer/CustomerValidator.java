@@ -2,7 +2,6 @@ package uk.ac.newcastle.enterprisemiddleware.customer;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
@@ -64,22 +63,12 @@ public class CustomerValidator {
      * @return boolean which represents whether the email was found, and if so if it belongs to the user with id
      */
     boolean emailAlreadyExists(String email, Long id) {
-        Customer customer = null;
-        Customer CustomerWithID = null;
-        try {
-            customer = crud.findByEmail(email);
-        } catch (NoResultException e) {
-            // ignore
-        }
+        Customer customer = crud.findByEmail(email);
 
         if (customer != null && id != null) {
-            try {
-                CustomerWithID = crud.findById(id);
-                if (CustomerWithID != null && CustomerWithID.getEmail().equals(email)) {
-                    customer = null;
-                }
-            } catch (NoResultException e) {
-                // ignore
+            Customer CustomerWithID = crud.findById(id);
+            if (CustomerWithID != null && CustomerWithID.getEmail().equals(email)) {
+                customer = null;
             }
         }
         return customer != null;
@@ -7,6 +7,9 @@ import javax.xml.bind.ValidationException;
  *
  * <p>This violates the uniqueness constraint.</p>
  *
+ * <p>It is an expected outcome of a request with an email address that is already taken, turned into a 409 response, so
+ * no stack trace is filled in.</p>
+ *
  * @author howie
  */
 public class UniqueEmailException extends ValidationException {
@@ -22,4 +25,9 @@ public class UniqueEmailException extends ValidationException {
     public UniqueEmailException(Throwable cause) {
         super(cause);
     }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
@@ -11,6 +11,7 @@ import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
 import uk.ac.newcastle.enterprisemiddleware.customer.CustomerService;
 import uk.ac.newcastle.enterprisemiddleware.customer.UniqueEmailException;
 import uk.ac.newcastle.enterprisemiddleware.hotel.HotelService;
+import uk.ac.newcastle.enterprisemiddleware.util.IdempotencyStore;
 import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
 
 import javax.inject.Inject;
@@ -20,6 +21,7 @@ import javax.transaction.UserTransaction;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -56,10 +58,17 @@ public class GuestBookingRestService {
     @Inject
     UserTransaction transaction;
 
+    @Inject
+    IdempotencyStore idempotencyStore;
+
     /**
      * <p>Creates a new Customer and Booking from the values provided. Performs validation and will return a JAX-RS response with
      * either 201 (Resource created) or with a map of fields, and related errors.</p>
      *
+     * <p>A request sent with an {@code Idempotency-Key} header that has been used before gets the outcome of the first
+     * request with that key, without anything being created again.</p>
+     *
+     * @param idempotencyKey The Idempotency-Key header of the request
      * @param guestBooking The GuestBooking object, constructed automatically from JSON input, to be <i>created</i> via
      * {@link CustomerService#create(Customer)}
      * {@link BookingService#create(Booking)}
@@ -75,10 +84,17 @@ public class GuestBookingRestService {
             @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request")
     })
     public Response createGuestBooking(
+            @Parameter(description = "Unique key of this booking, so retries of the request do not book again")
+            @HeaderParam(IdempotencyStore.HEADER) String idempotencyKey,
             @Parameter(description = "JSON representation of GuestBooking object to be added to the database", required = true)
-                    GuestBooking guestBooking) throws SystemException {
+                    GuestBooking guestBooking) throws Exception {
+        return idempotencyStore.execute("POST /guestBooking", idempotencyKey, guestBooking,
+                () -> createGuestBooking(guestBooking));
+    }
+
+    private Response createGuestBooking(GuestBooking guestBooking) throws SystemException {
 
-        log.info("TravelAgentRestService1 -- createGuestBooking starts execution.");
+        log.fine("TravelAgentRestService1 -- createGuestBooking starts execution.");
 
         if (guestBooking == null) {
             throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
@@ -139,7 +155,7 @@ public class GuestBookingRestService {
             throw new RestServiceException(e);
         }
 
-        log.info("TravelAgentRestService1 -- createGuestBooking completes execution.");
+        log.fine("TravelAgentRestService1 -- createGuestBooking completes execution.");
         return builder.build();
     }
 }
@@ -1,7 +1,13 @@
 package uk.ac.newcastle.enterprisemiddleware.hotel;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.util.PooledSequenceGenerator;
 
 import javax.persistence.*;
 import javax.validation.constraints.*;
@@ -12,16 +18,23 @@ import java.util.List;
 /**
  * <p>this is a Domain object.<p/>
  * <p>The Hotel class represents how Hotel resources are represented in the application database.<p/>
+ * <p>Hotels are read far more often than they change, so they are kept in the second-level cache, by id and by phone
+ * number.<p/>
  *
  * @author Howie
  */
 @Entity
+@Cacheable
+@NaturalIdCache
 @NamedQueries({
         @NamedQuery(name = Hotel.FIND_ALL,query = "SELECT h FROM Hotel h ORDER BY h.id ASC"),
         @NamedQuery(name = Hotel.FIND_BY_PHONE_NUMBER,query = "SELECT h FROM Hotel h WHERE h.phoneNumber = :phoneNumber")
 })
 @XmlRootElement
-@Table(name = "hotel",uniqueConstraints = @UniqueConstraint(columnNames = "phone_number"))
+@Table(name = "hotel",uniqueConstraints = @UniqueConstraint(columnNames = "phone_number"), indexes = {
+        @Index(name = "idx_hotel_hotel_name", columnList = "hotel_name"),
+        @Index(name = "idx_hotel_postcode", columnList = "postcode")
+})
 public class Hotel implements Serializable {
 
     private static final long serialVersionUID = 1347673944325L;
@@ -30,8 +43,9 @@ public class Hotel implements Serializable {
     public static final String FIND_BY_PHONE_NUMBER = "Hotel.findByPhoneNumber";
 
     @Id
-    @TableGenerator(name = "HOTEL_ID",table = "PK_HOTEL_GENERATE_TABLE")
-    @GeneratedValue(strategy = GenerationType.TABLE,generator = "HOTEL_ID")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "HOTEL_ID")
+    @GenericGenerator(name = "HOTEL_ID", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "hotel_seq"))
     private Long id;
 
     @NotNull
@@ -49,6 +63,7 @@ public class Hotel implements Serializable {
     @NotEmpty
     @Pattern(regexp = "^\\(0[2-9][0-8][0-9]\\)\\s?[0-9]{3}\\-[0-9]{4}$")
     @Column(name = "phone_number")
+    @NaturalId(mutable = true)
     private String phoneNumber;
 
     @JsonIgnore
@@ -0,0 +1,74 @@
+package uk.ac.newcastle.enterprisemiddleware.hotel;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * <p>The availability of a Hotel over a range of dates, as returned by {@link HotelRestService}.<p/>
+ *
+ * @author Howie
+ */
+public class HotelAvailability {
+
+    private Long hotelId;
+
+    private LocalDate from;
+
+    private LocalDate to;
+
+    private List<LocalDate> availableDates;
+
+    private List<LocalDate> bookedDates;
+
+    public HotelAvailability() {
+    }
+
+    public HotelAvailability(Long hotelId, LocalDate from, LocalDate to,
+                             List<LocalDate> availableDates, List<LocalDate> bookedDates) {
+        this.hotelId = hotelId;
+        this.from = from;
+        this.to = to;
+        this.availableDates = availableDates;
+        this.bookedDates = bookedDates;
+    }
+
+    public Long getHotelId() {
+        return hotelId;
+    }
+
+    public void setHotelId(Long hotelId) {
+        this.hotelId = hotelId;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+
+    public List<LocalDate> getAvailableDates() {
+        return availableDates;
+    }
+
+    public void setAvailableDates(List<LocalDate> availableDates) {
+        this.availableDates = availableDates;
+    }
+
+    public List<LocalDate> getBookedDates() {
+        return bookedDates;
+    }
+
+    public void setBookedDates(List<LocalDate> bookedDates) {
+        this.bookedDates = bookedDates;
+    }
+}
@@ -1,5 +1,8 @@
 package uk.ac.newcastle.enterprisemiddleware.hotel;
 
+import io.micrometer.core.annotation.Timed;
+import org.hibernate.Session;
+
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -7,9 +10,15 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import uk.ac.newcastle.enterprisemiddleware.util.EntityStreams;
+
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link HotelService} with the
@@ -19,6 +28,7 @@ import java.util.logging.Logger;
  * @see Hotel
  * @see javax.persistence.EntityManager
  */
+@Timed("app.repository")
 @RequestScoped
 public class HotelRepository {
     @Inject
@@ -34,10 +44,27 @@ public class HotelRepository {
      *  @return List of Hotel objects
      */
     List<Hotel> findAllHotel(){
-        log.info("HotelRepository -- findAllHotel method starts execution.");
+        log.fine("HotelRepository -- findAllHotel method starts execution.");
         TypedQuery<Hotel> query = em.createNamedQuery(Hotel.FIND_ALL, Hotel.class);
         List<Hotel> resultList = query.getResultList();
-        log.info("HotelRepository -- findAllHotel method completes execution.");
+        log.fine("HotelRepository -- findAllHotel method completes execution.");
+        return resultList;
+    }
+
+    /**
+     * <p>Returns the ids, out of those given, that belong to a persisted {@link Hotel}, using a single IN query.</p>
+     *
+     * @param ids The ids to look up
+     * @return The ids of the Hotels that exist
+     */
+    List<Long> findExistingIds(Collection<Long> ids){
+        log.fine("HotelRepository -- findExistingIds method starts execution.");
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> criteria = cb.createQuery(Long.class);
+        Root<Hotel> hotel = criteria.from(Hotel.class);
+        criteria.select(hotel.get("id")).where(hotel.get("id").in(ids));
+        List<Long> resultList = em.createQuery(criteria).getResultList();
+        log.fine("HotelRepository -- findExistingIds method completes execution.");
         return resultList;
     }
 
@@ -48,24 +75,26 @@ public class HotelRepository {
      * @return The Hotel with the specified id
      */
     Hotel findById(Long id){
-        log.info("HotelRepository -- findById method starts execution.");
+        log.fine("HotelRepository -- findById method starts execution.");
         Hotel hotel = em.find(Hotel.class, id);
-        log.info("HotelRepository -- findById method completes execution.");
+        log.fine("HotelRepository -- findById method completes execution.");
         return hotel;
     }
 
     /**
      * <p>Returns a single Hotel object, specified by a String phoneNumber.<p/>
      *
+     * <p>The phoneNumber is the natural id of a Hotel, so the lookup is answered from the second-level cache when the
+     * Hotel has been loaded before.</p>
+     *
      * @param phoneNumber The phoneNumber field of the Hotel to be returned
-     * @return The Hotel with the specified phoneNumber
+     * @return The Hotel with the specified phoneNumber; or null if there is none
      */
     Hotel findByPhoneNumber(String phoneNumber){
-        log.info("HotelRepository -- findByPhoneNumber method starts execution.");
-        TypedQuery<Hotel> query = em.createNamedQuery(Hotel.FIND_BY_PHONE_NUMBER,Hotel.class).setParameter("phoneNumber",phoneNumber);
-        Hotel singleResult = query.getSingleResult();
-        log.info("HotelRepository -- findByPhoneNumber method completes execution.");
-        return singleResult;
+        log.fine("HotelRepository -- findByPhoneNumber method starts execution.");
+        Hotel hotel = em.unwrap(Session.class).bySimpleNaturalId(Hotel.class).load(phoneNumber);
+        log.fine("HotelRepository -- findByPhoneNumber method completes execution.");
+        return hotel;
     }
 
     /**
@@ -75,13 +104,13 @@ public class HotelRepository {
      * @return The Hotel with the specified hotelName
      */
     List<Hotel> findByHotelName(String hotelName){
-        log.info("HotelRepository -- findByHotelName method starts execution.");
+        log.fine("HotelRepository -- findByHotelName method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Hotel> criteria = cb.createQuery(Hotel.class);
         Root<Hotel> hotel = criteria.from(Hotel.class);
         criteria.select(hotel).where(cb.equal(hotel.get("hotelName"), hotelName));
         List<Hotel> resultList = em.createQuery(criteria).getResultList();
-        log.info("HotelRepository -- findByHotelName method completes execution.");
+        log.fine("HotelRepository -- findByHotelName method completes execution.");
         return resultList;
     }
 
@@ -92,16 +121,74 @@ public class HotelRepository {
      * @return The Hotels with the specified postcode
      */
     List<Hotel> findByPostcode(String postcode){
-        log.info("HotelRepository -- findByPostcode method starts execution.");
+        log.fine("HotelRepository -- findByPostcode method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Hotel> criteria = cb.createQuery(Hotel.class);
         Root<Hotel> hotel = criteria.from(Hotel.class);
         criteria.select(hotel).where(cb.equal(hotel.get("postcode"), postcode));
         List<Hotel> resultList = em.createQuery(criteria).getResultList();
-        log.info("HotelRepository -- findByPostcode method completes execution.");
+        log.fine("HotelRepository -- findByPostcode method completes execution.");
+        return resultList;
+    }
+
+    /**
+     * <p>Returns a page of Hotel objects matching any combination of hotelName, ignoring case, and postcode, sorted by
+     * id.</p>
+     *
+     * <p>The page starts after the Hotel with the id given as cursor, so it is read from the primary key index however
+     * deep into the table it lies.</p>
+     *
+     * @param hotelName The hotelName field of the Hotels to be returned, in any case; or null
+     * @param postcode The postcode field of the Hotels to be returned; or null
+     * @param after The id after which the page starts; or null for the first page
+     * @param limit The maximum number of Hotels to return; or null for no limit
+     * @return The Hotels matching every supplied filter
+     */
+    List<Hotel> findByFilter(String hotelName, String postcode, Long after, Integer limit){
+        log.fine("HotelRepository -- findByFilter method starts execution.");
+        TypedQuery<Hotel> query = em.createQuery(filter(hotelName, postcode, after));
+        if (limit != null) {
+            query.setMaxResults(limit);
+        }
+        List<Hotel> resultList = query.getResultList();
+        log.fine("HotelRepository -- findByFilter method completes execution.");
         return resultList;
     }
 
+    /**
+     * <p>Returns the Hotel objects matching any combination of hotelName, ignoring case, and postcode, sorted by id, as
+     * a stream read from the database one batch at a time.</p>
+     *
+     * @param hotelName The hotelName field of the Hotels to be returned, in any case; or null
+     * @param postcode The postcode field of the Hotels to be returned; or null
+     * @param after The id after which the stream starts; or null to start from the first Hotel
+     * @return The Hotels matching every supplied filter, as a stream that has to be closed
+     * @see EntityStreams#scroll
+     */
+    Stream<Hotel> streamByFilter(String hotelName, String postcode, Long after){
+        log.fine("HotelRepository -- streamByFilter method starts execution.");
+        Stream<Hotel> stream = EntityStreams.scroll(em.createQuery(filter(hotelName, postcode, after)), em);
+        log.fine("HotelRepository -- streamByFilter method completes execution.");
+        return stream;
+    }
+
+    private CriteriaQuery<Hotel> filter(String hotelName, String postcode, Long after) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Hotel> criteria = cb.createQuery(Hotel.class);
+        Root<Hotel> hotel = criteria.from(Hotel.class);
+        List<Predicate> predicates = new ArrayList<>();
+        if (hotelName != null) {
+            predicates.add(cb.equal(cb.lower(hotel.get("hotelName")), hotelName.toLowerCase()));
+        }
+        if (postcode != null) {
+            predicates.add(cb.equal(hotel.get("postcode"), postcode));
+        }
+        if (after != null) {
+            predicates.add(cb.gt(hotel.get("id"), after));
+        }
+        return criteria.select(hotel).where(predicates.toArray(new Predicate[0])).orderBy(cb.asc(hotel.get("id")));
+    }
+
     /**
      * <p>Persists the provided Hotel object to the application database using the EntityManager.</p>
      *
@@ -110,9 +197,9 @@ public class HotelRepository {
      * @throws Exception
      */
     Hotel create(Hotel hotel) throws Exception {
-        log.info("HotelRepository -- create method Creating " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
+        log.fine(() -> "HotelRepository -- create method Creating " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
         em.persist(hotel);
-        log.info("HotelRepository -- create method completes execution.");
+        log.fine("HotelRepository -- create method completes execution.");
         return hotel;
     }
 
@@ -124,9 +211,9 @@ public class HotelRepository {
      * @throws Exception
      */
     Hotel update(Hotel hotel) throws Exception {
-        log.info("HotelRepository -- update method Updating " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
+        log.fine(() -> "HotelRepository -- update method Updating " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
         em.merge(hotel);
-        log.info("HotelRepository -- update method completes execution.");
+        log.fine("HotelRepository -- update method completes execution.");
         return hotel;
     }
 
@@ -138,13 +225,13 @@ public class HotelRepository {
      * @throws Exception
      */
     Hotel delete(Hotel hotel) throws Exception {
-        log.info("HotelRepository -- delete method Deleting " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
+        log.fine(() -> "HotelRepository -- delete method Deleting " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
         if (hotel.getId() != null) {
             em.remove(em.merge(hotel));
         } else {
-            log.info("HotelRepository -- delete method - No Id was found so can't Delete.");
+            log.fine("HotelRepository -- delete method - No Id was found so can't Delete.");
         }
-        log.info("HotelRepository -- delete method completes execution.");
+        log.fine("HotelRepository -- delete method completes execution.");
         return hotel;
     }
 
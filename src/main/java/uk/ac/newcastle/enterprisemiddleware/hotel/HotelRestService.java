@@ -1,5 +1,6 @@
 package uk.ac.newcastle.enterprisemiddleware.hotel;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
@@ -8,6 +9,9 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.jboss.resteasy.reactive.Cache;
 import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
 import uk.ac.newcastle.enterprisemiddleware.booking.BookingService;
+import uk.ac.newcastle.enterprisemiddleware.booking.HotelAvailabilityIndex;
+import uk.ac.newcastle.enterprisemiddleware.util.JsonArrayOutput;
+import uk.ac.newcastle.enterprisemiddleware.util.KeysetPage;
 import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
 
 import javax.inject.Inject;
@@ -16,13 +20,19 @@ import javax.transaction.Transactional;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * <p>This class produces a RESTful service exposing the functionality of {@link HotelService}.</p>
@@ -35,6 +45,9 @@ import java.util.stream.Collectors;
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class HotelRestService {
+    /** Longest range of dates, in days, that a single availability request may cover. */
+    private static final long MAX_AVAILABILITY_DAYS = 366;
+
     @Inject
     @Named("logger")
     Logger log;
@@ -45,9 +58,19 @@ public class HotelRestService {
     @Inject
     BookingService bookingService;
 
+    @Inject
+    HotelAvailabilityIndex availabilityIndex;
+
+    @Inject
+    ObjectMapper mapper;
+
     /**
      * <p>Return all the Hotels.  They are sorted alphabetically by Id.</p>
      *
+     * <p>Without paging parameters every matching Hotel is returned. Given a limit or an after cursor, a single page is
+     * returned, and a Link header with rel="next" plus an X-Next-Cursor header point at the next page if there is one.
+     * With stream=true every matching Hotel after the cursor is written out while it is read from the database.</p>
+     *
      * @return A Response containing a list of hotels
      */
     @GET
@@ -55,19 +78,33 @@ public class HotelRestService {
     @Operation(summary = "Fetch all Hotels", description = "Returns a JSON array of all stored Hotel objects.")
     @APIResponses(value = {
             @APIResponse(responseCode = "200", description ="Hotel found"),
+            @APIResponse(responseCode = "400", description = "Invalid paging parameters"),
             @APIResponse(responseCode = "500", description = "Hotel with date not found")
     })
-    public Response retrieveAllHotels(@QueryParam("hotelName") String hotelName, @QueryParam("postcode") String postcode){
-        log.info("HotelRestService -- retrieveAllHotels starts execution.");
-        List<Hotel> hotels = service.findAllHotel();
-        if(hotelName != null){
-            hotels = hotels.stream().filter(e -> e.getHotelName().equalsIgnoreCase(hotelName)).collect(Collectors.toList());
+    public Response retrieveAllHotels(@QueryParam("hotelName") String hotelName, @QueryParam("postcode") String postcode,
+                                      @Parameter(description = "id of the last hotel of the previous page")
+                                      @QueryParam("after") Long after,
+                                      @Parameter(description = "maximum number of hotels to return")
+                                      @QueryParam("limit") Integer limit,
+                                      @Parameter(description = "write every matching hotel as it is read")
+                                      @QueryParam("stream") boolean stream,
+                                      @Context UriInfo uriInfo){
+        log.fine("HotelRestService -- retrieveAllHotels starts execution.");
+        KeysetPage.validate(after, limit);
+
+        if(stream){
+            log.fine("HotelRestService -- retrieveAllHotels completes execution.");
+            return Response.ok(new JsonArrayOutput(service.streamByFilter(hotelName, postcode, after), mapper)).build();
         }
-        if(postcode != null){
-            hotels = hotels.stream().filter(e -> e.getPostcode().equals(postcode)).collect(Collectors.toList());
+        if(after == null && limit == null){
+            List<Hotel> hotels = service.findByFilter(hotelName, postcode, null, null);
+            log.fine("HotelRestService -- retrieveAllHotels completes execution.");
+            return Response.ok(hotels).build();
         }
-        log.info("HotelRestService -- retrieveAllHotels completes execution.");
-        return Response.ok(hotels).build();
+        int size = KeysetPage.size(limit);
+        List<Hotel> hotels = service.findByFilter(hotelName, postcode, after, size + 1);
+        log.fine("HotelRestService -- retrieveAllHotels completes execution.");
+        return KeysetPage.ok(hotels, size, Hotel::getId, uriInfo).build();
     }
 
     /**
@@ -90,15 +127,73 @@ public class HotelRestService {
     public Response retrieveHotelById(
             @Parameter(description = "Id of Hotel to be fetched")
             @PathParam("id") Long id) {
-        log.info("HotelRestService -- retrieveHotelById starts execution.");
+        log.fine("HotelRestService -- retrieveHotelById starts execution.");
         Hotel hotel = service.findById(id);
         if (hotel == null) {
             throw new RestServiceException("No Hotel with the id " + id + " was found!", Response.Status.NOT_FOUND);
         }
-        log.info("findById " + id + ": found Hotel = " + hotel);
+        log.fine(() -> "findById " + id + ": found Hotel = " + hotel);
         return Response.ok(hotel).build();
     }
 
+    /**
+     * <p>Return the dates between from and to (both inclusive) on which a Hotel is free and booked.</p>
+     *
+     * <p>The booked dates are read from the {@link HotelAvailabilityIndex} rather than the database.</p>
+     *
+     * @param id The Long parameter value provided as a Hotel's id
+     * @param from The first date of the range, in yyyy-MM-dd format
+     * @param to The last date of the range, in yyyy-MM-dd format
+     * @return A Response containing the availability of the Hotel
+     */
+    @GET
+    @Path("/{id:[0-9]+}/availability")
+    @Operation(
+            summary = "Fetch the availability of a Hotel",
+            description = "Returns the dates between from and to on which the Hotel with the provided id is free and booked."
+    )
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="Availability found"),
+            @APIResponse(responseCode = "400", description = "Missing or invalid date range"),
+            @APIResponse(responseCode = "404", description = "Hotel with id not found")
+    })
+    public Response retrieveHotelAvailability(
+            @Parameter(description = "Id of Hotel to be checked")
+            @PathParam("id") Long id,
+            @Parameter(description = "first date of the range, date format is yyyy-MM-dd", required = true)
+            @QueryParam("from") String from,
+            @Parameter(description = "last date of the range, date format is yyyy-MM-dd", required = true)
+            @QueryParam("to") String to) {
+        log.fine("HotelRestService -- retrieveHotelAvailability starts execution.");
+
+        LocalDate fromDate;
+        LocalDate toDate;
+        try {
+            fromDate = LocalDate.parse(from);
+            toDate = LocalDate.parse(to);
+        } catch (NullPointerException | DateTimeParseException e) {
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+        if (toDate.isBefore(fromDate) || ChronoUnit.DAYS.between(fromDate, toDate) >= MAX_AVAILABILITY_DAYS) {
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+
+        if (service.findById(id) == null) {
+            throw new RestServiceException("No Hotel with the id " + id + " was found!", Response.Status.NOT_FOUND);
+        }
+
+        BitSet booked = availabilityIndex.bookedBetween(id, fromDate, toDate);
+        List<LocalDate> availableDates = new ArrayList<>();
+        List<LocalDate> bookedDates = new ArrayList<>();
+        int days = (int) ChronoUnit.DAYS.between(fromDate, toDate) + 1;
+        for (int i = 0; i < days; i++) {
+            (booked.get(i) ? bookedDates : availableDates).add(fromDate.plusDays(i));
+        }
+
+        log.fine("HotelRestService -- retrieveHotelAvailability completes execution.");
+        return Response.ok(new HotelAvailability(id, fromDate, toDate, availableDates, bookedDates)).build();
+    }
+
     /**
      * <p>Search for and return a Hotel identified by phoneNumber.</p>
      *
@@ -120,12 +215,12 @@ public class HotelRestService {
             @Parameter(description = "phoneNumber of Hotel to be fetched")
             @PathParam("phoneNumber")
                     String phoneNumber) {
-        log.info("HotelRestService -- retrieveHotelByPhoneNumber starts execution.");
+        log.fine("HotelRestService -- retrieveHotelByPhoneNumber starts execution.");
         Hotel hotel = service.findByPhoneNumber(phoneNumber);
         if (hotel == null) {
             throw new RestServiceException("No Hotel with the phoneNumber " + phoneNumber + " was found!", Response.Status.NOT_FOUND);
         }
-        log.info("findByPhoneNumber " + phoneNumber + ": found Hotel = " + hotel);
+        log.fine(() -> "findByPhoneNumber " + phoneNumber + ": found Hotel = " + hotel);
         return Response.ok(hotel).build();
     }
 
@@ -150,7 +245,7 @@ public class HotelRestService {
             @Parameter(description = "JSON representation of Hotel object to be added to the database", required = true)
                     Hotel hotel) {
 
-        log.info("HotelRestService -- createHotel starts execution.");
+        log.fine("HotelRestService -- createHotel starts execution.");
 
         if (hotel == null) {
             throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
@@ -180,7 +275,7 @@ public class HotelRestService {
             throw new RestServiceException(e);
         }
 
-        log.info("HotelRestService -- createHotel completes execution. Hotel = " + hotel);
+        log.fine(() -> "HotelRestService -- createHotel completes execution. Hotel = " + hotel);
         return builder.build();
     }
 
@@ -250,7 +345,7 @@ public class HotelRestService {
             throw new RestServiceException(e);
         }
 
-        log.info("updateHotel completed. hotel = " + hotel);
+        log.fine(() -> "updateHotel completed. hotel = " + hotel);
         return builder.build();
     }
 
@@ -294,7 +389,7 @@ public class HotelRestService {
         } catch (Exception e) {
             throw new RestServiceException(e);
         }
-        log.info("deleteContact completed. hotel = " + hotel);
+        log.fine(() -> "deleteContact completed. hotel = " + hotel);
         return builder.build();
     }
 }
@@ -1,10 +1,15 @@
 package uk.ac.newcastle.enterprisemiddleware.hotel;
 
+import io.micrometer.core.annotation.Timed;
+import uk.ac.newcastle.enterprisemiddleware.booking.HotelAvailabilityIndex;
+
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
+import java.util.Collection;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -13,6 +18,7 @@ import java.util.logging.Logger;
  * @see HotelValidator
  * @see HotelRepository
  */
+@Timed("app.service")
 @Dependent
 public class HotelService {
 
@@ -26,6 +32,9 @@ public class HotelService {
     @Inject
     HotelRepository crud;
 
+    @Inject
+    HotelAvailabilityIndex availabilityIndex;
+
     /**
      * <p>Returns a List of all persisted {@link Hotel} objects, sorted alphabetically by Id.<p/>
      *
@@ -35,6 +44,41 @@ public class HotelService {
         return crud.findAllHotel();
     }
 
+    /**
+     * <p>Returns a page of Hotel objects matching any combination of hotelName, ignoring case, and postcode.<p/>
+     *
+     * @param hotelName The hotelName field of the Hotels to be returned, in any case; or null
+     * @param postcode The postcode field of the Hotels to be returned; or null
+     * @param after The id after which the page starts; or null for the first page
+     * @param limit The maximum number of Hotels to return; or null for no limit
+     * @return The Hotels matching every supplied filter
+     */
+    List<Hotel> findByFilter(String hotelName, String postcode, Long after, Integer limit){
+        return crud.findByFilter(hotelName, postcode, after, limit);
+    }
+
+    /**
+     * <p>Returns the Hotel objects matching any combination of hotelName, ignoring case, and postcode as a stream.<p/>
+     *
+     * @param hotelName The hotelName field of the Hotels to be returned, in any case; or null
+     * @param postcode The postcode field of the Hotels to be returned; or null
+     * @param after The id after which the stream starts; or null to start from the first Hotel
+     * @return The Hotels matching every supplied filter, as a stream that has to be closed
+     */
+    Stream<Hotel> streamByFilter(String hotelName, String postcode, Long after){
+        return crud.streamByFilter(hotelName, postcode, after);
+    }
+
+    /**
+     * <p>Returns the ids, out of those given, that belong to a persisted Hotel.<p/>
+     *
+     * @param ids The ids to look up
+     * @return The ids of the Hotels that exist
+     */
+    public List<Long> findExistingIds(Collection<Long> ids) {
+        return crud.findExistingIds(ids);
+    }
+
     /**
      * <p>Returns a single Hotel object, specified by a String id.<p/>
      *
@@ -49,7 +93,7 @@ public class HotelService {
      * <p>Returns a single Hotel object, specified by a String phoneNumber.<p/>
      *
      * @param phoneNumber The phoneNumber field of the Hotel to be returned
-     * @return The Hotel with the specified phoneNumber
+     * @return The Hotel with the specified phoneNumber; or null if there is none
      */
     Hotel findByPhoneNumber(String phoneNumber){
         return crud.findByPhoneNumber(phoneNumber);
@@ -85,7 +129,7 @@ public class HotelService {
      * @throws Exception
      */
     Hotel create(Hotel hotel) throws Exception {
-        log.info("HotelService.create() - Creating " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
+        log.fine(() -> "HotelService.create() - Creating " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
         validator.validateHotel(hotel);
 
         // Write the Hotel to the database.
@@ -102,7 +146,7 @@ public class HotelService {
      * @throws Exception
      */
     Hotel update(Hotel hotel) throws Exception {
-        log.info("CustomerService.update() - Updating " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
+        log.fine(() -> "CustomerService.update() - Updating " + hotel.getHotelName() + " " + hotel.getPhoneNumber());
         validator.validateHotel(hotel);
 
         return crud.update(hotel);
@@ -111,19 +155,23 @@ public class HotelService {
     /**
      * <p>Deletes the provided Hotel object from the application database if found there.<p/>
      *
+     * <p>The Hotel's Bookings are removed along with it, so it is also dropped from the
+     * {@link HotelAvailabilityIndex}.<p/>
+     *
      * @param hotel The Hotel object to be removed from the application database
      * @return The Hotel object that has been successfully removed from the application database; or null
      * @throws Exception
      */
     Hotel delete(Hotel hotel) throws Exception {
-        log.info("delete() - Deleting " + hotel.toString());
+        log.fine(() -> "delete() - Deleting " + hotel.toString());
 
         Hotel deletedHotel = null;
 
         if (hotel.getId() != null) {
             deletedHotel = crud.delete(hotel);
+            availabilityIndex.releaseHotel(hotel.getId());
         } else {
-            log.info("delete() - No ID was found so can't Delete.");
+            log.fine("delete() - No ID was found so can't Delete.");
         }
 
         return deletedHotel;
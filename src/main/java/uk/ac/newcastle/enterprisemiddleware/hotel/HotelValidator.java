@@ -2,7 +2,6 @@ package uk.ac.newcastle.enterprisemiddleware.hotel;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import javax.persistence.NoResultException;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.Validator;
@@ -57,22 +56,12 @@ public class HotelValidator {
      * @return boolean which represents whether the phoneNumber was found, and if so if it belongs to the hotel with id
      */
     boolean phoneNumberAlreadyExists(String phoneNumber, Long id) {
-        Hotel hotel = null;
-        Hotel hotelWithID = null;
-        try {
-            hotel = crud.findByPhoneNumber(phoneNumber);
-        } catch (NoResultException e) {
-            // ignore
-        }
+        Hotel hotel = crud.findByPhoneNumber(phoneNumber);
 
         if (hotel != null && id != null) {
-            try {
-                hotelWithID = crud.findById(id);
-                if (hotelWithID != null && hotelWithID.getPhoneNumber().equals(phoneNumber)) {
-                    hotel = null;
-                }
-            } catch (NoResultException e) {
-                // ignore
+            Hotel hotelWithID = crud.findById(id);
+            if (hotelWithID != null && hotelWithID.getPhoneNumber().equals(phoneNumber)) {
+                hotel = null;
             }
         }
         return hotel != null;
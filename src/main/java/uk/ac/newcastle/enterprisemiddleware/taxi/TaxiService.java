@@ -1,6 +1,7 @@
 package uk.ac.newcastle.enterprisemiddleware.taxi;
 
 import org.eclipse.microprofile.rest.client.inject.RegisterRestClient;
+import uk.ac.newcastle.enterprisemiddleware.util.Guarded;
 
 import javax.ws.rs.*;
 
@@ -12,6 +13,7 @@ import javax.ws.rs.*;
  * @author howie
  */
 @RegisterRestClient(configKey = "taxi-api")
+@Guarded("taxi-api")
 public interface TaxiService {
 
     @GET
@@ -1,7 +1,11 @@
 package uk.ac.newcastle.enterprisemiddleware.travelAgent;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.util.PooledSequenceGenerator;
 
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -15,19 +19,36 @@ import java.io.Serializable;
  */
 @Entity
 @NamedQueries({
-        @NamedQuery(name = TravelAgentBooking.FIND_ALL,query = "SELECT t FROM TravelAgentBooking t ORDER BY t.id ASC")
+        @NamedQuery(name = TravelAgentBooking.FIND_ALL,query = "SELECT t FROM TravelAgentBooking t ORDER BY t.id ASC"),
+        @NamedQuery(name = TravelAgentBooking.FAIL_PENDING,query = "UPDATE TravelAgentBooking t SET t.status = :failed, t.failureReason = :reason WHERE t.status = :pending")
 })
 @XmlRootElement
-@Table(name = "travel_agent_booking")
+@Table(name = "travel_agent_booking", indexes = {
+        @Index(name = "idx_travel_agent_booking_hotel_customer_id", columnList = "hotel_customer_id"),
+        @Index(name = "idx_travel_agent_booking_flight_customer_id", columnList = "flight_customer_id"),
+        @Index(name = "idx_travel_agent_booking_taxi_customer_id", columnList = "taxi_customer_id")
+})
 public class TravelAgentBooking implements Serializable {
 
     private static final long serialVersionUID = 1365454634525L;
 
     public static final String FIND_ALL = "TravelAgentBooking.findAll";
+    public static final String FAIL_PENDING = "TravelAgentBooking.failPending";
+
+    /**
+     * <p>The state of a travel agent booking. Bookings accepted for asynchronous processing start as PENDING; all
+     * others are only written once CONFIRMED.</p>
+     */
+    public enum Status {
+        PENDING,
+        CONFIRMED,
+        FAILED
+    }
 
     @Id
-    @TableGenerator(name = "TRAVEL_AGENT_ID",table = "PK_TRAVEL_AGENT_GENERATE_TABLE")
-    @GeneratedValue(strategy = GenerationType.TABLE,generator = "TRAVEL_AGENT_ID")
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "TRAVEL_AGENT_ID")
+    @GenericGenerator(name = "TRAVEL_AGENT_ID", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "travel_agent_booking_seq"))
     private Long id;
 
     @Column(name = "hotel_customer_id")
@@ -48,6 +69,13 @@ public class TravelAgentBooking implements Serializable {
     @Column(name = "taxi_booking_id")
     private Long taxiBookingId;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 10)
+    private Status status = Status.CONFIRMED;
+
+    @Column(name = "failure_reason", length = 1000)
+    private String failureReason;
+
     @JsonIgnore
     @OneToOne(cascade = {CascadeType.PERSIST,CascadeType.REMOVE})
     private Booking booking;
@@ -107,4 +135,20 @@ public class TravelAgentBooking implements Serializable {
     public void setTaxiBookingId(Long taxiBookingId) {
         this.taxiBookingId = taxiBookingId;
     }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public void setFailureReason(String failureReason) {
+        this.failureReason = failureReason;
+    }
 }
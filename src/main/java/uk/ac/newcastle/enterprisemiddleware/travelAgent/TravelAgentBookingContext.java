@@ -0,0 +1,114 @@
+package uk.ac.newcastle.enterprisemiddleware.travelAgent;
+
+import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.flight.FlightBooking;
+import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiBooking;
+
+/**
+ * <p>Holds the state of a single travel agent booking while its hotel, flight and taxi steps are carried out.</p>
+ *
+ * <p>A new instance is created for every request, so concurrent requests never share customer ids or bookings.
+ * The bookings that have to be undone if a later step fails are recorded separately, in a {@link TravelAgentSaga}.</p>
+ *
+ * @author Howie
+ * @see TravelAgentRestService
+ */
+public class TravelAgentBookingContext {
+
+    private final TravelAgent travelAgent;
+
+    private Long hotelCustomerId;
+
+    private Long flightCustomerId;
+
+    private Long taxiCustomerId;
+
+    private Booking hotelBooking;
+
+    private FlightBooking flightBooking;
+
+    private TaxiBooking taxiBooking;
+
+    public TravelAgentBookingContext(TravelAgent travelAgent) {
+        this.travelAgent = travelAgent;
+    }
+
+    public TravelAgent getTravelAgent() {
+        return travelAgent;
+    }
+
+    public Long getHotelCustomerId() {
+        return hotelCustomerId;
+    }
+
+    public void setHotelCustomerId(Long hotelCustomerId) {
+        this.hotelCustomerId = hotelCustomerId;
+    }
+
+    public Long getFlightCustomerId() {
+        return flightCustomerId;
+    }
+
+    public void setFlightCustomerId(Long flightCustomerId) {
+        this.flightCustomerId = flightCustomerId;
+    }
+
+    public Long getTaxiCustomerId() {
+        return taxiCustomerId;
+    }
+
+    public void setTaxiCustomerId(Long taxiCustomerId) {
+        this.taxiCustomerId = taxiCustomerId;
+    }
+
+    public Booking getHotelBooking() {
+        return hotelBooking;
+    }
+
+    public void setHotelBooking(Booking hotelBooking) {
+        this.hotelBooking = hotelBooking;
+    }
+
+    public FlightBooking getFlightBooking() {
+        return flightBooking;
+    }
+
+    public void setFlightBooking(FlightBooking flightBooking) {
+        this.flightBooking = flightBooking;
+    }
+
+    public TaxiBooking getTaxiBooking() {
+        return taxiBooking;
+    }
+
+    public void setTaxiBooking(TaxiBooking taxiBooking) {
+        this.taxiBooking = taxiBooking;
+    }
+
+    /**
+     * <p>Builds the TravelAgentBooking recording the customer and booking ids gathered so far.</p>
+     *
+     * @return A new, unpersisted TravelAgentBooking
+     */
+    public TravelAgentBooking toTravelAgentBooking() {
+        return confirm(new TravelAgentBooking());
+    }
+
+    /**
+     * <p>Records the customer and booking ids gathered so far in the given TravelAgentBooking and marks it confirmed.</p>
+     *
+     * @param travelAgentBooking The TravelAgentBooking to fill in, e.g. one accepted for asynchronous processing
+     * @return The same TravelAgentBooking
+     */
+    public TravelAgentBooking confirm(TravelAgentBooking travelAgentBooking) {
+        travelAgentBooking.setStatus(TravelAgentBooking.Status.CONFIRMED);
+        travelAgentBooking.setFailureReason(null);
+        travelAgentBooking.setHotelCustomerId(hotelCustomerId);
+        travelAgentBooking.setHotelBookingId(hotelBooking.getId());
+        travelAgentBooking.setFlightCustomerId(flightCustomerId);
+        travelAgentBooking.setFlightBookingId(flightBooking.getId());
+        travelAgentBooking.setTaxiCustomerId(taxiCustomerId);
+        travelAgentBooking.setTaxiBookingId(taxiBooking.getId());
+        return travelAgentBooking;
+    }
+}
@@ -0,0 +1,558 @@
+package uk.ac.newcastle.enterprisemiddleware.travelAgent;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.extension.annotations.SpanAttribute;
+import io.opentelemetry.extension.annotations.WithSpan;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.common.vertx.VertxContext;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.booking.BookingService;
+import uk.ac.newcastle.enterprisemiddleware.booking.HotelAvailabilityIndex;
+import uk.ac.newcastle.enterprisemiddleware.booking.UniqueHotelAndDateException;
+import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
+import uk.ac.newcastle.enterprisemiddleware.customer.CustomerService;
+import uk.ac.newcastle.enterprisemiddleware.customer.UniqueEmailException;
+import uk.ac.newcastle.enterprisemiddleware.flight.FlightBooking;
+import uk.ac.newcastle.enterprisemiddleware.flight.FlightCustomer;
+import uk.ac.newcastle.enterprisemiddleware.flight.FlightGuestBooking;
+import uk.ac.newcastle.enterprisemiddleware.flight.FlightService;
+import uk.ac.newcastle.enterprisemiddleware.hotel.HotelService;
+import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiBooking;
+import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiCustomer;
+import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiGuestBooking;
+import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiService;
+import uk.ac.newcastle.enterprisemiddleware.util.RemoteCustomerCache;
+import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
+import uk.ac.newcastle.enterprisemiddleware.util.UpstreamUnavailableException;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Transactional;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import javax.ws.rs.core.Response;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Carries out a travel agent booking: the hotel booking, the flight and taxi bookings made in parallel on the remote
+ * services, and the TravelAgentBooking recording all three.</p>
+ *
+ * <p>A booking is either made while the client waits, see {@link #book}, or accepted straight away as a PENDING
+ * TravelAgentBooking and made on the bounded {@code travelAgentBookingExecutor}, see {@link #accept} and
+ * {@link #submit}. Either way a failure is handed to the {@link TravelAgentCompensationWorker}.</p>
+ *
+ * <p>Each step runs in a span of its own: travelAgent.reserveHotel, travelAgent.flightLeg and travelAgent.taxiLeg,
+ * within which the calls to the remote services are traced, and travelAgent.finalise; a failure adds a
+ * travelAgent.compensate span.</p>
+ *
+ * @author Howie
+ * @see TravelAgentRestService
+ * @see TravelAgentSaga
+ */
+@ApplicationScoped
+public class TravelAgentBookingOrchestrator {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @RestClient
+    FlightService flightService;
+
+    @RestClient
+    TaxiService taxiService;
+
+    @Inject
+    CustomerService customerService;
+
+    @Inject
+    HotelService hotelService;
+
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    HotelAvailabilityIndex availabilityIndex;
+
+    @Inject
+    TravelAgentBookingService travelAgentBookingService;
+
+    @Inject
+    TravelAgentSagaService sagaService;
+
+    @Inject
+    TravelAgentCompensationWorker compensationWorker;
+
+    @Inject
+    Validator validator;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    @Named("remoteCallExecutor")
+    WorkerExecutor remoteCallExecutor;
+
+    @Inject
+    @Named("travelAgentBookingExecutor")
+    ManagedExecutor travelAgentBookingExecutor;
+
+    @Inject
+    @Named("flightCustomerCache")
+    RemoteCustomerCache<FlightCustomer> flightCustomerCache;
+
+    @Inject
+    @Named("taxiCustomerCache")
+    RemoteCustomerCache<TaxiCustomer> taxiCustomerCache;
+
+    /**
+     * <p>Fails the bookings that were accepted but not processed before the application last stopped; the request they
+     * were made from is gone.</p>
+     */
+    @ActivateRequestContext
+    void onStart(@Observes StartupEvent event) {
+        int failed = travelAgentBookingService.failPending("Not processed before the application stopped");
+        if (failed > 0) {
+            log.warning(() -> "TravelAgentBookingOrchestrator -- onStart failed " + failed + " pending travel agent bookings.");
+        }
+    }
+
+    /**
+     * <p>Makes a travel agent booking.</p>
+     *
+     * <p>No transaction is held while the flight and taxi are booked remotely, so no pooled connection is either. The
+     * local work is done in three short transactions instead: the hotel booking with the start of its saga, see
+     * {@link #reserveHotel}; the record of the remote bookings; and the TravelAgentBooking with the completion of the
+     * saga, see {@link #finalise}. If a later step fails the hotel booking, already committed by then, is cancelled
+     * along with the remote bookings.</p>
+     *
+     * @param travelAgent The information needed to book the hotel, flight and taxi
+     * @param pendingId The id of the PENDING TravelAgentBooking to confirm; or null to create a new one
+     * @return The confirmed TravelAgentBooking
+     * @throws RestServiceException If any of the bookings fails; with 503 SERVICE UNAVAILABLE if the flight or taxi
+     * API is not being called because it is unhealthy or overloaded
+     */
+    @WithSpan("travelAgent.book")
+    TravelAgentBooking book(TravelAgent travelAgent, @SpanAttribute("travelAgent.pendingId") Long pendingId) {
+        log.fine("TravelAgentBookingOrchestrator - book begins to execution");
+
+        TravelAgentBookingContext context = new TravelAgentBookingContext(travelAgent);
+
+        Long sagaId = reserveHotel(travelAgent, context);
+
+        log.fine("createTravelAgent - createFlightBooking and createTaxiBooking begin to execution");
+
+        // the legs run as children of this span, though no other context is carried over to the executor
+        Context trace = Context.current();
+        CompletableFuture<FlightBooking> flightLeg = runLeg(trace.wrapSupplier(() -> createFlightBooking(travelAgent)));
+        CompletableFuture<TaxiBooking> taxiLeg = runLeg(trace.wrapSupplier(() -> createTaxiBooking(travelAgent)));
+
+        Throwable legFailure = awaitLegs(flightLeg, taxiLeg);
+        if (legFailure != null) {
+            log.info("createTravelAgent - createFlightBooking or createTaxiBooking failed, handing over to compensation");
+
+            // the remote bookings are cancelled by the compensation worker, including a leg that is still running and
+            // only succeeds later on
+            compensate(sagaId, null, null, legFailure.toString());
+            flightLeg.thenAccept(flightBooking -> recordLateLeg(sagaId, flightBooking.getId(), null));
+            taxiLeg.thenAccept(taxiBooking -> recordLateLeg(sagaId, null, taxiBooking.getId()));
+            compensationWorker.wake();
+
+            if (legFailure instanceof UpstreamUnavailableException) {
+                throw (UpstreamUnavailableException) legFailure;
+            }
+            throw new RestServiceException(legFailure.getMessage());
+        }
+
+        context.setFlightBooking(flightLeg.join());
+        context.setFlightCustomerId(context.getFlightBooking().getContactId());
+
+        context.setTaxiBooking(taxiLeg.join());
+        context.setTaxiCustomerId(context.getTaxiBooking().getCustomerId());
+
+        log.fine("createTravelAgent - createFlightBooking and createTaxiBooking complete to execution");
+
+        TravelAgentBooking travelAgentBooking;
+        try {
+            sagaService.recordLegs(sagaId, context.getFlightBooking().getId(), context.getTaxiBooking().getId());
+
+            log.fine("createTravelAgent - createTravelAgentBooking begins to execution");
+
+            travelAgentBooking = finalise(sagaId, context, pendingId);
+
+            log.fine("createTravelAgent - createTravelAgentBooking completes to execution");
+        } catch (Exception e) {
+            log.info("createTravelAgent - createTravelAgentBooking failed, handing over to compensation");
+
+            // the saga may not hold the remote bookings yet, if recording them is what failed
+            compensate(sagaId, context.getFlightBooking().getId(), context.getTaxiBooking().getId(), e.toString());
+            compensationWorker.wake();
+
+            throw new RestServiceException(e.getMessage());
+        }
+
+        log.fine("TravelAgentBookingOrchestrator - book completes to execution");
+        return travelAgentBooking;
+    }
+
+    /**
+     * <p>Books the hotel of a travel agent booking, creating its customer if there is none with that email, and starts
+     * its saga, in a transaction of their own.</p>
+     *
+     * @param travelAgent The information needed to book the hotel
+     * @param context The context the hotel customer and Booking are recorded in
+     * @return The id of the new TravelAgentSaga
+     * @throws RestServiceException If the hotel could not be booked
+     */
+    @WithSpan("travelAgent.reserveHotel")
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    Long reserveHotel(TravelAgent travelAgent, TravelAgentBookingContext context) {
+        try{
+            log.fine("createTravelAgent - createHotelBooking begins to execution");
+
+            Customer existCustomer = customerService.findByEmail(travelAgent.getEmail());
+
+            if(existCustomer == null){
+                Customer inputCustomer = new Customer(travelAgent.getFirstName(),
+                        travelAgent.getLastName(),
+                        travelAgent.getEmail(),
+                        travelAgent.getPhoneNumber());
+
+                Customer customer = customerService.create(inputCustomer);
+
+                context.setHotelCustomerId(customer.getId());
+            }else {
+                context.setHotelCustomerId(existCustomer.getId());
+            }
+
+            context.setHotelBooking(bookingService.create(new Booking(travelAgent.getHotelId(),
+                    context.getHotelCustomerId(), travelAgent.getHotelBookingDate())));
+
+            log.fine("createTravelAgent - createHotelBooking completes to execution");
+        }catch (ConstraintViolationException ce) {
+            Map<String, String> responseObj = new HashMap<>();
+            for (ConstraintViolation<?> violation : ce.getConstraintViolations()) {
+                responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
+            }
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, ce);
+        } catch (UniqueEmailException e) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("unique issue", "That email is already used, please use a unique");
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.CONFLICT, e);
+        }  catch (UniqueHotelAndDateException e) {
+            Map<String, String> responseObj = new HashMap<>();
+            responseObj.put("hotelAndDate", "That hotelAndDate is already used, please use a unique hotelAndDate");
+            throw new RestServiceException("hotel details supplied in request body conflict with another booking",
+                    responseObj, Response.Status.CONFLICT, e);
+        }catch (Exception e) {
+            throw new RestServiceException(e.getMessage());
+        }
+
+        return sagaService.start(context.getHotelBooking().getId());
+    }
+
+    /**
+     * <p>Creates the TravelAgentBooking, or confirms the PENDING one, and completes its saga, in a transaction of their
+     * own.</p>
+     *
+     * @param sagaId The id of the TravelAgentSaga
+     * @param context The context holding the bookings that have been made
+     * @param pendingId The id of the PENDING TravelAgentBooking to confirm; or null to create a new one
+     * @return The confirmed TravelAgentBooking
+     * @throws Exception If the TravelAgentBooking could not be written
+     */
+    @WithSpan("travelAgent.finalise")
+    @Transactional(value = Transactional.TxType.REQUIRES_NEW, rollbackOn = Exception.class)
+    TravelAgentBooking finalise(Long sagaId, TravelAgentBookingContext context, Long pendingId) throws Exception {
+        TravelAgentBooking travelAgentBooking;
+        if (pendingId == null) {
+            travelAgentBooking = travelAgentBookingService.create(context.toTravelAgentBooking());
+        } else {
+            travelAgentBooking = context.confirm(travelAgentBookingService.findById(pendingId));
+        }
+        sagaService.complete(sagaId, travelAgentBooking.getId());
+        return travelAgentBooking;
+    }
+
+    /**
+     * <p>Checks what can be checked locally about a travel agent booking and writes it as a PENDING TravelAgentBooking,
+     * to be made later by {@link #submit}.</p>
+     *
+     * @param travelAgent The information needed to book the hotel, flight and taxi
+     * @return The PENDING TravelAgentBooking
+     * @throws RestServiceException If the request is invalid, the hotel does not exist or is already booked that day
+     */
+    @Transactional
+    TravelAgentBooking accept(TravelAgent travelAgent) throws Exception {
+        log.fine("TravelAgentBookingOrchestrator - accept begins to execution");
+
+        Set<ConstraintViolation<?>> violations = new HashSet<>();
+        violations.addAll(validator.validateValue(Booking.class, "hotelId", travelAgent.getHotelId()));
+        violations.addAll(validator.validateValue(Booking.class, "bookingDate", travelAgent.getHotelBookingDate()));
+        if (customerService.findByEmail(travelAgent.getEmail()) == null) {
+            violations.addAll(validator.validate(new Customer(travelAgent.getFirstName(), travelAgent.getLastName(),
+                    travelAgent.getEmail(), travelAgent.getPhoneNumber())));
+        }
+        Map<String, String> responseObj = new HashMap<>();
+        for (ConstraintViolation<?> violation : violations) {
+            responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        if (travelAgent.getFlightBookingDate() == null) {
+            responseObj.put("flightBookingDate", "must not be null");
+        }
+        if (travelAgent.getTaxiId() == null) {
+            responseObj.put("taxiId", "must not be null");
+        }
+        if (travelAgent.getTaxiBookingDate() == null) {
+            responseObj.put("taxiBookingDate", "must not be null");
+        }
+        if (!responseObj.isEmpty()) {
+            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST);
+        }
+
+        if (hotelService.findById(travelAgent.getHotelId()) == null) {
+            throw new RestServiceException("No Hotel with the id " + travelAgent.getHotelId() + " was found!",
+                    Response.Status.NOT_FOUND);
+        }
+        if (availabilityIndex.isBooked(travelAgent.getHotelId(), travelAgent.getHotelBookingDate())) {
+            responseObj.put("hotelAndDate", "That hotelAndDate is already used, please use a unique hotelAndDate");
+            throw new RestServiceException("hotel details supplied in request body conflict with another booking",
+                    responseObj, Response.Status.CONFLICT);
+        }
+
+        TravelAgentBooking pending = new TravelAgentBooking();
+        pending.setStatus(TravelAgentBooking.Status.PENDING);
+        travelAgentBookingService.create(pending);
+
+        log.fine(() -> "TravelAgentBookingOrchestrator - accept completes to execution. id = " + pending.getId());
+        return pending;
+    }
+
+    /**
+     * <p>Makes an accepted travel agent booking in the background. Must only be called once the PENDING
+     * TravelAgentBooking has been committed.</p>
+     *
+     * @param travelAgent The information needed to book the hotel, flight and taxi
+     * @param pendingId The id of the PENDING TravelAgentBooking
+     * @throws RestServiceException With 503 SERVICE UNAVAILABLE if too many bookings are already waiting
+     */
+    void submit(TravelAgent travelAgent, Long pendingId) {
+        try {
+            travelAgentBookingExecutor.runAsync(() -> complete(travelAgent, pendingId));
+        } catch (RejectedExecutionException e) {
+            travelAgentBookingService.markFailed(pendingId, "Too many travel agent bookings waiting to be processed");
+            throw new RestServiceException("Too many travel agent bookings waiting to be processed, try again later",
+                    Response.Status.SERVICE_UNAVAILABLE, e);
+        }
+    }
+
+    /**
+     * <p>Makes an accepted travel agent booking, recording why it failed if it does.</p>
+     *
+     * @param travelAgent The information needed to book the hotel, flight and taxi
+     * @param pendingId The id of the PENDING TravelAgentBooking
+     */
+    @ActivateRequestContext
+    void complete(TravelAgent travelAgent, Long pendingId) {
+        try {
+            book(travelAgent, pendingId);
+        } catch (RestServiceException e) {
+            travelAgentBookingService.markFailed(pendingId,
+                    e.getReasons() == null || e.getReasons().isEmpty() ? e.getMessage() : e.getMessage() + " " + e.getReasons());
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "TravelAgentBookingOrchestrator - complete failed for " + pendingId, e);
+            travelAgentBookingService.markFailed(pendingId, e.toString());
+        }
+    }
+
+    /**
+     * <p>Books the flight leg of a travel agent booking, reusing the flight customer with the same email if one exists.</p>
+     *
+     * <p>The customer is looked up through the flight customer cache, and a customer created by a guest booking is added
+     * to it, so repeat customers do not need a remote lookup.</p>
+     *
+     * <p>Only talks to the remote {@link FlightService}, so it is safe to run off the request thread.</p>
+     *
+     * @param travelAgent The travel agent request the flight is booked for
+     * @return The FlightBooking created by the remote service
+     */
+    @WithSpan("travelAgent.flightLeg")
+    FlightBooking createFlightBooking(TravelAgent travelAgent) {
+        FlightCustomer existCustomer = null;
+        try{
+            log.fine("createFlightBooking - findCustomerByEmail");
+            existCustomer = flightCustomerCache.get(travelAgent.getEmail(), flightService::findCustomerByEmail);
+        }catch (Exception e) {
+            // the lookup itself failed; a guest booking is made instead
+        }
+
+        if(existCustomer == null){
+            log.fine("createFlightBooking - createFlightGuestBooking");
+            FlightGuestBooking flightGuestBooking = new FlightGuestBooking(travelAgent.getFirstName(),
+                    travelAgent.getLastName(),travelAgent.getEmail(),travelAgent.getPhoneNumber(),
+                    travelAgent.getHotelId(),travelAgent.getFlightBookingDate());
+            FlightBooking flightBooking = flightService.createFlightGuestBooking(flightGuestBooking);
+
+            FlightCustomer createdCustomer = new FlightCustomer();
+            createdCustomer.setId(flightBooking.getContactId());
+            createdCustomer.setEmail(travelAgent.getEmail());
+            flightCustomerCache.put(travelAgent.getEmail(), createdCustomer);
+            return flightBooking;
+        }
+        log.fine("createFlightBooking - createFlightBooking");
+        return flightService.createFlightBooking(new FlightBooking(existCustomer.getId(), travelAgent.getHotelId(), travelAgent.getFlightBookingDate()));
+    }
+
+    /**
+     * <p>Books the taxi leg of a travel agent booking, reusing the taxi customer with the same email if one exists.</p>
+     *
+     * <p>The customer is looked up through the taxi customer cache, and a customer created by a guest booking is added
+     * to it, so repeat customers do not need a remote lookup.</p>
+     *
+     * <p>Only talks to the remote {@link TaxiService}, so it is safe to run off the request thread.</p>
+     *
+     * @param travelAgent The travel agent request the taxi is booked for
+     * @return The TaxiBooking created by the remote service
+     */
+    @WithSpan("travelAgent.taxiLeg")
+    TaxiBooking createTaxiBooking(TravelAgent travelAgent) {
+        TaxiCustomer existCustomer = null;
+        try{
+            log.fine("createTaxiBooking - findCustomerByEmail");
+            existCustomer = taxiCustomerCache.get(travelAgent.getEmail(), taxiService::findCustomerByEmail);
+        }catch (Exception e) {
+            // the lookup itself failed; a guest booking is made instead
+        }
+
+        if(existCustomer == null){
+            log.fine("createTaxiBooking - createTaxiGuestBooking");
+            TaxiGuestBooking taxiGuestBooking = new TaxiGuestBooking(travelAgent.getFirstName(),travelAgent.getLastName(),
+                    travelAgent.getEmail(),travelAgent.getPhoneNumber(),travelAgent.getBirthDate(),travelAgent.getTaxiId(),travelAgent.getTaxiBookingDate());
+            TaxiBooking taxiBooking = taxiService.createTaxiGuestBooking(taxiGuestBooking);
+
+            TaxiCustomer createdCustomer = new TaxiCustomer();
+            createdCustomer.setId(taxiBooking.getCustomerId());
+            createdCustomer.setEmail(travelAgent.getEmail());
+            taxiCustomerCache.put(travelAgent.getEmail(), createdCustomer);
+            return taxiBooking;
+        }
+        log.fine("createTaxiBooking - createTaxiBooking");
+        return taxiService.createTaxiBooking(new TaxiBooking(travelAgent.getTaxiId(), existCustomer.getId(), travelAgent.getTaxiBookingDate()));
+    }
+
+    /**
+     * <p>Runs a leg on the {@code remoteCallExecutor}, on a duplicated Vert.x context of its own. OpenTelemetry keeps
+     * the current span on the Vert.x context; legs running at once on the context of the request would overwrite each
+     * other's span, and leave one of them current once the request carries on.</p>
+     *
+     * <p>The returned future is completed on the worker thread, so whatever depends on it does not run on the event
+     * loop.</p>
+     *
+     * @param leg The leg of a travel agent booking
+     * @return The result of the leg
+     */
+    private <T> CompletableFuture<T> runLeg(Supplier<T> leg) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        VertxContext.createNewDuplicatedContext(vertx.getOrCreateContext())
+                .runOnContext(ignored -> remoteCallExecutor.executeBlocking(promise -> {
+                    try {
+                        result.complete(leg.get());
+                    } catch (Throwable e) {
+                        result.completeExceptionally(e);
+                    }
+                    promise.complete();
+                }, false));
+        return result;
+    }
+
+    /**
+     * <p>Waits until either every leg has succeeded or one of them has failed, whichever comes first, so a failure is
+     * reported without waiting for the other leg.</p>
+     *
+     * @param legs The legs of a travel agent booking
+     * @return The exception thrown by the first leg to fail; or null if every leg succeeded
+     */
+    private static Throwable awaitLegs(CompletableFuture<?>... legs) {
+        CompletableFuture<Void> firstFailure = new CompletableFuture<>();
+        for (CompletableFuture<?> leg : legs) {
+            leg.whenComplete((result, e) -> {
+                if (e != null) {
+                    firstFailure.completeExceptionally(e);
+                }
+            });
+        }
+        try {
+            CompletableFuture.anyOf(CompletableFuture.allOf(legs), firstFailure).join();
+            return null;
+        } catch (CompletionException | CancellationException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+    }
+
+    /**
+     * <p>Hands a failed travel agent booking over to the compensation worker. The hotel booking is cancelled straight
+     * away, so its date is free again by the time the client hears of the failure; if that fails, the worker cancels it
+     * along with the remote bookings.</p>
+     *
+     * <p>The flight and taxi bookings known to have been made are passed in rather than read from the saga; if the
+     * saga cannot be handed over either, they are logged so they can be cancelled by hand.</p>
+     *
+     * @param sagaId The id of the TravelAgentSaga of the failed booking
+     * @param flightBookingId The id of the flight booking; or null if it is not known to have been made
+     * @param taxiBookingId The id of the taxi booking; or null if it is not known to have been made
+     * @param reason Why the travel agent booking failed
+     */
+    @WithSpan("travelAgent.compensate")
+    void compensate(@SpanAttribute("travelAgent.sagaId") Long sagaId, Long flightBookingId, Long taxiBookingId,
+                    String reason) {
+        try {
+            sagaService.cancelHotelBooking(sagaId);
+        } catch (Exception e) {
+            log.log(Level.WARNING, "compensate - could not cancel the hotel booking of saga " + sagaId
+                    + ", leaving it to the compensation worker", e);
+        }
+        try {
+            sagaService.compensate(sagaId, flightBookingId, taxiBookingId, reason);
+        } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "compensate - could not hand saga " + sagaId + " over to compensation; flight booking "
+                    + flightBookingId + " / taxi booking " + taxiBookingId + " may have to be cancelled by hand", e);
+            throw e;
+        }
+    }
+
+    /**
+     * <p>Records a leg that succeeded after its travel agent booking had already failed, so the compensation worker
+     * cancels it too.</p>
+     *
+     * @param sagaId The id of the TravelAgentSaga of the failed booking
+     * @param flightBookingId The id of the flight booking; or null
+     * @param taxiBookingId The id of the taxi booking; or null
+     */
+    private void recordLateLeg(Long sagaId, Long flightBookingId, Long taxiBookingId) {
+        try {
+            sagaService.recordLegs(sagaId, flightBookingId, taxiBookingId);
+            compensationWorker.wake();
+        } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "recordLateLeg - could not record flight booking " + flightBookingId
+                    + " / taxi booking " + taxiBookingId + " of saga " + sagaId, e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package uk.ac.newcastle.enterprisemiddleware.travelAgent;
 
+import io.micrometer.core.annotation.Timed;
 import uk.ac.newcastle.enterprisemiddleware.hotel.Hotel;
 
 import javax.enterprise.context.RequestScoped;
@@ -9,9 +10,15 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import uk.ac.newcastle.enterprisemiddleware.util.EntityStreams;
+
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This is a Repository class and connects the Service/Control layer (see {@link TravelAgentBookingService} with the
@@ -21,6 +28,7 @@ import java.util.logging.Logger;
  * @see TravelAgentBooking
  * @see javax.persistence.EntityManager
  */
+@Timed("app.repository")
 @RequestScoped
 public class TravelAgentBookingRepository {
     @Inject
@@ -36,10 +44,10 @@ public class TravelAgentBookingRepository {
      *  @return List of Hotel objects
      */
     List<TravelAgentBooking> findAllTravelAgentBooking(){
-        log.info("TravelAgentBookingRepository -- findAllTravelAgentBooking method starts execution.");
+        log.fine("TravelAgentBookingRepository -- findAllTravelAgentBooking method starts execution.");
         TypedQuery<TravelAgentBooking> query = em.createNamedQuery(TravelAgentBooking.FIND_ALL, TravelAgentBooking.class);
         List<TravelAgentBooking> resultList = query.getResultList();
-        log.info("TravelAgentBookingRepository -- findAllTravelAgentBooking method completes execution.");
+        log.fine("TravelAgentBookingRepository -- findAllTravelAgentBooking method completes execution.");
         return resultList;
     }
 
@@ -50,9 +58,9 @@ public class TravelAgentBookingRepository {
      * @return The TravelAgentBooking with the specified id
      */
     TravelAgentBooking findById(Long id){
-        log.info("TravelAgentBookingRepository -- findById method starts execution.");
+        log.fine("TravelAgentBookingRepository -- findById method starts execution.");
         TravelAgentBooking travelAgentBooking = em.find(TravelAgentBooking.class, id);
-        log.info("TravelAgentBookingRepository -- findById method completes execution.");
+        log.fine("TravelAgentBookingRepository -- findById method completes execution.");
         return travelAgentBooking;
     }
 
@@ -63,13 +71,13 @@ public class TravelAgentBookingRepository {
      * @return The TravelAgentBooking with the specified hotelCustomerId
      */
     List<TravelAgentBooking> findByHotelCustomerId(Long hotelCustomerId){
-        log.info("TravelAgentBookingRepository -- findByHotelCustomerId method starts execution.");
+        log.fine("TravelAgentBookingRepository -- findByHotelCustomerId method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<TravelAgentBooking> criteria = cb.createQuery(TravelAgentBooking.class);
         Root<TravelAgentBooking> travelAgentBooking = criteria.from(TravelAgentBooking.class);
         criteria.select(travelAgentBooking).where(cb.equal(travelAgentBooking.get("hotelCustomerId"), hotelCustomerId));
         List<TravelAgentBooking> resultList = em.createQuery(criteria).getResultList();
-        log.info("TravelAgentBookingRepository -- findByHotelCustomerId method completes execution.");
+        log.fine("TravelAgentBookingRepository -- findByHotelCustomerId method completes execution.");
         return resultList;
     }
 
@@ -80,13 +88,13 @@ public class TravelAgentBookingRepository {
      * @return The TravelAgentBooking with the specified flightCustomerId
      */
     List<TravelAgentBooking> findByFlightCustomerId(Long flightCustomerId){
-        log.info("TravelAgentBookingRepository -- findByFlightCustomerId method starts execution.");
+        log.fine("TravelAgentBookingRepository -- findByFlightCustomerId method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<TravelAgentBooking> criteria = cb.createQuery(TravelAgentBooking.class);
         Root<TravelAgentBooking> travelAgentBooking = criteria.from(TravelAgentBooking.class);
         criteria.select(travelAgentBooking).where(cb.equal(travelAgentBooking.get("flightCustomerId"), flightCustomerId));
         List<TravelAgentBooking> resultList = em.createQuery(criteria).getResultList();
-        log.info("TravelAgentBookingRepository -- findByFlightCustomerId method completes execution.");
+        log.fine("TravelAgentBookingRepository -- findByFlightCustomerId method completes execution.");
         return resultList;
     }
 
@@ -97,16 +105,104 @@ public class TravelAgentBookingRepository {
      * @return The TravelAgentBooking with the specified taxiCustomerId
      */
     List<TravelAgentBooking> findByTaxiCustomerId(Long taxiCustomerId){
-        log.info("TravelAgentBookingRepository -- findByTaxiCustomerId method starts execution.");
+        log.fine("TravelAgentBookingRepository -- findByTaxiCustomerId method starts execution.");
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<TravelAgentBooking> criteria = cb.createQuery(TravelAgentBooking.class);
         Root<TravelAgentBooking> travelAgentBooking = criteria.from(TravelAgentBooking.class);
         criteria.select(travelAgentBooking).where(cb.equal(travelAgentBooking.get("taxiCustomerId"), taxiCustomerId));
         List<TravelAgentBooking> resultList = em.createQuery(criteria).getResultList();
-        log.info("TravelAgentBookingRepository -- findByTaxiCustomerId method completes execution.");
+        log.fine("TravelAgentBookingRepository -- findByTaxiCustomerId method completes execution.");
         return resultList;
     }
 
+    /**
+     * <p>Returns a page of TravelAgentBooking objects matching any combination of hotelCustomerId, flightCustomerId and
+     * taxiCustomerId, sorted by id.</p>
+     *
+     * <p>Every filter that is null is left out of the WHERE clause, and the hotel Booking of each TravelAgentBooking is
+     * fetched in the same query, so a page costs a single query however many bookings it holds.</p>
+     *
+     * @param hotelCustomerId The hotelCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param flightCustomerId The flightCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param taxiCustomerId The taxiCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param after The id after which the page starts; or null for the first page
+     * @param offset The number of matching TravelAgentBookings to skip
+     * @param limit The maximum number of TravelAgentBookings to return; or null for no limit
+     * @return The TravelAgentBookings matching every supplied filter
+     */
+    List<TravelAgentBooking> findByFilter(Long hotelCustomerId, Long flightCustomerId, Long taxiCustomerId,
+                                          Long after, int offset, Integer limit){
+        log.fine("TravelAgentBookingRepository -- findByFilter method starts execution.");
+        TypedQuery<TravelAgentBooking> query =
+                em.createQuery(filter(hotelCustomerId, flightCustomerId, taxiCustomerId, after)).setFirstResult(offset);
+        if (limit != null) {
+            query.setMaxResults(limit);
+        }
+        List<TravelAgentBooking> resultList = query.getResultList();
+        log.fine("TravelAgentBookingRepository -- findByFilter method completes execution.");
+        return resultList;
+    }
+
+    /**
+     * <p>Returns the TravelAgentBooking objects matching any combination of hotelCustomerId, flightCustomerId and
+     * taxiCustomerId, sorted by id, as a stream read from the database one batch at a time.</p>
+     *
+     * @param hotelCustomerId The hotelCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param flightCustomerId The flightCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param taxiCustomerId The taxiCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param after The id after which the stream starts; or null to start from the first TravelAgentBooking
+     * @return The TravelAgentBookings matching every supplied filter, as a stream that has to be closed
+     * @see EntityStreams#scroll
+     */
+    Stream<TravelAgentBooking> streamByFilter(Long hotelCustomerId, Long flightCustomerId, Long taxiCustomerId,
+                                              Long after){
+        log.fine("TravelAgentBookingRepository -- streamByFilter method starts execution.");
+        Stream<TravelAgentBooking> stream =
+                EntityStreams.scroll(em.createQuery(filter(hotelCustomerId, flightCustomerId, taxiCustomerId, after)), em);
+        log.fine("TravelAgentBookingRepository -- streamByFilter method completes execution.");
+        return stream;
+    }
+
+    private CriteriaQuery<TravelAgentBooking> filter(Long hotelCustomerId, Long flightCustomerId, Long taxiCustomerId,
+                                                     Long after) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<TravelAgentBooking> criteria = cb.createQuery(TravelAgentBooking.class);
+        Root<TravelAgentBooking> travelAgentBooking = criteria.from(TravelAgentBooking.class);
+        travelAgentBooking.fetch("booking", JoinType.LEFT);
+        List<Predicate> predicates = new ArrayList<>();
+        if (hotelCustomerId != null) {
+            predicates.add(cb.equal(travelAgentBooking.get("hotelCustomerId"), hotelCustomerId));
+        }
+        if (flightCustomerId != null) {
+            predicates.add(cb.equal(travelAgentBooking.get("flightCustomerId"), flightCustomerId));
+        }
+        if (taxiCustomerId != null) {
+            predicates.add(cb.equal(travelAgentBooking.get("taxiCustomerId"), taxiCustomerId));
+        }
+        if (after != null) {
+            predicates.add(cb.gt(travelAgentBooking.get("id"), after));
+        }
+        return criteria.select(travelAgentBooking).where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.asc(travelAgentBooking.get("id")));
+    }
+
+    /**
+     * <p>Marks every PENDING TravelAgentBooking as FAILED with the given reason.</p>
+     *
+     * @param reason The reason recorded on the bookings
+     * @return The number of bookings marked as failed
+     */
+    int failPending(String reason) {
+        log.fine("TravelAgentBookingRepository -- failPending method starts execution.");
+        int failed = em.createNamedQuery(TravelAgentBooking.FAIL_PENDING)
+                .setParameter("failed", TravelAgentBooking.Status.FAILED)
+                .setParameter("pending", TravelAgentBooking.Status.PENDING)
+                .setParameter("reason", reason)
+                .executeUpdate();
+        log.fine("TravelAgentBookingRepository -- failPending method completes execution.");
+        return failed;
+    }
+
     /**
      * <p>Persists the provided TravelAgentBooking object to the application database using the EntityManager.</p>
      *
@@ -115,9 +211,9 @@ public class TravelAgentBookingRepository {
      * @throws Exception
      */
     TravelAgentBooking create(TravelAgentBooking travelAgentBooking) throws Exception {
-        log.info("TravelAgentBookingRepository -- create method Creating");
+        log.fine("TravelAgentBookingRepository -- create method Creating");
         em.persist(travelAgentBooking);
-        log.info("TravelAgentBookingRepository -- create method completes execution.");
+        log.fine("TravelAgentBookingRepository -- create method completes execution.");
         return travelAgentBooking;
     }
 
@@ -129,9 +225,9 @@ public class TravelAgentBookingRepository {
      * @throws Exception
      */
     TravelAgentBooking update(TravelAgentBooking travelAgentBooking) throws Exception {
-        log.info("TravelAgentBookingRepository -- update method Updating ");
+        log.fine("TravelAgentBookingRepository -- update method Updating ");
         em.merge(travelAgentBooking);
-        log.info("TravelAgentBookingRepository -- update method completes execution.");
+        log.fine("TravelAgentBookingRepository -- update method completes execution.");
         return travelAgentBooking;
     }
 
@@ -143,13 +239,13 @@ public class TravelAgentBookingRepository {
      * @throws Exception
      */
     TravelAgentBooking delete(TravelAgentBooking travelAgentBooking) throws Exception {
-        log.info("TravelAgentBookingRepository -- delete method Deleting ");
+        log.fine("TravelAgentBookingRepository -- delete method Deleting ");
         if (travelAgentBooking.getId() != null) {
             em.remove(em.merge(travelAgentBooking));
         } else {
-            log.info("TravelAgentBookingRepository -- delete method - No Id was found so can't Delete.");
+            log.fine("TravelAgentBookingRepository -- delete method - No Id was found so can't Delete.");
         }
-        log.info("TravelAgentBookingRepository -- delete method completes execution.");
+        log.fine("TravelAgentBookingRepository -- delete method completes execution.");
         return travelAgentBooking;
     }
 }
@@ -1,10 +1,14 @@
 package uk.ac.newcastle.enterprisemiddleware.travelAgent;
 
+import io.micrometer.core.annotation.Timed;
+
 import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.transaction.Transactional;
 import java.util.List;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
@@ -12,6 +16,7 @@ import java.util.logging.Logger;
  * @author Howie
  * @see TravelAgentBookingRepository
  */
+@Timed("app.service")
 @Dependent
 public class TravelAgentBookingService {
     @Inject
@@ -70,6 +75,38 @@ public class TravelAgentBookingService {
         return crud.findByTaxiCustomerId(taxiCustomerId);
     }
 
+    /**
+     * <p>Returns a page of TravelAgentBooking objects matching any combination of hotelCustomerId, flightCustomerId and
+     * taxiCustomerId.</p>
+     *
+     * @param hotelCustomerId The hotelCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param flightCustomerId The flightCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param taxiCustomerId The taxiCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param after The id after which the page starts; or null for the first page
+     * @param offset The number of matching TravelAgentBookings to skip
+     * @param limit The maximum number of TravelAgentBookings to return; or null for no limit
+     * @return The TravelAgentBookings matching every supplied filter
+     */
+    List<TravelAgentBooking> findByFilter(Long hotelCustomerId, Long flightCustomerId, Long taxiCustomerId,
+                                          Long after, int offset, Integer limit){
+        return crud.findByFilter(hotelCustomerId, flightCustomerId, taxiCustomerId, after, offset, limit);
+    }
+
+    /**
+     * <p>Returns the TravelAgentBooking objects matching any combination of hotelCustomerId, flightCustomerId and
+     * taxiCustomerId as a stream.</p>
+     *
+     * @param hotelCustomerId The hotelCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param flightCustomerId The flightCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param taxiCustomerId The taxiCustomerId field of the TravelAgentBookings to be returned; or null
+     * @param after The id after which the stream starts; or null to start from the first TravelAgentBooking
+     * @return The TravelAgentBookings matching every supplied filter, as a stream that has to be closed
+     */
+    Stream<TravelAgentBooking> streamByFilter(Long hotelCustomerId, Long flightCustomerId, Long taxiCustomerId,
+                                              Long after){
+        return crud.streamByFilter(hotelCustomerId, flightCustomerId, taxiCustomerId, after);
+    }
+
     /**
      * <p>Writes the provided TravelAgentBooking object to the application database.<p/>
      *
@@ -78,11 +115,40 @@ public class TravelAgentBookingService {
      * @throws Exception
      */
     TravelAgentBooking create(TravelAgentBooking travelAgentBooking) throws Exception {
-        log.info("TravelAgentBookingService.create() - Creating ");
+        log.fine("TravelAgentBookingService.create() - Creating ");
 
         return crud.create(travelAgentBooking);
     }
 
+    /**
+     * <p>Marks a TravelAgentBooking accepted for asynchronous processing as FAILED.<p/>
+     *
+     * @param id The id of the TravelAgentBooking
+     * @param reason Why the booking failed
+     */
+    @Transactional
+    void markFailed(Long id, String reason) {
+        log.info(() -> "TravelAgentBookingService.markFailed() - " + id + ": " + reason);
+
+        TravelAgentBooking travelAgentBooking = crud.findById(id);
+        if (travelAgentBooking != null) {
+            travelAgentBooking.setStatus(TravelAgentBooking.Status.FAILED);
+            travelAgentBooking.setFailureReason(reason != null && reason.length() > 1000 ? reason.substring(0, 1000) : reason);
+        }
+    }
+
+    /**
+     * <p>Marks every TravelAgentBooking still PENDING as FAILED, e.g. because the application stopped before they were
+     * processed.<p/>
+     *
+     * @param reason The reason recorded on the bookings
+     * @return The number of bookings marked as failed
+     */
+    @Transactional
+    int failPending(String reason) {
+        return crud.failPending(reason);
+    }
+
     /**
      * <p>Updates an existing TravelAgentBooking object in the application database with the provided TravelAgentBooking object.<p/>
      *
@@ -91,7 +157,7 @@ public class TravelAgentBookingService {
      * @throws Exception
      */
     TravelAgentBooking update(TravelAgentBooking travelAgentBooking) throws Exception {
-        log.info("TravelAgentBookingService.update() - Updating ");
+        log.fine("TravelAgentBookingService.update() - Updating ");
 
         return crud.update(travelAgentBooking);
     }
@@ -104,14 +170,14 @@ public class TravelAgentBookingService {
      * @throws Exception
      */
     TravelAgentBooking delete(TravelAgentBooking travelAgentBooking) throws Exception {
-        log.info("delete() - Deleting ");
+        log.fine("delete() - Deleting ");
 
         TravelAgentBooking deletedTravelAgentBooking = null;
 
         if (travelAgentBooking.getId() != null) {
             deletedTravelAgentBooking = crud.delete(travelAgentBooking);
         } else {
-            log.info("delete() - No ID was found so can't Delete.");
+            log.fine("delete() - No ID was found so can't Delete.");
         }
 
         return deletedTravelAgentBooking;
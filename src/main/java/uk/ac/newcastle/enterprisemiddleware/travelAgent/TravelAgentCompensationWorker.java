@@ -0,0 +1,208 @@
+package uk.ac.newcastle.enterprisemiddleware.travelAgent;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.extension.annotations.WithSpan;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.rest.client.inject.RestClient;
+import uk.ac.newcastle.enterprisemiddleware.flight.FlightService;
+import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiService;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Cancels the bookings of failed travel agent bookings in the background, so a request can fail as soon as one of
+ * its bookings does instead of waiting for the others to be undone.</p>
+ *
+ * <p>The worker polls the saga log every {@code travel-agent.compensation.poll-interval}, and straight away when
+ * {@link #wake()} is called. Each due saga has its outstanding bookings cancelled one by one, recording every
+ * cancellation as it succeeds. A failed attempt is retried after an exponential backoff, starting at
+ * {@code initial-backoff} and capped at {@code max-backoff}; after {@code max-attempts} the saga is moved to the
+ * failed compensation queue, where it waits for someone to look at it.</p>
+ *
+ * <p>Sagas that were started but not touched for {@code stale-after}, e.g. because the application stopped mid
+ * booking, are compensated as well.</p>
+ *
+ * @author Howie
+ * @see TravelAgentSaga
+ */
+@ApplicationScoped
+public class TravelAgentCompensationWorker {
+
+    private static final int BATCH_SIZE = 20;
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    TravelAgentSagaService sagaService;
+
+    @RestClient
+    FlightService flightService;
+
+    @RestClient
+    TaxiService taxiService;
+
+    @ConfigProperty(name = "travel-agent.compensation.poll-interval", defaultValue = "PT5S")
+    Duration pollInterval;
+
+    @ConfigProperty(name = "travel-agent.compensation.initial-backoff", defaultValue = "PT1S")
+    Duration initialBackoff;
+
+    @ConfigProperty(name = "travel-agent.compensation.max-backoff", defaultValue = "PT5M")
+    Duration maxBackoff;
+
+    @ConfigProperty(name = "travel-agent.compensation.max-attempts", defaultValue = "10")
+    int maxAttempts;
+
+    @ConfigProperty(name = "travel-agent.compensation.stale-after", defaultValue = "PT5M")
+    Duration staleAfter;
+
+    private ScheduledExecutorService worker;
+
+    void onStart(@Observes StartupEvent event) {
+        worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "travel-agent-compensation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.scheduleWithFixedDelay(this::compensateDue, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (worker != null) {
+            worker.shutdownNow();
+        }
+    }
+
+    /**
+     * <p>Asks the worker to look for due sagas now rather than at its next poll.</p>
+     */
+    public void wake() {
+        try {
+            worker.execute(this::compensateDue);
+        } catch (RejectedExecutionException e) {
+            // shutting down; the saga is picked up again on the next start
+        }
+    }
+
+    /**
+     * <p>Compensates every saga whose next attempt is due. Runs on the single worker thread only, so a saga is never
+     * compensated twice at the same time.</p>
+     */
+    void compensateDue() {
+        try {
+            List<TravelAgentSaga> due;
+            do {
+                due = sagaService.findDue(new Date(System.currentTimeMillis() - staleAfter.toMillis()), BATCH_SIZE);
+                for (TravelAgentSaga saga : due) {
+                    compensate(saga);
+                }
+            } while (due.size() == BATCH_SIZE);
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "TravelAgentCompensationWorker -- compensateDue failed", e);
+        }
+    }
+
+    /**
+     * <p>Makes one attempt to cancel the outstanding bookings of a saga, traced as a span of its own.</p>
+     *
+     * @param saga The TravelAgentSaga to compensate
+     */
+    @WithSpan("travelAgent.compensation")
+    void compensate(TravelAgentSaga saga) {
+        Span.current().setAttribute("travelAgent.sagaId", saga.getId());
+        log.fine(() -> "TravelAgentCompensationWorker -- compensate starts execution. saga = " + saga.getId());
+        String error = null;
+
+        if (saga.getTaxiStep() == TravelAgentSaga.StepStatus.BOOKED) {
+            try {
+                cancelRemotely(() -> taxiService.cancelTaxiBooking(saga.getTaxiBookingId()));
+                sagaService.taxiCancelled(saga.getId());
+            } catch (Exception e) {
+                error = "Taxi booking " + saga.getTaxiBookingId() + ": " + e;
+            }
+        }
+        if (saga.getFlightStep() == TravelAgentSaga.StepStatus.BOOKED) {
+            try {
+                cancelRemotely(() -> flightService.cancelFlightBooking(saga.getFlightBookingId()));
+                sagaService.flightCancelled(saga.getId());
+            } catch (Exception e) {
+                error = "Flight booking " + saga.getFlightBookingId() + ": " + e;
+            }
+        }
+        if (saga.getHotelStep() == TravelAgentSaga.StepStatus.BOOKED) {
+            try {
+                sagaService.cancelHotelBooking(saga.getId());
+            } catch (Exception e) {
+                error = "Hotel booking " + saga.getHotelBookingId() + ": " + e;
+            }
+        }
+
+        if (error == null) {
+            sagaService.compensated(saga.getId());
+            log.fine(() -> "TravelAgentCompensationWorker -- compensate completes execution. saga = " + saga.getId());
+            return;
+        }
+
+        Duration backoff = backoff(saga.getAttempts() + 1);
+        Date nextAttemptAt = new Date(System.currentTimeMillis() + backoff.toMillis());
+        TravelAgentSaga updated = sagaService.attemptFailed(saga.getId(), error, nextAttemptAt, maxAttempts);
+        if (updated.getStatus() == TravelAgentSaga.Status.COMPENSATION_FAILED) {
+            log.severe("TravelAgentCompensationWorker -- giving up on saga " + saga.getId() + " after "
+                    + updated.getAttempts() + " attempts: " + error);
+        } else {
+            if (backoff.compareTo(pollInterval) < 0) {
+                worker.schedule(this::compensateDue, backoff.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            log.warning("TravelAgentCompensationWorker -- attempt " + updated.getAttempts() + " of saga "
+                    + saga.getId() + " failed, retrying at " + nextAttemptAt + ": " + error);
+        }
+    }
+
+    /**
+     * <p>Returns how long to wait before the given attempt: the initial backoff doubled for every earlier failure, capped
+     * at the maximum backoff, less up to a fifth so failed sagas do not all retry at the same moment.</p>
+     *
+     * @param attempt The number of the failed attempt, starting at 1
+     * @return The delay before the next attempt
+     */
+    Duration backoff(int attempt) {
+        long delay = initialBackoff.toMillis() << Math.min(attempt - 1, 30);
+        if (delay <= 0 || delay > maxBackoff.toMillis()) {
+            delay = maxBackoff.toMillis();
+        }
+        return Duration.ofMillis(delay - ThreadLocalRandom.current().nextLong(delay / 5 + 1));
+    }
+
+    /**
+     * <p>Runs a remote cancellation, treating a booking the remote service no longer knows about as cancelled.</p>
+     */
+    private static void cancelRemotely(Runnable cancellation) {
+        try {
+            cancellation.run();
+        } catch (WebApplicationException e) {
+            if (e.getResponse() == null || e.getResponse().getStatus() != Response.Status.NOT_FOUND.getStatusCode()) {
+                throw e;
+            }
+        }
+    }
+}
@@ -1,45 +1,32 @@
 package uk.ac.newcastle.enterprisemiddleware.travelAgent;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
-import org.eclipse.microprofile.rest.client.inject.RestClient;
 import org.jboss.resteasy.reactive.Cache;
-import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
-import uk.ac.newcastle.enterprisemiddleware.booking.BookingService;
-import uk.ac.newcastle.enterprisemiddleware.booking.UniqueHotelAndDateException;
-import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
-import uk.ac.newcastle.enterprisemiddleware.customer.CustomerService;
-import uk.ac.newcastle.enterprisemiddleware.customer.UniqueEmailException;
-import uk.ac.newcastle.enterprisemiddleware.flight.FlightBooking;
 import uk.ac.newcastle.enterprisemiddleware.flight.FlightCustomer;
-import uk.ac.newcastle.enterprisemiddleware.flight.FlightGuestBooking;
-import uk.ac.newcastle.enterprisemiddleware.flight.FlightService;
-import uk.ac.newcastle.enterprisemiddleware.guestBooking.GuestBooking;
-import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiBooking;
 import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiCustomer;
-import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiGuestBooking;
-import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiService;
+import uk.ac.newcastle.enterprisemiddleware.util.IdempotencyStore;
+import uk.ac.newcastle.enterprisemiddleware.util.RemoteCustomerCache;
+import uk.ac.newcastle.enterprisemiddleware.util.JsonArrayOutput;
+import uk.ac.newcastle.enterprisemiddleware.util.KeysetPage;
 import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.persistence.NoResultException;
-import javax.transaction.SystemException;
-import javax.transaction.Transactional;
-import javax.transaction.UserTransaction;
-import javax.validation.ConstraintViolation;
-import javax.validation.ConstraintViolationException;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * @author Howie
@@ -49,238 +36,260 @@ import java.util.stream.Collectors;
 @Consumes(MediaType.APPLICATION_JSON)
 public class TravelAgentRestService {
 
-    private static final Map<String,Long> CUSTOMER_IDS = new HashMap<>();
+    private static final String RESPOND_ASYNC = "respond-async";
 
     @Inject
     @Named("logger")
     Logger log;
 
-    @RestClient
-    FlightService flightService;
+    @Inject
+    TravelAgentBookingService travelAgentBookingService;
+
+    @Inject
+    TravelAgentSagaService sagaService;
 
-    @RestClient
-    TaxiService taxiService;
+    @Inject
+    TravelAgentCompensationWorker compensationWorker;
 
     @Inject
-    CustomerService customerService;
+    TravelAgentBookingOrchestrator orchestrator;
 
     @Inject
-    BookingService bookingService;
+    IdempotencyStore idempotencyStore;
 
     @Inject
-    TravelAgentBookingService travelAgentBookingService;
+    ObjectMapper mapper;
+
+    @Inject
+    @Named("flightCustomerCache")
+    RemoteCustomerCache<FlightCustomer> flightCustomerCache;
+
+    @Inject
+    @Named("taxiCustomerCache")
+    RemoteCustomerCache<TaxiCustomer> taxiCustomerCache;
 
     /**
-     * <p>Return all the Hotels.  They are sorted alphabetically by Id.</p>
+     * <p>Return all the TravelAgentBookings.  They are sorted by Id.</p>
+     *
+     * <p>The hotelCustomerId, taxiCustomerId and flightCustomerId filters and the paging are all applied by the
+     * database in a single query, which also fetches the hotel Booking of each TravelAgentBooking. Given a limit or an
+     * after cursor, a Link header with rel="next" plus an X-Next-Cursor header point at the next page if there is one.
+     * With stream=true every matching TravelAgentBooking after the cursor is written out while it is read from the
+     * database, and offset and limit are ignored.</p>
      *
-     * @return A Response containing a list of hotels
+     * @return A Response containing a list of TravelAgentBookings
      */
     @GET
     @Cache
     @Operation(summary = "Fetch all TravelAgentBookings", description = "Returns a JSON array of all stored TravelAgentBooking objects.")
     @APIResponses(value = {
             @APIResponse(responseCode = "200", description ="TravelAgentBooking found"),
+            @APIResponse(responseCode = "400", description = "Invalid paging parameters"),
             @APIResponse(responseCode = "500", description = "TravelAgentBooking with date not found")
     })
     public Response retrieveAllTravelAgentBookings(@QueryParam("hotelCustomerId") Long hotelCustomerId,
-                                               @QueryParam("taxiCustomerId") Long taxiCustomerId,@QueryParam("flightCustomerId") Long flightCustomerId){
-        log.info("TravelAgentRestService -- retrieveAllTravelAgentBookings starts execution.");
-        List<TravelAgentBooking> travelAgentBookings = travelAgentBookingService.findAllTravelAgentBooking();
-        if(hotelCustomerId != null){
-            travelAgentBookings = travelAgentBookings.stream().filter(e -> e.getHotelCustomerId().equals(hotelCustomerId)).collect(Collectors.toList());
+                                               @QueryParam("taxiCustomerId") Long taxiCustomerId,@QueryParam("flightCustomerId") Long flightCustomerId,
+                                               @Parameter(description = "id of the last travel agent booking of the previous page")
+                                               @QueryParam("after") Long after,
+                                               @Parameter(description = "number of matching travel agent bookings to skip")
+                                               @QueryParam("offset") @DefaultValue("0") int offset,
+                                               @Parameter(description = "maximum number of travel agent bookings to return")
+                                               @QueryParam("limit") Integer limit,
+                                               @Parameter(description = "write every matching travel agent booking as it is read")
+                                               @QueryParam("stream") boolean stream,
+                                               @Context UriInfo uriInfo){
+        log.fine("TravelAgentRestService -- retrieveAllTravelAgentBookings starts execution.");
+
+        if(offset < 0){
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+        KeysetPage.validate(after, limit);
+
+        if(stream){
+            log.fine("TravelAgentRestService -- retrieveAllTravelAgentBookings completes execution.");
+            return Response.ok(new JsonArrayOutput(
+                    travelAgentBookingService.streamByFilter(hotelCustomerId, flightCustomerId, taxiCustomerId, after),
+                    mapper)).build();
+        }
+        if(after == null && limit == null){
+            List<TravelAgentBooking> travelAgentBookings =
+                    travelAgentBookingService.findByFilter(hotelCustomerId, flightCustomerId, taxiCustomerId, null, offset, null);
+            log.fine("TravelAgentRestService -- retrieveAllTravelAgentBookings completes execution.");
+            return Response.ok(travelAgentBookings).build();
         }
-        if(taxiCustomerId != null){
-            travelAgentBookings = travelAgentBookings.stream().filter(e -> e.getTaxiCustomerId().equals(taxiCustomerId)).collect(Collectors.toList());
+        int size = KeysetPage.size(limit);
+        List<TravelAgentBooking> travelAgentBookings =
+                travelAgentBookingService.findByFilter(hotelCustomerId, flightCustomerId, taxiCustomerId, after, offset, size + 1);
+
+        log.fine("TravelAgentRestService -- retrieveAllTravelAgentBookings completes execution.");
+        return KeysetPage.ok(travelAgentBookings, size, TravelAgentBooking::getId, uriInfo).build();
+    }
+
+    /**
+     * <p>Return the hit, miss and eviction counters of the flight and taxi customer caches.</p>
+     *
+     * @return A Response containing the counters of each cache
+     */
+    @GET
+    @Path("/customerCache/stats")
+    @Operation(summary = "Fetch customer cache statistics",
+            description = "Returns the hit, miss and eviction counters of the flight and taxi customer caches.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="Statistics found")
+    })
+    public Response retrieveCustomerCacheStats() {
+        Map<String, Map<String, Long>> stats = new HashMap<>();
+        stats.put("flight", flightCustomerCache.stats());
+        stats.put("taxi", taxiCustomerCache.stats());
+        return Response.ok(stats).build();
+    }
+
+    /**
+     * <p>Return the travel agent sagas in the given state, by default the ones whose compensation has failed.</p>
+     *
+     * @param status The state of the sagas to return
+     * @return A Response containing a list of sagas
+     */
+    @GET
+    @Path("/sagas")
+    @Operation(summary = "Fetch travel agent sagas by state",
+            description = "Returns the sagas in the given state; by default the failed compensation queue.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="Sagas found"),
+            @APIResponse(responseCode = "400", description = "Invalid saga state supplied")
+    })
+    public Response retrieveSagas(@QueryParam("status") @DefaultValue("COMPENSATION_FAILED") String status) {
+        TravelAgentSaga.Status sagaStatus;
+        try {
+            sagaStatus = TravelAgentSaga.Status.valueOf(status);
+        } catch (IllegalArgumentException e) {
+            throw new RestServiceException("No saga state " + status, Response.Status.BAD_REQUEST);
         }
-        if(flightCustomerId != null){
-            travelAgentBookings = travelAgentBookings.stream().filter(e -> e.getFlightCustomerId().equals(flightCustomerId)).collect(Collectors.toList());
+        return Response.ok(sagaService.findByStatus(sagaStatus)).build();
+    }
+
+    /**
+     * <p>Puts a saga from the failed compensation queue back to compensation.</p>
+     *
+     * @param id The id of the saga
+     * @return A Response containing the saga
+     */
+    @POST
+    @Path("/sagas/{id:[0-9]+}/retry")
+    @Operation(description = "Retry the compensation of a travel agent saga that has failed")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description = "The saga has been put back to compensation"),
+            @APIResponse(responseCode = "404", description = "No saga with a failed compensation has that id")
+    })
+    public Response retrySagaCompensation(
+            @Parameter(description = "Id of the saga to retry", required = true)
+            @Schema(minimum = "0")
+            @PathParam("id")
+                    long id) {
+        TravelAgentSaga saga = sagaService.retry(id);
+        if (saga == null) {
+            throw new RestServiceException("No saga with a failed compensation and the id " + id + " was found!",
+                    Response.Status.NOT_FOUND);
         }
-        log.info("TravelAgentRestService -- retrieveAllTravelAgentBookings completes execution.");
-        return Response.ok(travelAgentBookings).build();
+        compensationWorker.wake();
+        return Response.ok(saga).build();
     }
 
+    /**
+     * <p>Books a hotel, flight and taxi for a customer.</p>
+     *
+     * <p>By default the bookings are made while the client waits, and 201 CREATED is returned with the
+     * TravelAgentBooking. A client that sends {@code Prefer: respond-async} gets 202 ACCEPTED as soon as the request
+     * has been checked, with a PENDING TravelAgentBooking and its status URL in the Location header; the bookings are
+     * then made in the background.</p>
+     *
+     * <p>A request sent with an {@code Idempotency-Key} header that has been used before gets the outcome of the first
+     * request with that key, without anything being booked again.</p>
+     *
+     * @param idempotencyKey The Idempotency-Key header of the request
+     * @param prefer The Prefer header of the request
+     * @param travelAgent The information needed to book the hotel, flight and taxi
+     * @return A Response containing the TravelAgentBooking
+     */
     @POST
     @Operation(description = "Book hotels,flight and taxis")
     @APIResponses(value = {
             @APIResponse(responseCode = "201", description = "Customer and Booking created successfully."),
+            @APIResponse(responseCode = "202", description = "Booking accepted, poll the Location for its status."),
             @APIResponse(responseCode = "400", description = "Invalid GuestBooking supplied in request body"),
             @APIResponse(responseCode = "404", description = "Hotel with id not found"),
             @APIResponse(responseCode = "409", description = "email or hotel and date supplied in request body conflicts with an existing record"),
-            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request")
+            @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request"),
+            @APIResponse(responseCode = "503", description = "Too many bookings waiting to be processed")
     })
-    @Transactional
     public Response createTravelAgentBooking(
+            @Parameter(description = "Unique key of this booking, so retries of the request do not book again")
+            @HeaderParam(IdempotencyStore.HEADER) String idempotencyKey,
+            @Parameter(description = "respond-async to have the bookings made in the background")
+            @HeaderParam("Prefer") String prefer,
             @Parameter(description = "JSON representation of the information needed to book hotels,flights and taxis", required = true)
                     TravelAgent travelAgent) throws Exception {
+        return idempotencyStore.execute("POST /travelAgent", idempotencyKey, travelAgent,
+                () -> createTravelAgentBooking(prefer, travelAgent));
+    }
 
-        log.info("TravelAgentRestService - createTravelAgent begins to execution");
-
-        Response.ResponseBuilder builder;
-        TravelAgentBooking travelAgentBooking = new TravelAgentBooking();
-
-        Booking hotelBooking;
-        FlightBooking flightBooking;
-        TaxiBooking taxiBooking;
-
-        try{
-            log.info("createTravelAgent - createHotelBooking begins to execution");
-
-            Customer existCustomer = null;
-            try{
-                existCustomer = customerService.findByEmail(travelAgent.getEmail());
-            }catch (NoResultException e) {
-                // ignore
-            }
-
-            if(existCustomer == null){
-                Customer inputCustomer = new Customer(travelAgent.getFirstName(),
-                        travelAgent.getLastName(),
-                        travelAgent.getEmail(),
-                        travelAgent.getPhoneNumber());
-
-                Customer customer = customerService.create(inputCustomer);
-
-                CUSTOMER_IDS.put("hotelCustomerId",customer.getId());
-            }else {
-                CUSTOMER_IDS.put("hotelCustomerId",existCustomer.getId());
-            }
-            Long hotelCustomerId = CUSTOMER_IDS.get("hotelCustomerId");
-
-            hotelBooking = bookingService.create(new Booking(hotelCustomerId,
-                    travelAgent.getHotelId(), travelAgent.getHotelBookingDate()));
-            travelAgentBooking.setHotelCustomerId(hotelCustomerId);
-            travelAgentBooking.setHotelBookingId(hotelBooking.getId());
-
-            log.info("createTravelAgent - createHotelBooking completes to execution");
-        }catch (ConstraintViolationException ce) {
-            Map<String, String> responseObj = new HashMap<>();
-            for (ConstraintViolation<?> violation : ce.getConstraintViolations()) {
-                responseObj.put(violation.getPropertyPath().toString(), violation.getMessage());
-            }
-            throw new RestServiceException("Bad Request", responseObj, Response.Status.BAD_REQUEST, ce);
-        } catch (UniqueEmailException e) {
-            Map<String, String> responseObj = new HashMap<>();
-            responseObj.put("unique issue", "That email is already used, please use a unique");
-            throw new RestServiceException("Bad Request", responseObj, Response.Status.CONFLICT, e);
-        }  catch (UniqueHotelAndDateException e) {
-            Map<String, String> responseObj = new HashMap<>();
-            responseObj.put("hotelAndDate", "That hotelAndDate is already used, please use a unique hotelAndDate");
-            throw new RestServiceException("hotel details supplied in request body conflict with another booking",
-                    responseObj, Response.Status.CONFLICT, e);
-        }catch (Exception e) {
-            throw new RestServiceException(e.getMessage());
-        }
-
-        try{
-            log.info("createTravelAgent - createFlightBooking begins to execution");
-
-            FlightCustomer existCustomer = null;
-            try{
-                log.info("createFlightBooking - findCustomerByEmail");
-                existCustomer = flightService.findCustomerByEmail(travelAgent.getEmail());
-            }catch (Exception e) {
-                /*if(e.getResponse().getStatusInfo() == Response.Status.NOT_FOUND){
-                    // ignore
-                }else {
-                    throw new RestServiceException(e.getMessage());
-                }*/
-            }
-
-            if(existCustomer == null){
-                log.info("createFlightBooking - createFlightGuestBooking");
-                FlightGuestBooking flightGuestBooking = new FlightGuestBooking(travelAgent.getFirstName(),
-                        travelAgent.getLastName(),travelAgent.getEmail(),travelAgent.getPhoneNumber(),
-                        travelAgent.getHotelId(),travelAgent.getFlightBookingDate());
-                flightBooking = flightService.createFlightGuestBooking(flightGuestBooking);
-                CUSTOMER_IDS.put("flightCustomerId",flightBooking.getContactId());
-            }else {
-                CUSTOMER_IDS.put("flightCustomerId",existCustomer.getId());
-                log.info("createFlightBooking - createFlightBooking");
-                Long flightCustomerId = CUSTOMER_IDS.get("flightCustomerId");
-                flightBooking = flightService.createFlightBooking(new FlightBooking(flightCustomerId, travelAgent.getHotelId(), travelAgent.getFlightBookingDate()));
-            }
-            travelAgentBooking.setFlightCustomerId(flightBooking.getContactId());
-            travelAgentBooking.setFlightBookingId(flightBooking.getId());
-            log.info("createTravelAgent - createFlightBooking completes to execution");
-        }catch (Exception e) {
-            log.info("createTravelAgent - createFlightBooking begins to rollback");
-
-            bookingService.delete(hotelBooking);
+    private Response createTravelAgentBooking(String prefer, TravelAgent travelAgent) throws Exception {
+        log.fine("TravelAgentRestService - createTravelAgent begins to execution");
 
-            log.info("createTravelAgent - createFlightBooking completes to rollback");
+        if (prefer != null && prefer.contains(RESPOND_ASYNC)) {
+            TravelAgentBooking pending = orchestrator.accept(travelAgent);
+            orchestrator.submit(travelAgent, pending.getId());
 
-            throw new RestServiceException(e.getMessage());
+            log.fine(() -> "TravelAgentRestService - createTravelAgent accepted " + pending.getId());
+            return Response.accepted(pending)
+                    .location(URI.create("travelAgent/" + pending.getId() + "/status"))
+                    .header("Preference-Applied", RESPOND_ASYNC)
+                    .build();
         }
 
-        try{
-            log.info("createTravelAgent - createTaxiBooking begins to execution");
-
-            TaxiCustomer existCustomer = null;
-            try{
-                log.info("createTaxiBooking - findCustomerByEmail");
-                existCustomer = taxiService.findCustomerByEmail(travelAgent.getEmail());
-            }catch (Exception e) {
-                /*if(e.getResponse().getStatusInfo() == Response.Status.NOT_FOUND){
-                    // ignore
-                }else {
-                    throw new RestServiceException(e.getMessage());
-                }*/
-            }
-
-            if(existCustomer == null){
-                log.info("createTaxiBooking - createTaxiGuestBooking");
-                TaxiGuestBooking taxiGuestBooking = new TaxiGuestBooking(travelAgent.getFirstName(),travelAgent.getLastName(),
-                        travelAgent.getEmail(),travelAgent.getPhoneNumber(),travelAgent.getBirthDate(),travelAgent.getTaxiId(),travelAgent.getTaxiBookingDate());
-                taxiBooking = taxiService.createTaxiGuestBooking(taxiGuestBooking);
-                CUSTOMER_IDS.put("taxiCustomerId",taxiBooking.getCustomerId());
-            }else {
-                log.info("createTaxiBooking - createTaxiBooking");
-                CUSTOMER_IDS.put("taxiCustomerId",existCustomer.getId());
-                Long taxiCustomerId = CUSTOMER_IDS.get("taxiCustomerId");
-                taxiBooking = taxiService.createTaxiBooking(new TaxiBooking(travelAgent.getTaxiId(), taxiCustomerId, travelAgent.getTaxiBookingDate()));
-            }
-            travelAgentBooking.setTaxiCustomerId(taxiBooking.getCustomerId());
-            travelAgentBooking.setTaxiBookingId(taxiBooking.getId());
-            log.info("createTravelAgent - createTaxiBooking completes to execution");
-        }catch (Exception e) {
-            log.info("createTravelAgent - createTaxiBooking begins to rollback");
-
-            bookingService.delete(hotelBooking);
-            flightService.cancelFlightBooking(flightBooking.getId());
+        TravelAgentBooking travelAgentBooking = orchestrator.book(travelAgent, null);
 
-            log.info("createTravelAgent - createTaxiBooking completes to rollback");
+        log.fine("TravelAgentRestService - createTravelAgent completes to execution");
+        return Response.status(Response.Status.CREATED).entity(travelAgentBooking).build();
+    }
 
-            throw new RestServiceException(e.getMessage());
+    /**
+     * <p>Returns the state of a TravelAgentBooking, to follow one accepted for asynchronous processing.</p>
+     *
+     * @param id The id of the TravelAgentBooking
+     * @return A Response containing the TravelAgentBooking, with its status and, once failed, the reason
+     */
+    @GET
+    @Path("/{id:[0-9]+}/status")
+    @Operation(summary = "Fetch the status of a TravelAgentBooking",
+            description = "Returns the TravelAgentBooking, which is PENDING until its bookings have been made.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="TravelAgentBooking found"),
+            @APIResponse(responseCode = "404", description = "TravelAgentBooking with id not found")
+    })
+    public Response retrieveTravelAgentBookingStatus(
+            @Parameter(description = "Id of TravelAgentBooking to be fetched")
+            @Schema(minimum = "0")
+            @PathParam("id")
+                    long id) {
+        TravelAgentBooking travelAgentBooking = travelAgentBookingService.findById(id);
+        if (travelAgentBooking == null) {
+            throw new RestServiceException("No travelAgentBooking with the id " + id + " was found!", Response.Status.NOT_FOUND);
         }
-
-
-        try {
-            log.info("createTravelAgent - createTravelAgentBooking begins to execution");
-
-            travelAgentBookingService.create(travelAgentBooking);
-            builder = Response.status(Response.Status.CREATED).entity(travelAgentBooking);
-
-            log.info("createTravelAgent - createTravelAgentBooking completes to execution");
-        } catch (Exception e) {
-            log.info("createTravelAgent - createTravelAgentBooking begins to rollback");
-
-            bookingService.delete(hotelBooking);
-            flightService.cancelFlightBooking(flightBooking.getId());
-            taxiService.cancelTaxiBooking(taxiBooking.getId());
-
-            log.info("createTravelAgent - createTravelAgentBooking completes to rollback");
-
-            throw new RestServiceException(e.getMessage());
+        Response.ResponseBuilder builder = Response.ok(travelAgentBooking);
+        if (travelAgentBooking.getStatus() == TravelAgentBooking.Status.PENDING) {
+            builder.header("Retry-After", 1);
         }
-
-        log.info("TravelAgentRestService - createTravelAgent completes to execution");
         return builder.build();
-
     }
 
     /**
      * <p>Deletes a travelAgentBooking using the ID provided. If the ID is not present then nothing can be deleted.</p>
      *
+     * <p>The travelAgentBooking and its hotel Booking are deleted in one short transaction, which also hands its flight
+     * and taxi bookings over to the compensation worker; they are cancelled in the background, outside any transaction,
+     * and retried until the remote services have done so.</p>
+     *
      * <p>Will return a JAX-RS response with either 204 NO CONTENT or with a map of fields, and related errors.</p>
      *
      * @param id The Long parameter value provided as the id of the travelAgentBooking to be deleted
@@ -294,39 +303,31 @@ public class TravelAgentRestService {
             @APIResponse(responseCode = "204", description = "The travelAgentBooking has been successfully deleted"),
             @APIResponse(responseCode = "400", description = "Invalid travelAgentBooking id supplied"),
             @APIResponse(responseCode = "404", description = "travelAgentBooking with id not found"),
+            @APIResponse(responseCode = "409", description = "travelAgentBooking is still being processed"),
             @APIResponse(responseCode = "500", description = "An unexpected error occurred whilst processing the request")
     })
-    @Transactional
     public Response deleteTravelAgentBooking(
             @Parameter(description = "Id of travelAgentBooking to be deleted", required = true)
             @Schema(minimum = "0")
             @PathParam("id")
                     long id) {
 
-        log.info("TravelAgentRestService - deleteTravelAgentBooking completes to execution");
-        Response.ResponseBuilder builder;
-
-        TravelAgentBooking travelAgentBooking = travelAgentBookingService.findById(id);
-        if (travelAgentBooking == null) {
-            throw new RestServiceException("No travelAgentBooking with the id " + id + " was found!", Response.Status.NOT_FOUND);
-        }
+        log.fine("TravelAgentRestService - deleteTravelAgentBooking completes to execution");
 
+        Long sagaId;
         try{
-            log.info("deleteTravelAgentBooking - cancelTaxiBooking begins to execution");
-            taxiService.cancelTaxiBooking(travelAgentBooking.getTaxiBookingId());
-            log.info("deleteTravelAgentBooking - cancelFlightBooking begins to execution");
-            flightService.cancelFlightBooking(travelAgentBooking.getFlightBookingId());
-            log.info("deleteTravelAgentBooking - delete bookingService begins to execution");
-            bookingService.delete(bookingService.findById(travelAgentBooking.getHotelBookingId()));
-            log.info("deleteTravelAgentBooking - delete travelAgentBookingService begins to execution");
-            travelAgentBookingService.delete(travelAgentBooking);
-            builder = Response.noContent();
+            sagaId = sagaService.cancel(id);
+        }catch (RestServiceException e) {
+            throw e;
         }catch (Exception e) {
             throw new RestServiceException(e);
         }
+        if (sagaId != null) {
+            compensationWorker.wake();
+        }
 
-        log.info("deleteContact completed. travelAgentBooking = " + travelAgentBooking);
-        return builder.build();
+        log.fine(() -> "deleteTravelAgentBooking completed. travelAgentBooking = " + id + ", saga = " + sagaId);
+        return Response.noContent().build();
     }
 
 }
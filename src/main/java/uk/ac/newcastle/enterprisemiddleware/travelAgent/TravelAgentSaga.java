@@ -0,0 +1,238 @@
+package uk.ac.newcastle.enterprisemiddleware.travelAgent;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import uk.ac.newcastle.enterprisemiddleware.util.PooledSequenceGenerator;
+
+import javax.persistence.*;
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * <p>this is a Domain object.<p/>
+ * <p>The TravelAgentSaga class is the persistent log of a single travel agent booking: which of its hotel, flight and
+ * taxi bookings have been made, and whether they still have to be, or could not be, undone.<p/>
+ *
+ * @author Howie
+ * @see TravelAgentCompensationWorker
+ */
+@Entity
+@NamedQueries({
+        @NamedQuery(name = TravelAgentSaga.FIND_BY_STATUS, query = "SELECT s FROM TravelAgentSaga s WHERE s.status = :status ORDER BY s.id ASC"),
+        @NamedQuery(name = TravelAgentSaga.FIND_DUE, query = "SELECT s FROM TravelAgentSaga s WHERE s.status = :status AND s.nextAttemptAt <= :now ORDER BY s.nextAttemptAt ASC"),
+        @NamedQuery(name = TravelAgentSaga.ABANDON_STALE, query = "UPDATE TravelAgentSaga s SET s.status = :compensating, s.nextAttemptAt = :now, s.updatedAt = :now, s.lastError = :reason WHERE s.status = :started AND s.updatedAt < :staleBefore")
+})
+@XmlRootElement
+@Table(name = "travel_agent_saga", indexes = {
+        @Index(name = "idx_travel_agent_saga_status_next_attempt_at", columnList = "status, next_attempt_at")
+})
+public class TravelAgentSaga implements Serializable {
+
+    private static final long serialVersionUID = 4638190215571034L;
+
+    public static final String FIND_BY_STATUS = "TravelAgentSaga.findByStatus";
+    public static final String FIND_DUE = "TravelAgentSaga.findDue";
+    public static final String ABANDON_STALE = "TravelAgentSaga.abandonStale";
+
+    /**
+     * <p>The state of the booking as a whole.</p>
+     */
+    public enum Status {
+        /** The bookings are being made. */
+        STARTED,
+        /** Every booking has been made and recorded in a TravelAgentBooking. */
+        COMPLETED,
+        /** A booking failed; the bookings that were made are waiting to be cancelled. */
+        COMPENSATING,
+        /** Every booking that was made has been cancelled. */
+        COMPENSATED,
+        /** Some bookings could not be cancelled within the allowed number of attempts. */
+        COMPENSATION_FAILED
+    }
+
+    /**
+     * <p>The state of one of the hotel, flight and taxi bookings.</p>
+     */
+    public enum StepStatus {
+        NOT_BOOKED,
+        BOOKED,
+        CANCELLED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "TRAVEL_AGENT_SAGA_ID")
+    @GenericGenerator(name = "TRAVEL_AGENT_SAGA_ID", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "travel_agent_saga_seq"))
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private Status status = Status.STARTED;
+
+    @Column(name = "hotel_booking_id")
+    private Long hotelBookingId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "hotel_step", nullable = false, length = 10)
+    private StepStatus hotelStep = StepStatus.NOT_BOOKED;
+
+    @Column(name = "flight_booking_id")
+    private Long flightBookingId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "flight_step", nullable = false, length = 10)
+    private StepStatus flightStep = StepStatus.NOT_BOOKED;
+
+    @Column(name = "taxi_booking_id")
+    private Long taxiBookingId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "taxi_step", nullable = false, length = 10)
+    private StepStatus taxiStep = StepStatus.NOT_BOOKED;
+
+    @Column(name = "travel_agent_booking_id")
+    private Long travelAgentBookingId;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "next_attempt_at")
+    private Date nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "updated_at", nullable = false)
+    private Date updatedAt;
+
+    @PrePersist
+    void onCreate() {
+        createdAt = new Date();
+        updatedAt = createdAt;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        updatedAt = new Date();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getHotelBookingId() {
+        return hotelBookingId;
+    }
+
+    public void setHotelBookingId(Long hotelBookingId) {
+        this.hotelBookingId = hotelBookingId;
+    }
+
+    public StepStatus getHotelStep() {
+        return hotelStep;
+    }
+
+    public void setHotelStep(StepStatus hotelStep) {
+        this.hotelStep = hotelStep;
+    }
+
+    public Long getFlightBookingId() {
+        return flightBookingId;
+    }
+
+    public void setFlightBookingId(Long flightBookingId) {
+        this.flightBookingId = flightBookingId;
+    }
+
+    public StepStatus getFlightStep() {
+        return flightStep;
+    }
+
+    public void setFlightStep(StepStatus flightStep) {
+        this.flightStep = flightStep;
+    }
+
+    public Long getTaxiBookingId() {
+        return taxiBookingId;
+    }
+
+    public void setTaxiBookingId(Long taxiBookingId) {
+        this.taxiBookingId = taxiBookingId;
+    }
+
+    public StepStatus getTaxiStep() {
+        return taxiStep;
+    }
+
+    public void setTaxiStep(StepStatus taxiStep) {
+        this.taxiStep = taxiStep;
+    }
+
+    public Long getTravelAgentBookingId() {
+        return travelAgentBookingId;
+    }
+
+    public void setTravelAgentBookingId(Long travelAgentBookingId) {
+        this.travelAgentBookingId = travelAgentBookingId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(Date nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Date updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
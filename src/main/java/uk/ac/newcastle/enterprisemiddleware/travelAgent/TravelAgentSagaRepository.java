@@ -0,0 +1,116 @@
+package uk.ac.newcastle.enterprisemiddleware.travelAgent;
+
+import io.micrometer.core.annotation.Timed;
+
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.TypedQuery;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <p>This is a Repository class and connects the Service/Control layer (see {@link TravelAgentSagaService} with the
+ * Domain/Entity Object (see {@link TravelAgentSaga}).<p/>
+ *
+ * <p>It is used by the compensation worker outside of any request, so it is not request scoped.</p>
+ *
+ * @author Howie
+ * @see TravelAgentSaga
+ * @see javax.persistence.EntityManager
+ */
+@Timed("app.repository")
+@Dependent
+public class TravelAgentSagaRepository {
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    EntityManager em;
+
+    /**
+     * <p>Returns a single TravelAgentSaga object, specified by a Long id.<p/>
+     *
+     * @param id The id field of the TravelAgentSaga to be returned
+     * @return The TravelAgentSaga with the specified id; or null
+     */
+    TravelAgentSaga findById(Long id) {
+        return em.find(TravelAgentSaga.class, id);
+    }
+
+    /**
+     * <p>Returns a single TravelAgentSaga object, locked until the end of the current transaction so concurrent updates
+     * of the same saga, e.g. by a late leg and the compensation worker, are applied one after the other.<p/>
+     *
+     * @param id The id field of the TravelAgentSaga to be returned
+     * @return The TravelAgentSaga with the specified id; or null
+     */
+    TravelAgentSaga findForUpdate(Long id) {
+        return em.find(TravelAgentSaga.class, id, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    /**
+     * <p>Returns every TravelAgentSaga in the given state, sorted by id.</p>
+     *
+     * @param status The state of the sagas to be returned
+     * @return List of TravelAgentSaga objects
+     */
+    List<TravelAgentSaga> findByStatus(TravelAgentSaga.Status status) {
+        log.fine("TravelAgentSagaRepository -- findByStatus method starts execution.");
+        TypedQuery<TravelAgentSaga> query = em.createNamedQuery(TravelAgentSaga.FIND_BY_STATUS, TravelAgentSaga.class)
+                .setParameter("status", status);
+        List<TravelAgentSaga> resultList = query.getResultList();
+        log.fine("TravelAgentSagaRepository -- findByStatus method completes execution.");
+        return resultList;
+    }
+
+    /**
+     * <p>Returns the sagas waiting for compensation whose next attempt is due, the longest waiting first.</p>
+     *
+     * @param now The current time
+     * @param limit The maximum number of sagas to return
+     * @return List of TravelAgentSaga objects
+     */
+    List<TravelAgentSaga> findDue(Date now, int limit) {
+        return em.createNamedQuery(TravelAgentSaga.FIND_DUE, TravelAgentSaga.class)
+                .setParameter("status", TravelAgentSaga.Status.COMPENSATING)
+                .setParameter("now", now)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * <p>Moves the sagas that have been started but not touched since the given time to compensation.</p>
+     *
+     * @param now The current time
+     * @param staleBefore Sagas last updated before this time are abandoned
+     * @param reason The reason recorded on the abandoned sagas
+     * @return The number of sagas abandoned
+     */
+    int abandonStale(Date now, Date staleBefore, String reason) {
+        return em.createNamedQuery(TravelAgentSaga.ABANDON_STALE)
+                .setParameter("compensating", TravelAgentSaga.Status.COMPENSATING)
+                .setParameter("started", TravelAgentSaga.Status.STARTED)
+                .setParameter("now", now)
+                .setParameter("staleBefore", staleBefore)
+                .setParameter("reason", reason)
+                .executeUpdate();
+    }
+
+    /**
+     * <p>Writes the provided TravelAgentSaga to the application database.<p/>
+     *
+     * @param saga The TravelAgentSaga object to be written to the database using a {@link TravelAgentSagaRepository} object
+     * @return The TravelAgentSaga object that has been successfully written to the application database
+     */
+    TravelAgentSaga create(TravelAgentSaga saga) {
+        log.fine("TravelAgentSagaRepository -- create method starts execution.");
+        em.persist(saga);
+        log.fine("TravelAgentSagaRepository -- create method completes execution.");
+        return saga;
+    }
+}
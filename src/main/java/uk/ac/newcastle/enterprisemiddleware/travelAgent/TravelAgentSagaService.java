@@ -0,0 +1,307 @@
+package uk.ac.newcastle.enterprisemiddleware.travelAgent;
+
+import io.micrometer.core.annotation.Timed;
+import io.opentelemetry.extension.annotations.WithSpan;
+import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.booking.BookingService;
+import uk.ac.newcastle.enterprisemiddleware.util.RestServiceException;
+
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.transaction.Transactional;
+import javax.ws.rs.core.Response;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * <p>This Service assumes the Control responsibility in the ECB pattern.</p>
+ *
+ * <p>Every change to a saga other than {@link #complete} is committed in a transaction of its own, so the log survives
+ * the rollback of the travel agent booking it describes. A confirmed booking the client deletes is undone through a
+ * saga as well, see {@link #cancel}.</p>
+ *
+ * @author Howie
+ * @see TravelAgentSagaRepository
+ * @see TravelAgentCompensationWorker
+ */
+@Timed("app.service")
+@Dependent
+public class TravelAgentSagaService {
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    TravelAgentSagaRepository crud;
+
+    @Inject
+    BookingService bookingService;
+
+    @Inject
+    TravelAgentBookingService travelAgentBookingService;
+
+    /**
+     * <p>Returns a single TravelAgentSaga object, specified by a Long id.<p/>
+     *
+     * @param id The id field of the TravelAgentSaga to be returned
+     * @return The TravelAgentSaga with the specified id; or null
+     */
+    TravelAgentSaga findById(Long id) {
+        return crud.findById(id);
+    }
+
+    /**
+     * <p>Returns every TravelAgentSaga in the given state, sorted by id.</p>
+     *
+     * @param status The state of the sagas to be returned
+     * @return List of TravelAgentSaga objects
+     */
+    List<TravelAgentSaga> findByStatus(TravelAgentSaga.Status status) {
+        return crud.findByStatus(status);
+    }
+
+    /**
+     * <p>Starts the log of a travel agent booking as part of the transaction that books its hotel, so there is no hotel
+     * booking without a saga to cancel it.</p>
+     *
+     * @param hotelBookingId The id of the hotel Booking
+     * @return The id of the new TravelAgentSaga
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    Long start(Long hotelBookingId) {
+        TravelAgentSaga saga = new TravelAgentSaga();
+        saga.setHotelBookingId(hotelBookingId);
+        saga.setHotelStep(TravelAgentSaga.StepStatus.BOOKED);
+        return crud.create(saga).getId();
+    }
+
+    /**
+     * <p>Records the flight and taxi bookings that have been made. A booking recorded after the saga has been
+     * compensated puts it back to compensation.</p>
+     *
+     * @param id The id of the TravelAgentSaga
+     * @param flightBookingId The id of the flight booking; or null if it was not made
+     * @param taxiBookingId The id of the taxi booking; or null if it was not made
+     */
+    @WithSpan("travelAgent.recordLegs")
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void recordLegs(Long id, Long flightBookingId, Long taxiBookingId) {
+        TravelAgentSaga saga = crud.findForUpdate(id);
+        legsBooked(saga, flightBookingId, taxiBookingId);
+        if (saga.getStatus() == TravelAgentSaga.Status.COMPENSATED) {
+            // a leg that finished after the rest of the saga had been undone
+            saga.setStatus(TravelAgentSaga.Status.COMPENSATING);
+            saga.setNextAttemptAt(new Date());
+        }
+    }
+
+    /**
+     * <p>Marks the saga as completed as part of the transaction that creates its TravelAgentBooking, so the two are
+     * committed or rolled back together.</p>
+     *
+     * @param id The id of the TravelAgentSaga
+     * @param travelAgentBookingId The id of the TravelAgentBooking
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    void complete(Long id, Long travelAgentBookingId) {
+        TravelAgentSaga saga = crud.findForUpdate(id);
+        saga.setTravelAgentBookingId(travelAgentBookingId);
+        saga.setStatus(TravelAgentSaga.Status.COMPLETED);
+    }
+
+    /**
+     * <p>Hands the saga over to the compensation worker, to cancel whatever has been booked. The flight and taxi
+     * bookings known to have been made are recorded in the same transaction, so they are cancelled even if they were
+     * never recorded by {@link #recordLegs}.</p>
+     *
+     * @param id The id of the TravelAgentSaga
+     * @param flightBookingId The id of the flight booking; or null if it was not made
+     * @param taxiBookingId The id of the taxi booking; or null if it was not made
+     * @param reason Why the travel agent booking failed
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void compensate(Long id, Long flightBookingId, Long taxiBookingId, String reason) {
+        TravelAgentSaga saga = crud.findForUpdate(id);
+        legsBooked(saga, flightBookingId, taxiBookingId);
+        saga.setStatus(TravelAgentSaga.Status.COMPENSATING);
+        saga.setNextAttemptAt(new Date());
+        saga.setLastError(truncate(reason));
+    }
+
+    /**
+     * <p>Cancels a travel agent booking at the request of the client. In one short transaction the TravelAgentBooking
+     * and its hotel Booking are deleted and, if it has flight and taxi bookings, a saga is started that hands them over
+     * to the compensation worker, which cancels them outside any transaction and retries until the remote services
+     * have done so.</p>
+     *
+     * @param travelAgentBookingId The id of the TravelAgentBooking
+     * @return The id of the new TravelAgentSaga; or null if nothing was booked remotely
+     * @throws RestServiceException With status 404 if there is no such TravelAgentBooking, or 409 if it is still being
+     * processed
+     * @throws Exception If the bookings could not be deleted
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    Long cancel(Long travelAgentBookingId) throws Exception {
+        TravelAgentBooking travelAgentBooking = travelAgentBookingService.findById(travelAgentBookingId);
+        if (travelAgentBooking == null) {
+            throw new RestServiceException("No travelAgentBooking with the id " + travelAgentBookingId + " was found!",
+                    Response.Status.NOT_FOUND);
+        }
+        if (travelAgentBooking.getStatus() == TravelAgentBooking.Status.PENDING) {
+            throw new RestServiceException("travelAgentBooking " + travelAgentBookingId + " is still being processed",
+                    Response.Status.CONFLICT);
+        }
+
+        travelAgentBookingService.delete(travelAgentBooking);
+        if (travelAgentBooking.getStatus() == TravelAgentBooking.Status.FAILED) {
+            // nothing was booked, or it has been cancelled already
+            return null;
+        }
+        Booking booking = bookingService.findById(travelAgentBooking.getHotelBookingId());
+        if (booking != null) {
+            bookingService.delete(booking);
+        }
+
+        TravelAgentSaga saga = new TravelAgentSaga();
+        saga.setHotelBookingId(travelAgentBooking.getHotelBookingId());
+        saga.setHotelStep(TravelAgentSaga.StepStatus.CANCELLED);
+        legsBooked(saga, travelAgentBooking.getFlightBookingId(), travelAgentBooking.getTaxiBookingId());
+        saga.setTravelAgentBookingId(travelAgentBookingId);
+        saga.setStatus(TravelAgentSaga.Status.COMPENSATING);
+        saga.setNextAttemptAt(new Date());
+        saga.setLastError("Cancelled by the client");
+        return crud.create(saga).getId();
+    }
+
+    /**
+     * <p>Returns the sagas whose next compensation attempt is due, first moving sagas that were started but abandoned,
+     * e.g. by a crash, to compensation.</p>
+     *
+     * @param staleBefore Sagas started and last updated before this time are considered abandoned
+     * @param limit The maximum number of sagas to return
+     * @return List of TravelAgentSaga objects
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    List<TravelAgentSaga> findDue(Date staleBefore, int limit) {
+        Date now = new Date();
+        int abandoned = crud.abandonStale(now, staleBefore, "Travel agent booking abandoned before completion");
+        if (abandoned > 0) {
+            log.warning(() -> "TravelAgentSagaService -- findDue moved " + abandoned + " abandoned sagas to compensation.");
+        }
+        return crud.findDue(now, limit);
+    }
+
+    /**
+     * <p>Deletes the hotel Booking of the saga, if it still exists, and records it as cancelled.</p>
+     *
+     * @param id The id of the TravelAgentSaga
+     * @throws Exception If the Booking could not be deleted
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void cancelHotelBooking(Long id) throws Exception {
+        TravelAgentSaga saga = crud.findForUpdate(id);
+        Booking booking = bookingService.findById(saga.getHotelBookingId());
+        if (booking != null) {
+            bookingService.delete(booking);
+        }
+        saga.setHotelStep(TravelAgentSaga.StepStatus.CANCELLED);
+    }
+
+    /**
+     * <p>Records that the flight booking of the saga has been cancelled.</p>
+     *
+     * @param id The id of the TravelAgentSaga
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void flightCancelled(Long id) {
+        crud.findForUpdate(id).setFlightStep(TravelAgentSaga.StepStatus.CANCELLED);
+    }
+
+    /**
+     * <p>Records that the taxi booking of the saga has been cancelled.</p>
+     *
+     * @param id The id of the TravelAgentSaga
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void taxiCancelled(Long id) {
+        crud.findForUpdate(id).setTaxiStep(TravelAgentSaga.StepStatus.CANCELLED);
+    }
+
+    /**
+     * <p>Records that every booking of the saga has been cancelled, unless a booking has been recorded in the meantime,
+     * in which case the saga is compensated again straight away.</p>
+     *
+     * @param id The id of the TravelAgentSaga
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    void compensated(Long id) {
+        TravelAgentSaga saga = crud.findForUpdate(id);
+        if (saga.getHotelStep() == TravelAgentSaga.StepStatus.BOOKED
+                || saga.getFlightStep() == TravelAgentSaga.StepStatus.BOOKED
+                || saga.getTaxiStep() == TravelAgentSaga.StepStatus.BOOKED) {
+            saga.setNextAttemptAt(new Date());
+            return;
+        }
+        saga.setStatus(TravelAgentSaga.Status.COMPENSATED);
+        saga.setNextAttemptAt(null);
+    }
+
+    /**
+     * <p>Records a failed compensation attempt, scheduling the next one or, once no attempts are left, moving the saga
+     * to the failed compensation queue.</p>
+     *
+     * @param id The id of the TravelAgentSaga
+     * @param error What went wrong
+     * @param nextAttemptAt When to try again
+     * @param maxAttempts The number of attempts after which the saga is given up on
+     * @return The updated TravelAgentSaga
+     */
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    TravelAgentSaga attemptFailed(Long id, String error, Date nextAttemptAt, int maxAttempts) {
+        TravelAgentSaga saga = crud.findForUpdate(id);
+        saga.setAttempts(saga.getAttempts() + 1);
+        saga.setLastError(truncate(error));
+        if (saga.getAttempts() >= maxAttempts) {
+            saga.setStatus(TravelAgentSaga.Status.COMPENSATION_FAILED);
+            saga.setNextAttemptAt(null);
+        } else {
+            saga.setNextAttemptAt(nextAttemptAt);
+        }
+        return saga;
+    }
+
+    /**
+     * <p>Puts a saga from the failed compensation queue back to compensation, with a fresh set of attempts.</p>
+     *
+     * @param id The id of the TravelAgentSaga
+     * @return The updated TravelAgentSaga; or null if there is no failed saga with that id
+     */
+    @Transactional
+    TravelAgentSaga retry(Long id) {
+        TravelAgentSaga saga = crud.findForUpdate(id);
+        if (saga == null || saga.getStatus() != TravelAgentSaga.Status.COMPENSATION_FAILED) {
+            return null;
+        }
+        saga.setStatus(TravelAgentSaga.Status.COMPENSATING);
+        saga.setAttempts(0);
+        saga.setNextAttemptAt(new Date());
+        return saga;
+    }
+
+    private static void legsBooked(TravelAgentSaga saga, Long flightBookingId, Long taxiBookingId) {
+        if (flightBookingId != null) {
+            saga.setFlightBookingId(flightBookingId);
+            saga.setFlightStep(TravelAgentSaga.StepStatus.BOOKED);
+        }
+        if (taxiBookingId != null) {
+            saga.setTaxiBookingId(taxiBookingId);
+            saga.setTaxiStep(TravelAgentSaga.StepStatus.BOOKED);
+        }
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
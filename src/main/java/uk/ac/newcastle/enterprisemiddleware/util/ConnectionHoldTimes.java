@@ -0,0 +1,116 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import io.agroal.api.AgroalPoolInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Measures how long each connection taken from the datasource pool is held before it is returned. Within a
+ * transaction the pool hands out the same connection until the transaction completes, so a hold covers a whole
+ * transaction, or a single statement run outside of one.</p>
+ *
+ * <p>Registered with the default datasource by Quarkus, as every {@link AgroalPoolInterceptor} bean is. The hold times
+ * are reported at {@code /admin/dataSource/stats}, see {@link DataSourceRestService}, and recorded by the
+ * {@code datasource.connection.hold} timer.</p>
+ *
+ * @author Howie
+ */
+@ApplicationScoped
+public class ConnectionHoldTimes implements AgroalPoolInterceptor {
+
+    /** Longest hold recorded; anything longer is recorded as this. */
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<Connection, Long> acquiredAt = new ConcurrentHashMap<>();
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3);
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+    private final AtomicLong longestMicros = new AtomicLong();
+
+    @Inject
+    MeterRegistry registry;
+
+    private Timer holdTimer;
+
+    @PostConstruct
+    void init() {
+        holdTimer = Timer.builder("datasource.connection.hold")
+                .description("Time a connection was held before it was returned to the pool")
+                .register(registry);
+    }
+
+    @Override
+    public void onConnectionAcquire(Connection connection) {
+        acquired.increment();
+        acquiredAt.put(unwrap(connection), System.nanoTime());
+    }
+
+    @Override
+    public void onConnectionReturn(Connection connection) {
+        returned.increment();
+        Long since = acquiredAt.remove(unwrap(connection));
+        if (since == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - since;
+        holdTimer.record(nanos, TimeUnit.NANOSECONDS);
+        long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS);
+        recorder.recordValue(micros);
+        longestMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * <p>Returns the hold times recorded since the previous call, in microseconds.</p>
+     *
+     * @return A Histogram of the hold times
+     */
+    Histogram intervalHistogram() {
+        return recorder.getIntervalHistogram();
+    }
+
+    /**
+     * @return The number of connections taken from the pool since start-up
+     */
+    long getAcquired() {
+        return acquired.sum();
+    }
+
+    /**
+     * @return The number of connections taken from the pool and not yet returned
+     */
+    long getInUse() {
+        return acquired.sum() - returned.sum();
+    }
+
+    /**
+     * @return The longest any connection has been held since start-up, in microseconds
+     */
+    long getLongestMicros() {
+        return longestMicros.get();
+    }
+
+    /**
+     * <p>The pool hands a new wrapper to the interceptors each time, so connections are told apart by the JDBC connection
+     * they wrap.</p>
+     */
+    private static Connection unwrap(Connection connection) {
+        try {
+            return connection.unwrap(Connection.class);
+        } catch (SQLException e) {
+            return connection;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import io.agroal.api.AgroalDataSource;
+import org.HdrHistogram.Histogram;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>This class produces a RESTful service reporting how the datasource connection pool is used: how many connections
+ * are held, and for how long each one was held, as measured by {@link ConnectionHoldTimes}.</p>
+ *
+ * @author Howie
+ */
+@Path("/admin/dataSource")
+@Produces(MediaType.APPLICATION_JSON)
+public class DataSourceRestService {
+
+    @Inject
+    AgroalDataSource dataSource;
+
+    @Inject
+    ConnectionHoldTimes holdTimes;
+
+    /**
+     * <p>Return the size of the pool, the number of connections in use, and the hold times, in milliseconds, of the
+     * connections returned to the pool since the previous call.</p>
+     *
+     * @return A Response containing the pool utilisation
+     */
+    @GET
+    @Path("/stats")
+    @Operation(summary = "Fetch connection pool statistics",
+            description = "Returns the pool size, the connections in use and the connection hold times since the previous call.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="Statistics found")
+    })
+    public Response retrieveDataSourceStats() {
+        Histogram interval = holdTimes.intervalHistogram();
+
+        Map<String, Number> holdTimeMillis = new LinkedHashMap<>();
+        holdTimeMillis.put("count", interval.getTotalCount());
+        holdTimeMillis.put("mean", interval.getMean() / 1000.0);
+        holdTimeMillis.put("p50", interval.getValueAtPercentile(50) / 1000.0);
+        holdTimeMillis.put("p90", interval.getValueAtPercentile(90) / 1000.0);
+        holdTimeMillis.put("p99", interval.getValueAtPercentile(99) / 1000.0);
+        holdTimeMillis.put("max", interval.getMaxValue() / 1000.0);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxSize", dataSource.getConfiguration().connectionPoolConfiguration().maxSize());
+        stats.put("inUse", holdTimes.getInUse());
+        stats.put("acquired", holdTimes.getAcquired());
+        stats.put("longestHoldMillis", holdTimes.getLongestMicros() / 1000.0);
+        stats.put("holdTimeMillis", holdTimeMillis);
+        return Response.ok(stats).build();
+    }
+}
@@ -0,0 +1,74 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>This class produces a RESTful service reporting how well the Hibernate second-level cache, which holds the
+ * {@link uk.ac.newcastle.enterprisemiddleware.customer.Customer} and {@link uk.ac.newcastle.enterprisemiddleware.hotel.Hotel}
+ * entities, is doing.</p>
+ *
+ * @author Howie
+ */
+@Path("/admin/entityCache")
+@Produces(MediaType.APPLICATION_JSON)
+public class EntityCacheRestService {
+
+    @Inject
+    SessionFactory sessionFactory;
+
+    /**
+     * <p>Return the hit, miss and put counters, the size and the hit ratio of each cache region, and the totals of
+     * the lookups by natural id.</p>
+     *
+     * @return A Response containing the counters of each cache region
+     */
+    @GET
+    @Path("/stats")
+    @Operation(summary = "Fetch entity cache statistics",
+            description = "Returns the hit, miss and put counters, size and hit ratio of each second-level cache region.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="Statistics found")
+    })
+    public Response retrieveEntityCacheStats() {
+        Statistics statistics = sessionFactory.getStatistics();
+        Map<String, Map<String, Number>> stats = new TreeMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+            if (regionStatistics == null) {
+                continue;
+            }
+            stats.put(region, counters(regionStatistics.getHitCount(), regionStatistics.getMissCount(),
+                    regionStatistics.getPutCount(), regionStatistics.getElementCountInMemory()));
+        }
+        stats.put("naturalId", counters(statistics.getNaturalIdCacheHitCount(), statistics.getNaturalIdCacheMissCount(),
+                statistics.getNaturalIdCachePutCount(), null));
+        return Response.ok(stats).build();
+    }
+
+    private static Map<String, Number> counters(long hits, long misses, long puts, Long size) {
+        Map<String, Number> counters = new LinkedHashMap<>();
+        counters.put("hits", hits);
+        counters.put("misses", misses);
+        counters.put("puts", puts);
+        if (size != null) {
+            counters.put("size", size);
+        }
+        counters.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return counters;
+    }
+}
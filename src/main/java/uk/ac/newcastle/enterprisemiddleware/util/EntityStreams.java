@@ -0,0 +1,45 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import org.hibernate.jpa.QueryHints;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.stream.Stream;
+
+/**
+ * <p>Reads the results of a query one batch at a time instead of as one list.</p>
+ *
+ * @author Howie
+ * @see JsonArrayOutput
+ */
+public final class EntityStreams {
+
+    /** Number of rows fetched from the database, and kept in the persistence context, at a time. */
+    public static final int BATCH_SIZE = 100;
+
+    private EntityStreams() {
+    }
+
+    /**
+     * <p>Returns the results of a query as a stream over a scrollable result set.</p>
+     *
+     * <p>The entities are loaded read-only, so Hibernate keeps no snapshots of them. Every {@value #BATCH_SIZE} rows
+     * the persistence context is cleared, so the number of entities held stays the same however many rows are read.
+     * The entities handed on are therefore detached, and must not be used to navigate lazy associations.</p>
+     *
+     * @param query The query to run
+     * @param em The EntityManager that created the query
+     * @return The stream of results, which has to be closed
+     */
+    public static <T> Stream<T> scroll(TypedQuery<T> query, EntityManager em) {
+        int[] read = new int[1];
+        return query.setHint(QueryHints.HINT_FETCH_SIZE, BATCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()
+                .peek(row -> {
+                    if (++read[0] % BATCH_SIZE == 0) {
+                        em.clear();
+                    }
+                });
+    }
+}
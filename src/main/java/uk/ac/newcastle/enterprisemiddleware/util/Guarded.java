@@ -0,0 +1,26 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import javax.enterprise.util.Nonbinding;
+import javax.interceptor.InterceptorBinding;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Puts the calls to a REST client behind the {@link UpstreamGuard} of its upstream service.</p>
+ *
+ * @author Howie
+ * @see UpstreamGuardInterceptor
+ */
+@InterceptorBinding
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface Guarded {
+
+    /**
+     * @return The config key of the REST client, which names its guard and its {@code upstream.<key>.*} settings
+     */
+    @Nonbinding
+    String value();
+}
@@ -0,0 +1,210 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * <p>Remembers the outcome of requests sent with an {@code Idempotency-Key} header, so a client retrying a request,
+ * e.g. after a timeout, gets the outcome of the first attempt instead of having it carried out again.</p>
+ *
+ * <p>The outcome of the first request with a key is kept for {@code idempotency.ttl}, for at most
+ * {@code idempotency.maximum-size} keys. A request with a key that is still being processed waits for that outcome, for
+ * up to {@code idempotency.wait-timeout}. Successful responses and client errors (4xx) are kept; after a server error
+ * nothing is kept, so the request can be retried with the same key.</p>
+ *
+ * <p>A key may only be reused with the same request body; anything else is refused with 409 CONFLICT.</p>
+ *
+ * @author Howie
+ */
+@ApplicationScoped
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @ConfigProperty(name = "idempotency.ttl", defaultValue = "PT24H")
+    Duration ttl;
+
+    @ConfigProperty(name = "idempotency.maximum-size", defaultValue = "10000")
+    long maximumSize;
+
+    @ConfigProperty(name = "idempotency.wait-timeout", defaultValue = "PT30S")
+    Duration waitTimeout;
+
+    private Cache<String, Entry> entries;
+
+    @PostConstruct
+    void init() {
+        entries = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    /**
+     * <p>Runs a request unless a request with the same key has been run before, in which case that request's outcome
+     * is returned or thrown again.</p>
+     *
+     * @param scope The endpoint, so the same key can be used with different endpoints
+     * @param key The Idempotency-Key sent by the client; or null to just run the request
+     * @param request The request body, to recognise a key reused with a different request
+     * @param action Runs the request
+     * @return The Response of the request, or a replay of the first Response with that key
+     * @throws RestServiceException The exception of the first request with that key, or 409 CONFLICT if the key has
+     * been used with a different request or that request is still running after the wait timeout
+     * @throws Exception Any other exception of the request
+     */
+    public Response execute(String scope, String key, Object request, Callable<Response> action) throws Exception {
+        if (key == null || key.isEmpty()) {
+            return action.call();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new RestServiceException(HEADER + " must not be longer than " + MAX_KEY_LENGTH + " characters",
+                    Response.Status.BAD_REQUEST);
+        }
+
+        String cacheKey = scope + ' ' + key;
+        String fingerprint = fingerprint(request);
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            Entry entry = new Entry(fingerprint);
+            Entry existing = entries.asMap().putIfAbsent(cacheKey, entry);
+            if (existing == null) {
+                return run(cacheKey, entry, action);
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new RestServiceException(HEADER + " " + key + " has already been used with a different request",
+                        Response.Status.CONFLICT);
+            }
+            Outcome outcome = await(key, existing, deadline);
+            if (outcome != null) {
+                log.fine(() -> "IdempotencyStore -- replaying the outcome of " + cacheKey);
+                return outcome.replay();
+            }
+            // the first request kept nothing; try to run it ourselves
+        }
+    }
+
+    private Response run(String cacheKey, Entry entry, Callable<Response> action) throws Exception {
+        Outcome outcome = null;
+        try {
+            Response response = action.call();
+            if (response.getStatus() < 500) {
+                outcome = new Outcome(response);
+            }
+            return response;
+        } catch (RestServiceException e) {
+            if (e.getStatus().getStatusCode() < 500) {
+                outcome = new Outcome(e);
+            }
+            throw e;
+        } finally {
+            if (outcome == null) {
+                entries.asMap().remove(cacheKey, entry);
+            }
+            entry.outcome.complete(outcome);
+        }
+    }
+
+    private Outcome await(String key, Entry entry, long deadline) throws InterruptedException {
+        try {
+            return entry.outcome.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new RestServiceException("A request with " + HEADER + " " + key + " is still being processed",
+                    Response.Status.CONFLICT);
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] body = mapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8);
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint the request", e);
+        }
+    }
+
+    /**
+     * <p>A key that has been used: the request it was used with, and that request's outcome once known.</p>
+     */
+    private static final class Entry {
+
+        final String fingerprint;
+
+        /** Completed with the outcome to replay; or with null if the request kept nothing. */
+        final CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * <p>The response, or client error, of the first request with a key.</p>
+     */
+    private static final class Outcome {
+
+        private final int status;
+        private final Object entity;
+        private final MultivaluedMap<String, Object> headers;
+        private final RestServiceException exception;
+
+        Outcome(Response response) {
+            this.status = response.getStatus();
+            this.entity = response.getEntity();
+            this.headers = new MultivaluedHashMap<>(response.getHeaders());
+            this.exception = null;
+        }
+
+        Outcome(RestServiceException exception) {
+            this.status = exception.getStatus().getStatusCode();
+            this.entity = null;
+            this.headers = null;
+            this.exception = exception;
+        }
+
+        Response replay() {
+            if (exception != null) {
+                throw exception;
+            }
+            Response.ResponseBuilder builder = Response.status(status).entity(entity);
+            headers.forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+            return builder.header(REPLAYED_HEADER, true).build();
+        }
+    }
+}
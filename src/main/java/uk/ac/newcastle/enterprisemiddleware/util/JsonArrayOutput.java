@@ -0,0 +1,54 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * <p>Writes the rows of a query as a JSON array while they are read from the database, so a list endpoint can return
+ * any number of rows without holding them all in memory.</p>
+ *
+ * <p>The rows come from a stream over a scrollable result set, see {@link EntityStreams#scroll}. The output is flushed
+ * to the client every {@link EntityStreams#BATCH_SIZE} rows, so the serialized JSON does not pile up either. The
+ * stream, and with it the result set, is closed once the array has been written or the client has gone away.</p>
+ *
+ * @author Howie
+ */
+public class JsonArrayOutput implements StreamingOutput {
+
+    private final Stream<?> rows;
+    private final ObjectWriter writer;
+
+    /**
+     * @param rows The rows to write; closed once written
+     * @param mapper The ObjectMapper used for the other responses
+     */
+    public JsonArrayOutput(Stream<?> rows, ObjectMapper mapper) {
+        this.rows = rows;
+        this.writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try (Stream<?> rows = this.rows;
+             JsonGenerator generator = writer.getFactory().createGenerator(output)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            int written = 0;
+            for (Iterator<?> iterator = rows.iterator(); iterator.hasNext(); ) {
+                writer.writeValue(generator, iterator.next());
+                if (++written % EntityStreams.BATCH_SIZE == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.net.URI;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * <p>Builds the responses of list endpoints that are paged by id: a page holds the first {@code limit} rows with an id
+ * greater than the {@code after} cursor, sorted by id.</p>
+ *
+ * <p>The repository is asked for one row more than the page holds. If that row exists there is a next page, and the
+ * response carries its URI in a {@code Link: <...>; rel="next"} header and its cursor in an {@value #NEXT_CURSOR_HEADER}
+ * header. Unlike an offset, the cursor is answered from the primary key index however deep the page is, and rows
+ * inserted or deleted meanwhile do not shift later pages.</p>
+ *
+ * @author Howie
+ */
+public final class KeysetPage {
+
+    /** Header carrying the {@code after} value of the next page. */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /** Page size when a cursor is given without a limit. */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /** Largest page size a client may ask for. */
+    public static final int MAX_LIMIT = 1000;
+
+    private KeysetPage() {
+    }
+
+    /**
+     * <p>Checks the paging parameters of a request.</p>
+     *
+     * @param after The id after which the page starts; or null for the first page
+     * @param limit The page size; or null
+     * @throws RestServiceException With status 400 if the cursor is negative or the limit out of range
+     */
+    public static void validate(Long after, Integer limit) {
+        if ((after != null && after < 0) || (limit != null && (limit < 1 || limit > MAX_LIMIT))) {
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+    }
+
+    /**
+     * <p>Returns the page size of a request, to be passed to the repository plus one.</p>
+     *
+     * @param limit The limit parameter of the request; or null
+     * @return The page size
+     */
+    public static int size(Integer limit) {
+        return limit == null ? DEFAULT_LIMIT : limit;
+    }
+
+    /**
+     * <p>Builds the response for a page.</p>
+     *
+     * @param rows The rows returned by the repository, at most size + 1
+     * @param size The page size
+     * @param id Returns the id of a row
+     * @param uriInfo The URI of the request, whose other query parameters are kept in the next link
+     * @return A 200 Response with the page, and the next link if there are more rows
+     */
+    public static <T> Response.ResponseBuilder ok(List<T> rows, int size, Function<T, Long> id, UriInfo uriInfo) {
+        if (rows.size() <= size) {
+            return Response.ok(rows);
+        }
+        List<T> page = rows.subList(0, size);
+        Long next = id.apply(page.get(size - 1));
+        URI nextUri = uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("offset")
+                .replaceQueryParam("after", next)
+                .replaceQueryParam("limit", size)
+                .build();
+        return Response.ok(page)
+                .link(nextUri, "next")
+                .header(NEXT_CURSOR_HEADER, next);
+    }
+}
@@ -0,0 +1,196 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.trace.SpanId;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Typed;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Keeps the last {@code tracing.buffer-size} finished spans in memory, so traces can be inspected at
+ * {@code /admin/traces} on a machine without a trace collector, and appends every span as a line of JSON to
+ * {@code tracing.file} if one is set.</p>
+ *
+ * <p>Only typed as itself, so Quarkus does not register it as an exporter of its own; it is fed by the batch span
+ * processor produced in {@link Resources}, off the threads that end the spans.</p>
+ *
+ * @author Howie
+ * @see TraceRestService
+ */
+@ApplicationScoped
+@Typed(LocalSpanExporter.class)
+public class LocalSpanExporter implements SpanExporter {
+
+    @Inject
+    @Named("logger")
+    Logger log;
+
+    @Inject
+    ObjectMapper mapper;
+
+    @ConfigProperty(name = "tracing.buffer-size", defaultValue = "10000")
+    int bufferSize;
+
+    @ConfigProperty(name = "tracing.file")
+    Optional<String> file;
+
+    /** The most recent spans, oldest first; guarded by this. */
+    private final Deque<SpanData> spans = new ArrayDeque<>();
+
+    /** Guarded by this. */
+    private Writer writer;
+
+    @PostConstruct
+    void open() {
+        if (file.isEmpty()) {
+            return;
+        }
+        try {
+            Path path = Paths.get(file.get());
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            writer = Files.newBufferedWriter(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "LocalSpanExporter -- cannot open " + file.get() + ", spans are kept in memory only", e);
+        }
+    }
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> batch) {
+        for (SpanData span : batch) {
+            if (spans.size() == bufferSize) {
+                spans.removeFirst();
+            }
+            spans.addLast(span);
+        }
+        if (writer == null) {
+            return CompletableResultCode.ofSuccess();
+        }
+        try {
+            for (SpanData span : batch) {
+                writer.write(mapper.writeValueAsString(toMap(span)));
+                writer.write('\n');
+            }
+            writer.flush();
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "LocalSpanExporter -- export to " + file.get() + " failed", e);
+            return CompletableResultCode.ofFailure();
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                return CompletableResultCode.ofFailure();
+            } finally {
+                writer = null;
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * <p>Returns a summary of the most recent traces, newest first: the trace id, the name and start of its first span,
+     * its duration and its number of spans.</p>
+     *
+     * @param limit The maximum number of traces to return
+     * @return List of trace summaries
+     */
+    synchronized List<Map<String, Object>> traces(int limit) {
+        Map<String, List<SpanData>> byTrace = new LinkedHashMap<>();
+        for (SpanData span : spans) {
+            byTrace.computeIfAbsent(span.getTraceId(), id -> new ArrayList<>()).add(span);
+        }
+        List<Map<String, Object>> traces = new ArrayList<>();
+        for (List<SpanData> trace : byTrace.values()) {
+            SpanData first = trace.stream().min(Comparator.comparingLong(SpanData::getStartEpochNanos)).get();
+            long end = trace.stream().mapToLong(SpanData::getEndEpochNanos).max().getAsLong();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("traceId", first.getTraceId());
+            summary.put("name", first.getName());
+            summary.put("start", instant(first.getStartEpochNanos()));
+            summary.put("durationMillis", millis(end - first.getStartEpochNanos()));
+            summary.put("spans", trace.size());
+            traces.add(summary);
+        }
+        traces.sort(Comparator.comparing((Map<String, Object> summary) -> (String) summary.get("start")).reversed());
+        return traces.size() > limit ? traces.subList(0, limit) : traces;
+    }
+
+    /**
+     * <p>Returns the spans of a trace that are still held, sorted by start.</p>
+     *
+     * @param traceId The id of the trace
+     * @return List of spans; empty if none is held
+     */
+    synchronized List<Map<String, Object>> trace(String traceId) {
+        List<Map<String, Object>> trace = new ArrayList<>();
+        spans.stream()
+                .filter(span -> span.getTraceId().equals(traceId))
+                .sorted(Comparator.comparingLong(SpanData::getStartEpochNanos))
+                .forEach(span -> trace.add(toMap(span)));
+        return trace;
+    }
+
+    private static Map<String, Object> toMap(SpanData span) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("traceId", span.getTraceId());
+        map.put("spanId", span.getSpanId());
+        if (SpanId.isValid(span.getParentSpanId())) {
+            map.put("parentSpanId", span.getParentSpanId());
+        }
+        map.put("name", span.getName());
+        map.put("kind", span.getKind().name());
+        map.put("start", instant(span.getStartEpochNanos()));
+        map.put("durationMillis", millis(span.getEndEpochNanos() - span.getStartEpochNanos()));
+        map.put("status", span.getStatus().getStatusCode().name());
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), value));
+        map.put("attributes", attributes);
+        return map;
+    }
+
+    private static String instant(long epochNanos) {
+        return Instant.ofEpochSecond(0, epochNanos).toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
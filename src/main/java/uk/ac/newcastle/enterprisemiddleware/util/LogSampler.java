@@ -0,0 +1,49 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Thins out a log line that can be written many times a second, e.g. for every request while an upstream service is
+ * down: at most one line per interval is let through, and it reports how many were held back since the last one.</p>
+ *
+ * <pre>
+ * long suppressed = sampler.sample();
+ * if (suppressed &gt;= 0) {
+ *     log.warning("Upstream call failed (" + suppressed + " similar lines suppressed)");
+ * }
+ * </pre>
+ *
+ * @author Howie
+ */
+public class LogSampler {
+
+    private final long intervalNanos;
+    private final AtomicLong nextAt;
+    private final LongAdder suppressed = new LongAdder();
+
+    /**
+     * @param interval The shortest time between two lines let through
+     */
+    public LogSampler(Duration interval) {
+        this.intervalNanos = interval.toNanos();
+        this.nextAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * <p>Decides whether to write a line now.</p>
+     *
+     * @return The number of lines held back since the last one let through if this one is to be written; or -1 if it
+     * is to be held back
+     */
+    public long sample() {
+        long now = System.nanoTime();
+        long next = nextAt.get();
+        if (now - next >= 0 && nextAt.compareAndSet(next, now + intervalNanos)) {
+            return suppressed.sumThenReset();
+        }
+        suppressed.increment();
+        return -1;
+    }
+}
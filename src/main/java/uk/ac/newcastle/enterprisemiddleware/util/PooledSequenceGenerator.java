@@ -0,0 +1,39 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.hibernate.MappingException;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * <p>Identifier generator used by every entity. Ids come from a database sequence, and each call to the sequence
+ * reserves a block of ids that is then handed out in memory with the pooled-lo optimizer.</p>
+ *
+ * <p>The block size is read from the {@code id-generation.allocation-size} property, so only one insert in every
+ * block pays for a round trip to the sequence. Unlike a TABLE generator, fetching the next block needs neither a row
+ * lock nor a second connection, so concurrent inserts do not queue behind each other.</p>
+ *
+ * @author Howie
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "uk.ac.newcastle.enterprisemiddleware.util.PooledSequenceGenerator";
+
+    static final String ALLOCATION_SIZE_PROPERTY = "id-generation.allocation-size";
+
+    static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        int allocationSize = ConfigProvider.getConfig()
+                .getOptionalValue(ALLOCATION_SIZE_PROPERTY, Integer.class)
+                .orElse(DEFAULT_ALLOCATION_SIZE);
+        params.putIfAbsent(INCREMENT_PARAM, String.valueOf(allocationSize));
+        params.putIfAbsent(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+}
@@ -0,0 +1,142 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * <p>Read-through cache in front of a remote "find customer by email" call.</p>
+ *
+ * <p>Found customers are kept for {@code ttl} and emails the remote service does not know (a 404 response) for the
+ * shorter {@code negativeTtl}, so a customer created elsewhere is picked up soon. Any other failure is passed to the
+ * caller and nothing is cached. The cache holds at most {@code maximumSize} emails, evicting the least recently and
+ * frequently used ones first.</p>
+ *
+ * <p>The cache holds futures, so the remote call runs on the caller's thread after the entry is claimed, not inside
+ * the map's lock: callers asking for other emails are never held up by it, and callers asking for the same email
+ * wait for the one call in flight. A failed future is dropped, so the next caller tries the remote service again.</p>
+ *
+ * @param <T> The customer type returned by the remote service
+ * @author Howie
+ */
+public class RemoteCustomerCache<T> {
+
+    private final AsyncCache<String, Optional<T>> cache;
+
+    private final LongAdder negativeHits = new LongAdder();
+
+    public RemoteCustomerCache(Duration ttl, Duration negativeTtl, long maximumSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Optional<T>>() {
+                    @Override
+                    public long expireAfterCreate(String email, Optional<T> customer, long currentTime) {
+                        return (customer.isPresent() ? ttl : negativeTtl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String email, Optional<T> customer, long currentTime, long currentDuration) {
+                        return expireAfterCreate(email, customer, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String email, Optional<T> customer, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * <p>Returns the customer with the given email, calling the remote service only if the email is not cached.</p>
+     *
+     * @param email The email of the customer
+     * @param lookup The remote call; a 404 from it means the customer does not exist
+     * @return The customer; or null if the remote service has no customer with that email
+     * @throws RuntimeException Any failure of the remote call other than a 404
+     */
+    public T get(String email, Function<String, T> lookup) {
+        CompletableFuture<Optional<T>> loading = new CompletableFuture<>();
+        CompletableFuture<Optional<T>> cached = cache.get(email, (key, executor) -> loading);
+        if (cached == loading) {
+            try {
+                loading.complete(load(email, lookup));
+            } catch (RuntimeException e) {
+                loading.completeExceptionally(e);
+            }
+        }
+        Optional<T> customer;
+        try {
+            customer = cached.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        if (customer.isEmpty() && cached != loading) {
+            negativeHits.increment();
+        }
+        return customer.orElse(null);
+    }
+
+    /**
+     * <p>Records a customer that has just been created on the remote service, replacing any cached "not found".</p>
+     *
+     * @param email The email of the customer
+     * @param customer The customer
+     */
+    public void put(String email, T customer) {
+        cache.put(email, CompletableFuture.completedFuture(Optional.of(customer)));
+    }
+
+    /**
+     * <p>Forgets whatever is cached for the given email.</p>
+     *
+     * @param email The email of the customer
+     */
+    public void invalidate(String email) {
+        cache.synchronous().invalidate(email);
+    }
+
+    /**
+     * <p>Returns the hit, miss and eviction counters of the cache.</p>
+     *
+     * @return The counters by name
+     */
+    public Map<String, Long> stats() {
+        CacheStats stats = cache.synchronous().stats();
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("size", cache.synchronous().estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("negativeHits", negativeHits.sum());
+        result.put("misses", stats.missCount());
+        result.put("lookupFailures", stats.loadFailureCount());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    private static <T> Optional<T> load(String email, Function<String, T> lookup) {
+        try {
+            return Optional.ofNullable(lookup.apply(email));
+        } catch (WebApplicationException e) {
+            if (e.getResponse() != null && e.getResponse().getStatus() == Response.Status.NOT_FOUND.getStatusCode()) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+}
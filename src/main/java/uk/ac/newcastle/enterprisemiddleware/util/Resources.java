@@ -1,8 +1,25 @@
 package uk.ac.newcastle.enterprisemiddleware.util;
 
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.context.ManagedExecutor;
+import org.eclipse.microprofile.context.ThreadContext;
+import uk.ac.newcastle.enterprisemiddleware.flight.FlightCustomer;
+import uk.ac.newcastle.enterprisemiddleware.taxi.TaxiCustomer;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Disposes;
 import javax.enterprise.inject.Produces;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.inject.Named;
+import javax.inject.Singleton;
+import java.time.Duration;
 import java.util.logging.Logger;
 
 /**
@@ -18,6 +35,31 @@ import java.util.logging.Logger;
  * </pre>
  */
 public class Resources {
+
+    @ConfigProperty(name = "remote-call.executor.max-async", defaultValue = "32")
+    int remoteCallMaxAsync;
+
+    @ConfigProperty(name = "travel-agent.async.max-concurrency", defaultValue = "16")
+    int travelAgentBookingMaxAsync;
+
+    @ConfigProperty(name = "travel-agent.async.max-queued", defaultValue = "500")
+    int travelAgentBookingMaxQueued;
+
+    @ConfigProperty(name = "remote-customer-cache.ttl", defaultValue = "PT10M")
+    Duration remoteCustomerCacheTtl;
+
+    @ConfigProperty(name = "remote-customer-cache.negative-ttl", defaultValue = "PT30S")
+    Duration remoteCustomerCacheNegativeTtl;
+
+    @ConfigProperty(name = "remote-customer-cache.maximum-size", defaultValue = "10000")
+    long remoteCustomerCacheMaximumSize;
+
+    @ConfigProperty(name = "metrics.timer-percentiles", defaultValue = "0.5,0.9,0.95,0.99")
+    double[] timerPercentiles;
+
+    @ConfigProperty(name = "tracing.export-delay", defaultValue = "PT1S")
+    Duration tracingExportDelay;
+
 //
 //    @Produces
 //    @PersistenceContext(unitName = "contacts_pu")
@@ -28,6 +70,102 @@ public class Resources {
     public Logger produceLog(InjectionPoint injectionPoint) {
         return Logger.getLogger(injectionPoint.getMember().getDeclaringClass().getName());
     }
+
+    /**
+     * <p>Bounded pool of Vert.x worker threads used to fan blocking calls to the upstream REST clients out in
+     * parallel.</p>
+     *
+     * <p>No context (JTA transaction, CDI request scope) is propagated: the work submitted here only calls remote
+     * services and must not tie itself to the lifecycle of the originating request. Work runs on the Vert.x context it
+     * is submitted from, so each task should be submitted from a duplicated context of its own.</p>
+     */
+    @Produces
+    @ApplicationScoped
+    @Named("remoteCallExecutor")
+    public WorkerExecutor produceRemoteCallExecutor(Vertx vertx) {
+        return vertx.createSharedWorkerExecutor("remote-call", remoteCallMaxAsync);
+    }
+
+    public void disposeRemoteCallExecutor(@Disposes @Named("remoteCallExecutor") WorkerExecutor executor) {
+        executor.close();
+    }
+
+    /**
+     * <p>Bounded executor that makes the travel agent bookings accepted for asynchronous processing. Once
+     * {@code max-queued} bookings are waiting, further ones are rejected rather than queued without limit.</p>
+     *
+     * <p>No context is propagated: each booking runs in a transaction and request context of its own.</p>
+     */
+    @Produces
+    @ApplicationScoped
+    @Named("travelAgentBookingExecutor")
+    public ManagedExecutor produceTravelAgentBookingExecutor() {
+        return ManagedExecutor.builder()
+                .maxAsync(travelAgentBookingMaxAsync)
+                .maxQueued(travelAgentBookingMaxQueued)
+                .propagated()
+                .cleared(ThreadContext.ALL_REMAINING)
+                .build();
+    }
+
+    public void disposeTravelAgentBookingExecutor(@Disposes @Named("travelAgentBookingExecutor") ManagedExecutor executor) {
+        executor.shutdown();
+    }
+
+    /**
+     * <p>Cache of flight API customers by email, consulted before every remote customer lookup.</p>
+     */
+    @Produces
+    @Singleton
+    @Named("flightCustomerCache")
+    public RemoteCustomerCache<FlightCustomer> produceFlightCustomerCache() {
+        return new RemoteCustomerCache<>(remoteCustomerCacheTtl, remoteCustomerCacheNegativeTtl,
+                remoteCustomerCacheMaximumSize);
+    }
+
+    /**
+     * <p>Cache of taxi API customers by email, consulted before every remote customer lookup.</p>
+     */
+    @Produces
+    @Singleton
+    @Named("taxiCustomerCache")
+    public RemoteCustomerCache<TaxiCustomer> produceTaxiCustomerCache() {
+        return new RemoteCustomerCache<>(remoteCustomerCacheTtl, remoteCustomerCacheNegativeTtl,
+                remoteCustomerCacheMaximumSize);
+    }
+
+    /**
+     * <p>Makes every timer publish the {@code metrics.timer-percentiles} and a percentile histogram, from which the
+     * monitoring system can compute any other percentile, e.g. to check a latency SLO.</p>
+     */
+    @Produces
+    @Singleton
+    public MeterFilter produceTimerPercentiles() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (id.getType() != Meter.Type.TIMER) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentiles(timerPercentiles)
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+
+    /**
+     * <p>Hands the finished spans to the {@link LocalSpanExporter} in batches, every {@code tracing.export-delay}.</p>
+     */
+    @Produces
+    @Singleton
+    public SpanProcessor produceLocalSpanProcessor(LocalSpanExporter exporter) {
+        return BatchSpanProcessor.builder(exporter)
+                .setScheduleDelay(tracingExportDelay)
+                .build();
+    }
 //
 //    @Produces
 //    @Named("mapper")
@@ -5,6 +5,14 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * <p>Exception carrying the status and message of an error response, turned into that response by
+ * {@link RestServiceExceptionMapper}.</p>
+ *
+ * <p>A client error (4xx), such as a record that does not exist or conflicts with another, is an expected outcome and
+ * is created without a stack trace, which would cost more than the rest of a rejected request; a server error keeps
+ * its stack trace.</p>
+ */
 public class RestServiceException extends RuntimeException implements
         Serializable {
 
@@ -27,13 +35,13 @@ public class RestServiceException extends RuntimeException implements
     }
 
     public RestServiceException(String msg, Response.Status status) {
-        super(msg);
+        super(msg, null, true, isServerError(status));
         this.reasons = new HashMap<>();
         this.status = status;
     }
 
     public RestServiceException(String msg, Map<String, String> reasons, Response.Status status) {
-        super(msg);
+        super(msg, null, true, isServerError(status));
         this.reasons = reasons;
         this.status = status;
     }
@@ -51,13 +59,13 @@ public class RestServiceException extends RuntimeException implements
     }
 
     public RestServiceException(String msg, Response.Status status, Exception e) {
-        super(msg, e);
+        super(msg, e, true, isServerError(status));
         this.reasons = new HashMap<>();
         this.status = status;
     }
 
     public RestServiceException(String msg, Map<String, String> reasons, Response.Status status, Exception e) {
-        super(msg, e);
+        super(msg, e, true, isServerError(status));
         this.reasons = reasons;
         this.status = status;
     }
@@ -69,4 +77,8 @@ public class RestServiceException extends RuntimeException implements
     public Response.Status getStatus() {
         return status;
     }
+
+    private static boolean isServerError(Response.Status status) {
+        return status.getFamily() == Response.Status.Family.SERVER_ERROR;
+    }
 }
@@ -7,12 +7,20 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
+import java.time.Duration;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * <p>Handler object to convert {@link RestServiceException} exception into an actual {@link Response} containing JSON
  * so we can get a nice friendly error message, easily parsable by our API clients.</p>
  *
+ * <p>Client errors (4xx), such as a record that does not exist or conflicts with another, are expected outcomes and
+ * only logged at FINE, without a stack trace. Server errors are logged as SEVERE with their stack trace. Only 503
+ * Service Unavailable, which every request answers while an upstream service is down (see
+ * {@link UpstreamUnavailableException}), is sampled, so an outage writes at most one such line a second without hiding
+ * any other server error.</p>
+ *
  * @author hugofirth
  */
 @Provider
@@ -25,11 +33,23 @@ public class RestServiceExceptionMapper implements ExceptionMapper<RestServiceEx
     @Context
     HttpHeaders headers;
 
+    private final LogSampler unavailable = new LogSampler(Duration.ofSeconds(1));
+
     @Override
     public Response toResponse(final RestServiceException e) {
 
-        log.severe("Mapping RestServiceException with status + \"" + e.getStatus() + "\", message: \"" + e.getMessage()
-                + "\" and stack trace:" + System.getProperty("line.separator") + e);
+        if (e.getStatus() == Response.Status.SERVICE_UNAVAILABLE) {
+            long suppressed = unavailable.sample();
+            if (suppressed >= 0) {
+                log.log(Level.SEVERE, "Mapping RestServiceException with status " + e.getStatus() + ", message: \""
+                        + e.getMessage() + "\" (" + suppressed + " similar lines suppressed)", e);
+            }
+        } else if (e.getStatus().getFamily() == Response.Status.Family.SERVER_ERROR) {
+            log.log(Level.SEVERE, "Mapping RestServiceException with status " + e.getStatus() + ", message: \""
+                    + e.getMessage() + "\"", e);
+        } else {
+            log.fine(() -> "Mapping RestServiceException with status " + e.getStatus() + ", message: \"" + e.getMessage() + "\"");
+        }
 
         Response.ResponseBuilder builder = Response.status(e.getStatus()).entity(new ErrorMessage(e.getMessage(), e.getReasons()));
         return builder.build();
@@ -0,0 +1,36 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * <p>Writes a {@link StreamingOutput} returned by a resource straight to the response body, which RESTEasy Reactive
+ * does not do by itself; without it the JSON provider would try to serialize the StreamingOutput as a bean.</p>
+ *
+ * @author Howie
+ * @see JsonArrayOutput
+ */
+@Provider
+@Produces(MediaType.WILDCARD)
+public class StreamingOutputWriter implements MessageBodyWriter<StreamingOutput> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return StreamingOutput.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(StreamingOutput output, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> headers, OutputStream entityStream)
+            throws IOException {
+        output.write(entityStream);
+    }
+}
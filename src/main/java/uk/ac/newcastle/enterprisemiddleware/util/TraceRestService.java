@@ -0,0 +1,75 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+
+import javax.inject.Inject;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>This class produces a RESTful service serving the recent traces held by the {@link LocalSpanExporter}.</p>
+ *
+ * @author Howie
+ */
+@Path("/admin/traces")
+@Produces(MediaType.APPLICATION_JSON)
+public class TraceRestService {
+
+    @Inject
+    LocalSpanExporter exporter;
+
+    /**
+     * <p>Return a summary of the most recent traces, newest first.</p>
+     *
+     * @param limit The maximum number of traces to return
+     * @return A Response containing the trace summaries
+     */
+    @GET
+    @Operation(summary = "Fetch recent traces", description = "Returns the id, first span, duration and size of the most recent traces.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="Traces found"),
+            @APIResponse(responseCode = "400", description = "Invalid limit")
+    })
+    public Response retrieveTraces(
+            @Parameter(description = "Maximum number of traces to return")
+            @QueryParam("limit") @DefaultValue("20") int limit) {
+        if (limit < 1) {
+            throw new RestServiceException("Bad Request", Response.Status.BAD_REQUEST);
+        }
+        return Response.ok(exporter.traces(limit)).build();
+    }
+
+    /**
+     * <p>Return the spans of a trace, sorted by start.</p>
+     *
+     * @param traceId The id of the trace
+     * @return A Response containing the spans
+     */
+    @GET
+    @Path("/{traceId:[0-9a-f]{32}}")
+    @Operation(summary = "Fetch a trace", description = "Returns the spans of a trace, with their parents, timings and attributes.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="Trace found"),
+            @APIResponse(responseCode = "404", description = "Trace with id not held")
+    })
+    public Response retrieveTrace(
+            @Parameter(description = "Id of the trace to be fetched", required = true)
+            @PathParam("traceId") String traceId) {
+        List<Map<String, Object>> trace = exporter.trace(traceId);
+        if (trace.isEmpty()) {
+            throw new RestServiceException("No trace with the id " + traceId + " was found!", Response.Status.NOT_FOUND);
+        }
+        return Response.ok(trace).build();
+    }
+}
@@ -0,0 +1,261 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Bulkhead and circuit breaker in front of one upstream service, with counters of what happened to its calls.</p>
+ *
+ * <p>The bulkhead lets at most {@code maxConcurrentCalls} calls run at once. Up to {@code maxWaitingCalls} further
+ * calls wait, each for at most {@code maxWait}, for one of them to finish; any others are rejected straight away.</p>
+ *
+ * <p>The circuit breaker remembers whether each of the last {@code requestVolumeThreshold} calls failed. Once that many
+ * calls have been made and at least {@code failureRatio} of them failed, it opens and rejects every call for
+ * {@code delay}. After that a single trial call is let through: if it succeeds the breaker closes again, otherwise it
+ * stays open for another {@code delay}.</p>
+ *
+ * <p>Rejected calls throw an {@link UpstreamUnavailableException} without reaching the upstream service.</p>
+ *
+ * @author Howie
+ * @see UpstreamGuardInterceptor
+ */
+public class UpstreamGuard {
+
+    /**
+     * <p>The state of the circuit breaker.</p>
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * <p>How a call ended, as far as the circuit breaker is concerned.</p>
+     */
+    public enum Outcome {
+        SUCCESS,
+        FAILURE,
+        TIMEOUT
+    }
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final int maxWaitingCalls;
+    private final long maxWaitNanos;
+    private final double failureRatio;
+    private final long delayNanos;
+
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /** Outcomes of the last calls, true for a failure; guarded by this. */
+    private final boolean[] window;
+    private int windowNext;
+    private int windowSize;
+    private int windowFailures;
+    private State state = State.CLOSED;
+    private long openUntil;
+    private boolean trialRunning;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder bulkheadRejections = new LongAdder();
+    private final LongAdder circuitOpenRejections = new LongAdder();
+    private final LongAdder circuitOpenings = new LongAdder();
+
+    public UpstreamGuard(String name, int maxConcurrentCalls, int maxWaitingCalls, Duration maxWait,
+                         int requestVolumeThreshold, double failureRatio, Duration delay) {
+        this.name = name;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitingCalls = maxWaitingCalls;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.failureRatio = failureRatio;
+        this.delayNanos = delay.toNanos();
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+        this.window = new boolean[requestVolumeThreshold];
+    }
+
+    /**
+     * <p>Makes a call to the upstream service if the circuit breaker and the bulkhead allow it.</p>
+     *
+     * @param call The call to the upstream service
+     * @param classifier Decides whether an exception thrown by the call counts as a failure of the upstream service
+     * @param <T> The type returned by the call
+     * @return Whatever the call returns
+     * @throws UpstreamUnavailableException If the call was rejected
+     * @throws Exception Whatever the call throws
+     */
+    public <T> T call(Callable<T> call, ExceptionClassifier classifier) throws Exception {
+        boolean trial = acquireCircuit();
+        try {
+            acquirePermit();
+        } catch (RuntimeException e) {
+            if (trial) {
+                releaseTrial();
+            }
+            throw e;
+        }
+
+        calls.increment();
+        Outcome outcome = Outcome.FAILURE;
+        try {
+            T result = call.call();
+            outcome = Outcome.SUCCESS;
+            return result;
+        } catch (Exception e) {
+            outcome = classifier.classify(e);
+            throw e;
+        } finally {
+            permits.release();
+            record(outcome, trial);
+        }
+    }
+
+    private synchronized boolean acquireCircuit() {
+        if (state == State.CLOSED) {
+            return false;
+        }
+        if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN && !trialRunning) {
+            trialRunning = true;
+            return true;
+        }
+        circuitOpenRejections.increment();
+        throw new UpstreamUnavailableException(name + " is unavailable, its circuit breaker is open");
+    }
+
+    private synchronized void releaseTrial() {
+        trialRunning = false;
+    }
+
+    private void acquirePermit() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        if (waiting.incrementAndGet() > maxWaitingCalls) {
+            waiting.decrementAndGet();
+            bulkheadRejections.increment();
+            throw new UpstreamUnavailableException(name + " is unavailable, too many calls are waiting for it");
+        }
+        try {
+            if (!permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS)) {
+                bulkheadRejections.increment();
+                throw new UpstreamUnavailableException(name + " is unavailable, no call slot became free in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            bulkheadRejections.increment();
+            throw new UpstreamUnavailableException(name + " is unavailable, interrupted while waiting for a call slot");
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private synchronized void record(Outcome outcome, boolean trial) {
+        boolean failed = outcome != Outcome.SUCCESS;
+        (failed ? failures : successes).increment();
+        if (outcome == Outcome.TIMEOUT) {
+            timeouts.increment();
+        }
+
+        if (trial) {
+            trialRunning = false;
+            if (failed) {
+                open();
+            } else {
+                state = State.CLOSED;
+                windowNext = 0;
+                windowSize = 0;
+                windowFailures = 0;
+            }
+            return;
+        }
+        if (state != State.CLOSED) {
+            // a call let through before the breaker opened
+            return;
+        }
+
+        if (windowSize == window.length) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowSize++;
+        }
+        window[windowNext] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % window.length;
+
+        if (windowSize == window.length && windowFailures >= failureRatio * window.length) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = System.nanoTime() + delayNanos;
+        circuitOpenings.increment();
+    }
+
+    /**
+     * <p>Returns the name of the upstream service.</p>
+     *
+     * @return The config key of its REST client
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * <p>Returns the state of the circuit breaker.</p>
+     *
+     * @return The state; OPEN until the next trial call is allowed
+     */
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * <p>Returns the counters of the calls to the upstream service.</p>
+     *
+     * @return The counters by name, and the state of the circuit breaker
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("state", getState());
+        result.put("calls", calls.sum());
+        result.put("successes", successes.sum());
+        result.put("failures", failures.sum());
+        result.put("timeouts", timeouts.sum());
+        result.put("bulkheadRejections", bulkheadRejections.sum());
+        result.put("circuitOpenRejections", circuitOpenRejections.sum());
+        result.put("circuitOpenings", circuitOpenings.sum());
+        result.put("running", Math.max(0, maxConcurrentCalls - permits.availablePermits()));
+        result.put("waiting", waiting.get());
+        return result;
+    }
+
+    /**
+     * <p>Decides whether an exception thrown by a call counts as a failure of the upstream service.</p>
+     */
+    @FunctionalInterface
+    public interface ExceptionClassifier {
+        Outcome classify(Exception e);
+    }
+}
@@ -0,0 +1,85 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ConnectTimeoutException;
+import io.quarkus.arc.ArcInvocationContext;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.Interceptor;
+import javax.interceptor.InvocationContext;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>Runs every call to a {@link Guarded} REST client through the {@link UpstreamGuard} of its upstream service.</p>
+ *
+ * <p>Server errors (5xx), connection failures and timeouts count as failures of the upstream service. Client errors
+ * (4xx), e.g. a customer that does not exist, are answers like any other and count as successes.</p>
+ *
+ * <p>Each call is timed by the {@code upstream.calls} timer, tagged with the upstream service, the method and the
+ * outcome; calls that failed, timed out or were rejected by the guard are also counted by {@code upstream.errors}.</p>
+ *
+ * @author Howie
+ * @see UpstreamGuards
+ */
+@Guarded("")
+@Interceptor
+@Priority(Interceptor.Priority.APPLICATION)
+public class UpstreamGuardInterceptor {
+
+    @Inject
+    UpstreamGuards guards;
+
+    @Inject
+    MeterRegistry registry;
+
+    @AroundInvoke
+    Object guard(InvocationContext ctx) throws Exception {
+        Guarded guarded = ArcInvocationContext.findIterceptorBinding(ctx, Guarded.class);
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "success";
+        try {
+            return guards.get(guarded.value()).call(ctx::proceed, UpstreamGuardInterceptor::classify);
+        } catch (UpstreamUnavailableException e) {
+            outcome = "rejected";
+            throw e;
+        } catch (Exception e) {
+            outcome = classify(e).name().toLowerCase();
+            throw e;
+        } finally {
+            Tags tags = Tags.of("api", guarded.value(), "method", ctx.getMethod().getName(), "outcome", outcome);
+            sample.stop(registry.timer("upstream.calls", tags));
+            if (!"success".equals(outcome)) {
+                registry.counter("upstream.errors", tags).increment();
+            }
+        }
+    }
+
+    /**
+     * <p>Tells whether a call failed because of the upstream service, and if so whether it timed out.</p>
+     *
+     * <p>A timeout is recognised by its type anywhere in the cause chain, as the REST client wraps it in a
+     * {@link ProcessingException}: the JDK's {@link TimeoutException} (which Vert.x's request timeout extends) and
+     * {@link SocketTimeoutException}, and Netty's {@link ConnectTimeoutException}.</p>
+     */
+    static UpstreamGuard.Outcome classify(Exception e) {
+        if (e instanceof WebApplicationException) {
+            WebApplicationException wae = (WebApplicationException) e;
+            return wae.getResponse() != null && wae.getResponse().getStatus() < 500
+                    ? UpstreamGuard.Outcome.SUCCESS : UpstreamGuard.Outcome.FAILURE;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof SocketTimeoutException
+                    || cause instanceof ConnectTimeoutException) {
+                return UpstreamGuard.Outcome.TIMEOUT;
+            }
+        }
+        return UpstreamGuard.Outcome.FAILURE;
+    }
+}
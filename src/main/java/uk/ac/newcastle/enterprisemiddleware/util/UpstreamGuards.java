@@ -0,0 +1,68 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import org.eclipse.microprofile.config.Config;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Holds the {@link UpstreamGuard} of every upstream service, created on first use from its
+ * {@code upstream.<config key>.*} settings:</p>
+ *
+ * <ul>
+ *     <li>{@code max-concurrent-calls}, {@code max-waiting-calls} and {@code max-wait} size the bulkhead;</li>
+ *     <li>{@code circuit-breaker.request-volume-threshold}, {@code circuit-breaker.failure-ratio} and
+ *     {@code circuit-breaker.delay} tune the circuit breaker.</li>
+ * </ul>
+ *
+ * @author Howie
+ */
+@ApplicationScoped
+public class UpstreamGuards {
+
+    @Inject
+    Config config;
+
+    private final ConcurrentMap<String, UpstreamGuard> guards = new ConcurrentHashMap<>();
+
+    /**
+     * <p>Returns the guard of an upstream service.</p>
+     *
+     * @param name The config key of the REST client of the upstream service
+     * @return Its UpstreamGuard
+     */
+    public UpstreamGuard get(String name) {
+        return guards.computeIfAbsent(name, this::create);
+    }
+
+    /**
+     * <p>Returns the counters of every upstream service called so far.</p>
+     *
+     * @return The counters of each UpstreamGuard, by name
+     */
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> stats = new TreeMap<>();
+        guards.forEach((name, guard) -> stats.put(name, guard.stats()));
+        return stats;
+    }
+
+    private UpstreamGuard create(String name) {
+        String prefix = "upstream." + name + ".";
+        return new UpstreamGuard(name,
+                value(prefix + "max-concurrent-calls", Integer.class, 16),
+                value(prefix + "max-waiting-calls", Integer.class, 32),
+                value(prefix + "max-wait", Duration.class, Duration.ofSeconds(2)),
+                value(prefix + "circuit-breaker.request-volume-threshold", Integer.class, 20),
+                value(prefix + "circuit-breaker.failure-ratio", Double.class, 0.5),
+                value(prefix + "circuit-breaker.delay", Duration.class, Duration.ofSeconds(10)));
+    }
+
+    private <T> T value(String key, Class<T> type, T defaultValue) {
+        return config.getOptionalValue(key, type).orElse(defaultValue);
+    }
+}
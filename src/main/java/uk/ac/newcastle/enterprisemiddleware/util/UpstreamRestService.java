@@ -0,0 +1,42 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>Exposes what the {@link UpstreamGuards} have seen of the flight, taxi and area APIs.</p>
+ *
+ * @author Howie
+ */
+@Path("/upstreams")
+@Produces(MediaType.APPLICATION_JSON)
+public class UpstreamRestService {
+
+    @Inject
+    UpstreamGuards guards;
+
+    /**
+     * <p>Return the circuit breaker state and the call, failure, timeout and rejection counters of each upstream
+     * service.</p>
+     *
+     * @return A Response containing the counters of each upstream service
+     */
+    @GET
+    @Path("/stats")
+    @Operation(summary = "Fetch upstream service statistics",
+            description = "Returns the circuit breaker state and call counters of each upstream service.")
+    @APIResponses(value = {
+            @APIResponse(responseCode = "200", description ="Statistics found")
+    })
+    public Response retrieveUpstreamStats() {
+        return Response.ok(guards.stats()).build();
+    }
+}
@@ -0,0 +1,21 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * <p>RestServiceException thrown when a call to an upstream service is rejected by its {@link UpstreamGuard}, because
+ * its circuit breaker is open or too many calls to it are already running.</p>
+ *
+ * <p>In such cases the Response status should be 503 SERVICE_UNAVAILABLE.</p>
+ *
+ * @author Howie
+ * @see UpstreamGuard
+ */
+public class UpstreamUnavailableException extends RestServiceException {
+
+    private static final long serialVersionUID = 6349102741178305221L;
+
+    public UpstreamUnavailableException(String message) {
+        super(message, Response.Status.SERVICE_UNAVAILABLE);
+    }
+}
@@ -0,0 +1,118 @@
+package uk.ac.newcastle.enterprisemiddleware.booking;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+/**
+ * <p>Compares how many Bookings per second can be stored through {@code POST /bookings/createBooking}, one request per
+ * Booking, and through {@code POST /bookings/batch}.</p>
+ *
+ * <p>Excluded from the default build; run it with
+ * {@code mvn test -Pbenchmark -Dtest=BookingBatchBenchmarkTest}.</p>
+ */
+@QuarkusTest
+@Tag("benchmark")
+@QuarkusTestResource(H2DatabaseTestResource.class)
+public class BookingBatchBenchmarkTest {
+
+    private static final int SINGLE_BOOKINGS = 1000;
+
+    private static final int BATCH_BOOKINGS = 10000;
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Test
+    public void benchmarkSingleVersusBatch() {
+        Long customerId = createCustomer();
+        LocalDate firstDate = LocalDate.now().plusDays(1);
+
+        Long singleHotelId = createHotel("(0783)999-1001");
+        long start = System.nanoTime();
+        for (int i = 0; i < SINGLE_BOOKINGS; i++) {
+            given().
+                    contentType(ContentType.JSON).
+                    body(booking(singleHotelId, customerId, firstDate.plusDays(i))).
+            when().
+                    post("/bookings/createBooking").
+            then().
+                    statusCode(201);
+        }
+        report("single", SINGLE_BOOKINGS, start);
+
+        Long batchHotelId = createHotel("(0783)999-1002");
+        start = System.nanoTime();
+        for (int offset = 0; offset < BATCH_BOOKINGS; offset += BATCH_SIZE) {
+            List<Map<String, Object>> batch = new ArrayList<>();
+            for (int i = offset; i < offset + BATCH_SIZE; i++) {
+                batch.add(booking(batchHotelId, customerId, firstDate.plusDays(i)));
+            }
+            given().
+                    contentType(ContentType.JSON).
+                    body(batch).
+            when().
+                    post("/bookings/batch").
+            then().
+                    statusCode(200).
+                    body("created", equalTo(BATCH_SIZE));
+        }
+        report("batch", BATCH_BOOKINGS, start);
+    }
+
+    private static void report(String mode, int bookings, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("BookingBatchBenchmark mode=%s bookings=%d time=%.2fs throughput=%.0f bookings/s%n",
+                mode, bookings, seconds, bookings / seconds);
+    }
+
+    private static Long createHotel(String phoneNumber) {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("hotelName", "Bench Inn");
+        hotel.put("phoneNumber", phoneNumber);
+        hotel.put("postcode", "NE17RU");
+        return given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("/hotels").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+    }
+
+    private static Long createCustomer() {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("firstName", "Bench");
+        customer.put("lastName", "Tester");
+        customer.put("email", "bench@booking.test");
+        customer.put("phoneNumber", "(0783)999-1003");
+        return given().
+                contentType(ContentType.JSON).
+                body(customer).
+        when().
+                post("/customers").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+    }
+
+    private static Map<String, Object> booking(Long hotelId, Long customerId, LocalDate date) {
+        Map<String, Object> booking = new HashMap<>();
+        booking.put("hotelId", hotelId);
+        booking.put("customerId", customerId);
+        booking.put("bookingDate", date.toString());
+        return booking;
+    }
+}
@@ -0,0 +1,152 @@
+package uk.ac.newcastle.enterprisemiddleware.booking;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * <p>Measures {@code POST /bookings/createBooking} when {@value #CONTENDERS} clients ask for the same hotel and date at
+ * the same moment, round after round on a new date, and reports the throughput and latency percentiles of all the
+ * requests. Exactly one request per round has to succeed, and every other one has to be turned away with 409.</p>
+ *
+ * <p>Excluded from the default build; run it with
+ * {@code mvn test -Pbenchmark -Dtest=BookingContentionBenchmarkTest},
+ * optionally with {@code -Dcontention.rounds=<n>}.</p>
+ */
+@QuarkusTest
+@Tag("benchmark")
+@QuarkusTestResource(H2DatabaseTestResource.class)
+public class BookingContentionBenchmarkTest {
+
+    private static final int CONTENDERS = 100;
+
+    private static final int ROUNDS = Integer.getInteger("contention.rounds", 50);
+
+    @TestHTTPResource("/bookings/createBooking")
+    URI createBookingUri;
+
+    @Test
+    public void benchmarkContendedBooking() throws Exception {
+        Long customerId = createCustomer();
+        Long hotelId = createHotel();
+        LocalDate firstDate = LocalDate.now().plusDays(1);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        ExecutorService executor = Executors.newFixedThreadPool(CONTENDERS);
+        CyclicBarrier start = new CyclicBarrier(CONTENDERS);
+        Histogram latencies = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger others = new AtomicInteger();
+
+        long begin = System.nanoTime();
+        try {
+            List<Future<?>> contenders = new ArrayList<>();
+            for (int i = 0; i < CONTENDERS; i++) {
+                contenders.add(executor.submit(() -> {
+                    for (int round = 0; round < ROUNDS; round++) {
+                        HttpRequest request = HttpRequest.newBuilder(createBookingUri)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(
+                                        booking(hotelId, customerId, firstDate.plusDays(round))))
+                                .build();
+                        start.await();
+                        long sent = System.nanoTime();
+                        int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent);
+                        synchronized (latencies) {
+                            latencies.recordValue(Math.min(micros, latencies.getHighestTrackableValue()));
+                        }
+                        if (status == 201) {
+                            created.incrementAndGet();
+                        } else if (status == 409) {
+                            conflicts.incrementAndGet();
+                        } else {
+                            others.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> contender : contenders) {
+                contender.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        int requests = CONTENDERS * ROUNDS;
+        System.out.printf("BookingContentionBenchmark contenders=%d rounds=%d time=%.2fs throughput=%.0f requests/s"
+                        + " p50=%.2fms p99=%.2fms max=%.2fms created=%d conflicts=%d others=%d%n",
+                CONTENDERS, ROUNDS, seconds, requests / seconds,
+                latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(99) / 1000.0,
+                latencies.getMaxValue() / 1000.0, created.get(), conflicts.get(), others.get());
+
+        assertEquals(ROUNDS, created.get(), "Expected exactly one booking per round");
+        assertEquals(requests - ROUNDS, conflicts.get(), "Expected every other request to be refused with 409");
+    }
+
+    private static String booking(Long hotelId, Long customerId, LocalDate date) {
+        return "{\"hotelId\":" + hotelId + ",\"customerId\":" + customerId + ",\"bookingDate\":\"" + date + "\"}";
+    }
+
+    private static Long createHotel() {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("hotelName", "Contended Inn");
+        hotel.put("phoneNumber", "(0783)999-2001");
+        hotel.put("postcode", "NE17RU");
+        return given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("/hotels").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+    }
+
+    private static Long createCustomer() {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("firstName", "Contended");
+        customer.put("lastName", "Tester");
+        customer.put("email", "contended@booking.test");
+        customer.put("phoneNumber", "(0783)999-2002");
+        return given().
+                contentType(ContentType.JSON).
+                body(customer).
+        when().
+                post("/customers").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+    }
+}
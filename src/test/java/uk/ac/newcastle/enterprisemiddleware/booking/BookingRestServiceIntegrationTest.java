@@ -6,18 +6,34 @@ import io.quarkus.test.h2.H2DatabaseTestResource;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
 import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
 import org.junit.jupiter.api.*;
 import uk.ac.newcastle.enterprisemiddleware.contact.Contact;
+import uk.ac.newcastle.enterprisemiddleware.util.KeysetPage;
 
+import javax.inject.Inject;
+import javax.transaction.UserTransaction;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.when;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
@@ -28,6 +44,12 @@ public class BookingRestServiceIntegrationTest {
 
     private static Booking booking;
 
+    @Inject
+    HotelAvailabilityIndex availabilityIndex;
+
+    @Inject
+    UserTransaction userTransaction;
+
     @BeforeAll
     static void setup() {
         booking = new Booking();
@@ -104,4 +126,409 @@ public class BookingRestServiceIntegrationTest {
                 then().
                 statusCode(204);
     }
+
+    @Test
+    @Order(11)
+    public void testCanCreateBookingBatch() {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("hotelName", "Batch Inn");
+        hotel.put("phoneNumber", "(0783)999-0002");
+        hotel.put("postcode", "NE17RU");
+        Long hotelId = given().
+                basePath("/").
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("hotels").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("firstName", "Batch");
+        customer.put("lastName", "Tester");
+        customer.put("email", "batch@booking.test");
+        customer.put("phoneNumber", "(0783)999-0003");
+        Long customerId = given().
+                basePath("/").
+                contentType(ContentType.JSON).
+                body(customer).
+        when().
+                post("customers").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+
+        LocalDate date = LocalDate.now().plusDays(1);
+        List<Map<String, Object>> batch = List.of(
+                batchBooking(hotelId, customerId, date),
+                batchBooking(hotelId, customerId, date.plusDays(1)),
+                batchBooking(hotelId, customerId, date),
+                batchBooking(hotelId, customerId + 1000, date.plusDays(2)),
+                batchBooking(hotelId, customerId, date.minusDays(2)));
+
+        given().
+                contentType(ContentType.JSON).
+                body(batch).
+        when().
+                post("batch").
+        then().
+                statusCode(200).
+                body("created", equalTo(2)).
+                body("failed", equalTo(3)).
+                body("results[0].status", equalTo(201)).
+                body("results[0].id", notNullValue()).
+                body("results[1].status", equalTo(201)).
+                body("results[2].status", equalTo(409)).
+                body("results[2].id", nullValue()).
+                body("results[3].status", equalTo(404)).
+                body("results[4].status", equalTo(400));
+
+        given().
+                contentType(ContentType.JSON).
+                body(List.of(batchBooking(hotelId, customerId, date))).
+        when().
+                post("batch").
+        then().
+                statusCode(200).
+                body("created", equalTo(0)).
+                body("results[0].status", equalTo(409));
+
+        given().
+                basePath("/").
+        when().
+                delete("hotels/" + hotelId).
+        then().
+                statusCode(204);
+        given().
+                basePath("/").
+        when().
+                delete("customers/" + customerId).
+        then().
+                statusCode(204);
+    }
+
+    @Test
+    @Order(12)
+    public void testEmptyBookingBatchCausesError() {
+        given().
+                contentType(ContentType.JSON).
+                body(List.of()).
+        when().
+                post("batch").
+        then().
+                statusCode(400);
+    }
+
+    @Test
+    @Order(13)
+    public void testBookingBatchLosesDateClaimedByAnotherRequest() throws Exception {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("hotelName", "Claimed Inn");
+        hotel.put("phoneNumber", "(0783)999-0004");
+        hotel.put("postcode", "NE17RU");
+        Long hotelId = given().
+                basePath("/").
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("hotels").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("firstName", "Claim");
+        customer.put("lastName", "Tester");
+        customer.put("email", "claim@booking.test");
+        customer.put("phoneNumber", "(0783)999-0005");
+        Long customerId = given().
+                basePath("/").
+                contentType(ContentType.JSON).
+                body(customer).
+        when().
+                post("customers").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+
+        // another request holds the claim on the date, as a single booking does while it is being written
+        LocalDate date = LocalDate.now().plusDays(1);
+        CountDownLatch claimed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Boolean> otherRequest = CompletableFuture.supplyAsync(() -> {
+            try {
+                userTransaction.begin();
+                try {
+                    return availabilityIndex.claim(new Booking(hotelId, customerId, java.sql.Date.valueOf(date)));
+                } finally {
+                    claimed.countDown();
+                    release.await(10, TimeUnit.SECONDS);
+                    userTransaction.rollback();
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            assertTrue(claimed.await(10, TimeUnit.SECONDS), "The date was not claimed in time");
+
+            given().
+                    contentType(ContentType.JSON).
+                    body(List.of(batchBooking(hotelId, customerId, date), batchBooking(hotelId, customerId, date.plusDays(1)))).
+            when().
+                    post("batch").
+            then().
+                    statusCode(200).
+                    body("created", equalTo(1)).
+                    body("results[0].status", equalTo(409)).
+                    body("results[0].reasons.hotelAndDate", notNullValue()).
+                    body("results[1].status", equalTo(201));
+        } finally {
+            release.countDown();
+        }
+        assertTrue(otherRequest.get(10, TimeUnit.SECONDS), "The other request did not get the claim");
+
+        // the other request rolled back, so the date is free again
+        given().
+                contentType(ContentType.JSON).
+                body(List.of(batchBooking(hotelId, customerId, date))).
+        when().
+                post("batch").
+        then().
+                statusCode(200).
+                body("created", equalTo(1));
+
+        given().
+                basePath("/").
+        when().
+                delete("hotels/" + hotelId).
+        then().
+                statusCode(204);
+        given().
+                basePath("/").
+        when().
+                delete("customers/" + customerId).
+        then().
+                statusCode(204);
+    }
+
+    @Test
+    @Order(14)
+    public void testBookingsFilteredByEachField() {
+        FilterFixture f = new FilterFixture();
+        try {
+            assertEquals(List.of(f.bookings.get(0), f.bookings.get(2)), ids(given().
+                    queryParam("customerId", f.customers.get(0))));
+            assertEquals(List.of(f.bookings.get(0), f.bookings.get(1)), ids(given().
+                    queryParam("hotelId", f.hotels.get(0))));
+            assertEquals(List.of(f.bookings.get(0), f.bookings.get(3)), ids(given().
+                    queryParam("bookingDate", f.dates.get(0).toString())));
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    @Order(15)
+    public void testBookingsFilteredByCombinedFields() {
+        FilterFixture f = new FilterFixture();
+        try {
+            assertEquals(List.of(f.bookings.get(2)), ids(given().
+                    queryParam("customerId", f.customers.get(0)).
+                    queryParam("hotelId", f.hotels.get(1))));
+            assertEquals(List.of(f.bookings.get(1)), ids(given().
+                    queryParam("hotelId", f.hotels.get(0)).
+                    queryParam("bookingDate", f.dates.get(1).toString())));
+            assertEquals(List.of(f.bookings.get(3)), ids(given().
+                    queryParam("customerId", f.customers.get(1)).
+                    queryParam("bookingDate", f.dates.get(0).toString())));
+            assertEquals(List.of(f.bookings.get(0)), ids(given().
+                    queryParam("customerId", f.customers.get(0)).
+                    queryParam("hotelId", f.hotels.get(0)).
+                    queryParam("bookingDate", f.dates.get(0).toString())));
+            assertEquals(List.of(), ids(given().
+                    queryParam("customerId", f.customers.get(0)).
+                    queryParam("hotelId", f.hotels.get(0)).
+                    queryParam("bookingDate", f.dates.get(1).toString())));
+            assertEquals(List.of(), ids(given().
+                    queryParam("customerId", Long.MAX_VALUE)));
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    @Order(16)
+    public void testBookingsPagedAtTheEdges() {
+        FilterFixture f = new FilterFixture();
+        try {
+            Long hotelId = f.hotels.get(0);
+
+            Response first = given().
+                    queryParam("hotelId", hotelId).
+                    queryParam("limit", 1).
+            when().
+                    get().
+            then().
+                    statusCode(200).
+                    body("size()", equalTo(1)).
+                    body("[0].id", equalTo(f.bookings.get(0).intValue())).
+                    extract().response();
+            assertEquals(String.valueOf(f.bookings.get(0)), first.header(KeysetPage.NEXT_CURSOR_HEADER));
+
+            Response last = given().
+                    queryParam("hotelId", hotelId).
+                    queryParam("after", f.bookings.get(0)).
+                    queryParam("limit", 1).
+            when().
+                    get().
+            then().
+                    statusCode(200).
+                    body("size()", equalTo(1)).
+                    body("[0].id", equalTo(f.bookings.get(1).intValue())).
+                    extract().response();
+            assertNull(last.header(KeysetPage.NEXT_CURSOR_HEADER));
+
+            assertEquals(List.of(f.bookings.get(0), f.bookings.get(1)), ids(given().
+                    queryParam("hotelId", hotelId).
+                    queryParam("limit", KeysetPage.MAX_LIMIT)));
+            assertEquals(List.of(f.bookings.get(1)), ids(given().
+                    queryParam("hotelId", hotelId).
+                    queryParam("offset", 1)));
+            assertEquals(List.of(), ids(given().
+                    queryParam("hotelId", hotelId).
+                    queryParam("offset", 2)));
+            assertEquals(List.of(), ids(given().
+                    queryParam("hotelId", hotelId).
+                    queryParam("after", f.bookings.get(1)).
+                    queryParam("limit", 1)));
+
+            for (Object limit : List.of(0, -1, KeysetPage.MAX_LIMIT + 1)) {
+                given().
+                        queryParam("hotelId", hotelId).
+                        queryParam("limit", limit).
+                when().
+                        get().
+                then().
+                        statusCode(400);
+            }
+            given().
+                    queryParam("offset", -1).
+            when().
+                    get().
+            then().
+                    statusCode(400);
+            given().
+                    queryParam("after", -1).
+            when().
+                    get().
+            then().
+                    statusCode(400);
+            given().
+                    queryParam("bookingDate", "09/12/2022").
+            when().
+                    get().
+            then().
+                    statusCode(400);
+        } finally {
+            f.delete();
+        }
+    }
+
+    private static List<Long> ids(RequestSpecification request) {
+        return request.
+        when().
+                get().
+        then().
+                statusCode(200).
+                extract().jsonPath().getList("id", Long.class);
+    }
+
+    /**
+     * <p>Two hotels, two customers and four bookings over two dates, so that no two bookings match the same pair of
+     * filters: booking i is for hotel i / 2, customer i % 2 and date (i / 2 + i % 2) % 2. The dates are far enough
+     * ahead not to be booked by any other test.</p>
+     */
+    private static class FilterFixture {
+
+        final List<Long> hotels = new ArrayList<>();
+        final List<Long> customers = new ArrayList<>();
+        final List<LocalDate> dates = List.of(LocalDate.now().plusYears(2), LocalDate.now().plusYears(2).plusDays(1));
+        final List<Long> bookings = new ArrayList<>();
+
+        FilterFixture() {
+            for (int i = 0; i < 2; i++) {
+                Map<String, Object> hotel = new HashMap<>();
+                hotel.put("hotelName", "Filter Inn");
+                hotel.put("phoneNumber", "(0783)999-001" + i);
+                hotel.put("postcode", "NE17RU");
+                hotels.add(given().
+                        basePath("/").
+                        contentType(ContentType.JSON).
+                        body(hotel).
+                when().
+                        post("hotels").
+                then().
+                        statusCode(201).
+                        extract().jsonPath().getLong("id"));
+
+                Map<String, Object> customer = new HashMap<>();
+                customer.put("firstName", "Filter");
+                customer.put("lastName", "Tester");
+                customer.put("email", "filter" + i + "@booking.test");
+                customer.put("phoneNumber", "(0783)999-002" + i);
+                customers.add(given().
+                        basePath("/").
+                        contentType(ContentType.JSON).
+                        body(customer).
+                when().
+                        post("customers").
+                then().
+                        statusCode(201).
+                        extract().jsonPath().getLong("id"));
+            }
+
+            List<Map<String, Object>> batch = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                batch.add(batchBooking(hotels.get(i / 2), customers.get(i % 2), dates.get((i / 2 + i % 2) % 2)));
+            }
+            bookings.addAll(given().
+                    contentType(ContentType.JSON).
+                    body(batch).
+            when().
+                    post("batch").
+            then().
+                    statusCode(200).
+                    body("created", equalTo(4)).
+                    extract().jsonPath().getList("results.id", Long.class));
+        }
+
+        void delete() {
+            for (Long hotelId : hotels) {
+                given().
+                        basePath("/").
+                when().
+                        delete("hotels/" + hotelId).
+                then().
+                        statusCode(204);
+            }
+            for (Long customerId : customers) {
+                given().
+                        basePath("/").
+                when().
+                        delete("customers/" + customerId).
+                then().
+                        statusCode(204);
+            }
+        }
+    }
+
+    private static Map<String, Object> batchBooking(Long hotelId, Long customerId, LocalDate date) {
+        Map<String, Object> booking = new HashMap<>();
+        booking.put("hotelId", hotelId);
+        booking.put("customerId", customerId);
+        booking.put("bookingDate", date.toString());
+        return booking;
+    }
 }
@@ -5,13 +5,24 @@ import io.quarkus.test.common.http.TestHTTPEndpoint;
 import io.quarkus.test.h2.H2DatabaseTestResource;
 import io.quarkus.test.junit.QuarkusTest;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
 import io.restassured.response.Response;
 import org.junit.jupiter.api.*;
+import uk.ac.newcastle.enterprisemiddleware.util.KeysetPage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.RestAssured.when;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
@@ -76,6 +87,204 @@ public class HotelRestServiceIntegrationTest {
 
     @Test
     @Order(4)
+    public void testAvailabilityFollowsBookings() {
+        Long hotelId = when().
+                get().
+                then().
+                statusCode(200).
+                extract().jsonPath().getLong("[0].id");
+        LocalDate from = LocalDate.now().plusDays(1);
+        LocalDate bookingDate = from.plusDays(2);
+        String availability = hotelId + "/availability?from=" + from + "&to=" + from.plusDays(6);
+
+        when().
+                get(availability).
+        then().
+                statusCode(200).
+                body("availableDates", hasSize(7)).
+                body("bookedDates", hasSize(0));
+
+        Map<String, Object> guestBooking = new HashMap<>();
+        guestBooking.put("firstName", "Avail");
+        guestBooking.put("lastName", "Tester");
+        guestBooking.put("email", "avail@hotel.test");
+        guestBooking.put("phoneNumber", "(0783)344-5434");
+        guestBooking.put("hotelId", hotelId);
+        guestBooking.put("bookingDate", bookingDate.toString());
+        Long customerId = given().
+                basePath("/").
+                contentType(ContentType.JSON).
+                body(guestBooking).
+        when().
+                post("guestBooking").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("customerId");
+
+        List<String> bookedDates = when().
+                get(availability).
+        then().
+                statusCode(200).
+                body("availableDates", hasSize(6)).
+                extract().jsonPath().getList("bookedDates", String.class);
+        assertEquals(List.of(bookingDate.toString()), bookedDates);
+
+        given().
+                basePath("/").
+        when().
+                delete("customers/" + customerId).
+        then().
+                statusCode(204);
+
+        when().
+                get(availability).
+        then().
+                statusCode(200).
+                body("bookedDates", hasSize(0));
+    }
+
+    @Test
+    @Order(5)
+    public void testInvalidAvailabilityRangeCausesError() {
+        LocalDate from = LocalDate.now();
+        when().
+                get("1/availability?from=" + from + "&to=" + from.minusDays(1)).
+        then().
+                statusCode(400);
+
+        when().
+                get("1/availability?from=" + from).
+        then().
+                statusCode(400);
+    }
+
+    @Test
+    @Order(6)
+    public void testHotelsArePagedByCursorAndStreamed() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Hotel other = new Hotel();
+            other.setHotelName("Paged" + i);
+            other.setPhoneNumber("(0783)343-600" + i);
+            other.setPostcode("NE45SA");
+            ids.add(given().
+                    contentType(ContentType.JSON).
+                    body(other).
+            when().
+                    post().
+            then().
+                    statusCode(201).
+                    extract().jsonPath().getLong("id"));
+        }
+
+        Response first = given().
+                queryParam("postcode", "NE45SA").
+                queryParam("limit", 2).
+        when().
+                get().
+        then().
+                statusCode(200).
+                body("size()", is(2)).
+                extract().response();
+        long cursor = first.jsonPath().getLong("[1].id");
+        assertEquals(String.valueOf(cursor), first.header(KeysetPage.NEXT_CURSOR_HEADER));
+        assertTrue(first.header("Link").contains("after=" + cursor), first.header("Link"));
+        assertTrue(first.header("Link").contains("postcode=NE45SA"), first.header("Link"));
+
+        Response last = given().
+                queryParam("postcode", "NE45SA").
+                queryParam("after", cursor).
+                queryParam("limit", 2).
+        when().
+                get().
+        then().
+                statusCode(200).
+                body("size()", is(1)).
+                body("[0].id", is(ids.get(1).intValue())).
+                extract().response();
+        assertNull(last.header(KeysetPage.NEXT_CURSOR_HEADER));
+        assertNull(last.header("Link"));
+
+        List<Long> streamed = given().
+                queryParam("postcode", "NE45SA").
+                queryParam("stream", true).
+        when().
+                get().
+        then().
+                statusCode(200).
+                extract().jsonPath().getList("id", Long.class);
+        assertEquals(3, streamed.size());
+        assertEquals(ids, streamed.subList(1, 3));
+
+        given().
+                queryParam("hotelName", "PAGED0").
+        when().
+                get().
+        then().
+                statusCode(200).
+                body("size()", is(1)).
+                body("[0].id", is(ids.get(0).intValue()));
+
+        given().
+                queryParam("limit", 0).
+        when().
+                get().
+        then().
+                statusCode(400);
+
+        for (Long id : ids) {
+            when().
+                    delete(id.toString()).
+            then().
+                    statusCode(204);
+        }
+    }
+
+    @Test
+    @Order(7)
+    public void testHotelLookupsAreCached() {
+        String region = Hotel.class.getName();
+        Response list = when().
+                get().
+        then().
+                statusCode(200).
+                extract().response();
+        long id = list.jsonPath().getLong("[0].id");
+        String phoneNumber = list.jsonPath().getString("[0].phoneNumber");
+
+        long hitsBefore = entityCacheStats().getLong("'" + region + "'.hits");
+        long naturalIdHitsBefore = entityCacheStats().getLong("naturalId.hits");
+        for (int i = 0; i < 2; i++) {
+            when().
+                    get("id/" + id).
+            then().
+                    statusCode(200).
+                    body("phoneNumber", is(phoneNumber));
+            when().
+                    get("phoneNumber/" + phoneNumber).
+            then().
+                    statusCode(200).
+                    body("id", is((int) id));
+        }
+
+        JsonPath stats = entityCacheStats();
+        assertTrue(stats.getLong("'" + region + "'.hits") >= hitsBefore + 2, stats.prettify());
+        assertTrue(stats.getLong("naturalId.hits") > naturalIdHitsBefore, stats.prettify());
+        assertTrue(stats.getDouble("'" + region + "'.hitRatio") > 0, stats.prettify());
+    }
+
+    private static JsonPath entityCacheStats() {
+        return given().
+                basePath("/").
+        when().
+                get("admin/entityCache/stats").
+        then().
+                statusCode(200).
+                extract().jsonPath();
+    }
+
+    @Test
+    @Order(8)
     public void testCanDeleteHotel() {
         Response response = when().
                 get().
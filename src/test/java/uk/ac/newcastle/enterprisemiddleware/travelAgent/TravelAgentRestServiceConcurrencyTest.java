@@ -0,0 +1,126 @@
+package uk.ac.newcastle.enterprisemiddleware.travelAgent;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
+import uk.ac.newcastle.enterprisemiddleware.hotel.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.util.UpstreamStubResource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.when;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * <p>Sends {@value #BOOKINGS} travel agent bookings from {@value #CLIENT_THREADS} client threads at once and checks
+ * that no booking ends up with a customer created for another request.</p>
+ *
+ * <p>Excluded from the default build; run it with {@code mvn test -Pload-test}.</p>
+ */
+@QuarkusTest
+@Tag("load")
+@QuarkusTestResource(H2DatabaseTestResource.class)
+@QuarkusTestResource(UpstreamStubResource.class)
+public class TravelAgentRestServiceConcurrencyTest {
+
+    private static final int BOOKINGS = 200;
+
+    private static final int CLIENT_THREADS = 100;
+
+    @Test
+    public void testConcurrentBookingsDoNotShareCustomerIds() throws Exception {
+        Hotel hotel = new Hotel();
+        hotel.setHotelName("Stress Inn");
+        hotel.setPhoneNumber("(0783)999-0001");
+        hotel.setPostcode("NE17RU");
+        Long hotelId = given().
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("/hotels").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        List<Future<TravelAgentBooking>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < BOOKINGS; i++) {
+                Map<String, Object> travelAgent = travelAgent(i, hotelId);
+                results.add(clients.submit(() -> given().
+                        contentType(ContentType.JSON).
+                        body(travelAgent).
+                when().
+                        post("/travelAgent").
+                then().
+                        statusCode(201).
+                        extract().as(TravelAgentBooking.class)));
+            }
+
+            String flightApi = ConfigProvider.getConfig().getValue("quarkus.rest-client.flight-api.url", String.class);
+            String taxiApi = ConfigProvider.getConfig().getValue("quarkus.rest-client.taxi-api.url", String.class);
+            Set<Long> hotelCustomerIds = new HashSet<>();
+            for (int i = 0; i < BOOKINGS; i++) {
+                TravelAgentBooking booking = results.get(i).get();
+                String email = email(i);
+
+                hotelCustomerIds.add(booking.getHotelCustomerId());
+                Customer customer = when().
+                        get("/customers/id/" + booking.getHotelCustomerId()).
+                then().
+                        statusCode(200).
+                        extract().as(Customer.class);
+                assertEquals(email, customer.getEmail(), "Hotel customer belongs to another request");
+
+                assertEquals(when().get(flightApi + "contacts/email/" + email).jsonPath().getLong("id"),
+                        booking.getFlightCustomerId(), "Flight customer belongs to another request");
+                assertEquals(when().get(taxiApi + "customers/email/" + email).jsonPath().getLong("id"),
+                        booking.getTaxiCustomerId(), "Taxi customer belongs to another request");
+            }
+            assertEquals(BOOKINGS, hotelCustomerIds.size());
+
+            when().
+                    delete("/hotels/" + hotelId).
+            then().
+                    statusCode(204);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private static Map<String, Object> travelAgent(int i, Long hotelId) {
+        String date = LocalDate.now().plusDays(i + 1).toString();
+        Map<String, Object> travelAgent = new HashMap<>();
+        travelAgent.put("firstName", "Stress");
+        travelAgent.put("lastName", "Tester");
+        travelAgent.put("email", email(i));
+        travelAgent.put("phoneNumber", "(0783)344-5434");
+        travelAgent.put("birthDate", "1990-01-01");
+        travelAgent.put("hotelId", hotelId);
+        travelAgent.put("hotelBookingDate", date);
+        travelAgent.put("flightId", 1L);
+        travelAgent.put("flightBookingDate", date);
+        travelAgent.put("taxiId", 1L);
+        travelAgent.put("taxiBookingDate", date);
+        return travelAgent;
+    }
+
+    private static String email(int i) {
+        return "traveller" + i + "@stress.test";
+    }
+}
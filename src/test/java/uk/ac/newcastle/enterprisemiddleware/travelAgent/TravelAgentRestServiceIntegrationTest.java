@@ -0,0 +1,663 @@
+package uk.ac.newcastle.enterprisemiddleware.travelAgent;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.http.TestHTTPEndpoint;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import org.junit.jupiter.api.*;
+import uk.ac.newcastle.enterprisemiddleware.util.IdempotencyStore;
+import uk.ac.newcastle.enterprisemiddleware.util.KeysetPage;
+import uk.ac.newcastle.enterprisemiddleware.util.UpstreamGuard;
+import uk.ac.newcastle.enterprisemiddleware.util.UpstreamGuards;
+import uk.ac.newcastle.enterprisemiddleware.util.UpstreamStubResource;
+import uk.ac.newcastle.enterprisemiddleware.util.UpstreamUnavailableException;
+
+import javax.inject.Inject;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.RestAssured.when;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@QuarkusTest
+@TestHTTPEndpoint(TravelAgentRestService.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@QuarkusTestResource(H2DatabaseTestResource.class)
+@QuarkusTestResource(UpstreamStubResource.class)
+public class TravelAgentRestServiceIntegrationTest {
+
+    @Inject
+    UpstreamGuards upstreamGuards;
+
+    private static final String EMAIL = "repeat@travel.test";
+
+    private static Long hotelId;
+
+    @Test
+    @Order(1)
+    public void testCanCreateHotel() {
+        Map<String, Object> hotel = new HashMap<>();
+        hotel.put("hotelName", "Repeat Inn");
+        hotel.put("phoneNumber", "(0783)999-0004");
+        hotel.put("postcode", "NE17RU");
+        hotelId = given().
+                basePath("/").
+                contentType(ContentType.JSON).
+                body(hotel).
+        when().
+                post("hotels").
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+    }
+
+    @Test
+    @Order(2)
+    public void testRepeatCustomerSkipsRemoteLookups() {
+        long flightHits = cacheStat("flight.hits");
+        long taxiHits = cacheStat("taxi.hits");
+
+        TravelAgentBooking first = book(1);
+        TravelAgentBooking second = book(2);
+
+        assertEquals(first.getFlightCustomerId(), second.getFlightCustomerId());
+        assertEquals(first.getTaxiCustomerId(), second.getTaxiCustomerId());
+        assertEquals(1, UpstreamStubResource.lookups("flight", EMAIL), "Flight customer looked up remotely again");
+        assertEquals(1, UpstreamStubResource.lookups("taxi", EMAIL), "Taxi customer looked up remotely again");
+        assertEquals(flightHits + 1, cacheStat("flight.hits"));
+        assertEquals(taxiHits + 1, cacheStat("taxi.hits"));
+    }
+
+    @Test
+    @Order(3)
+    public void testFailedLegIsCompensatedInBackground() throws InterruptedException {
+        UpstreamStubResource.failCancellations("flight", 1);
+        Map<String, Object> travelAgent = travelAgent(3);
+        travelAgent.put("taxiId", UpstreamStubResource.REJECTED_ID);
+
+        given().
+                contentType(ContentType.JSON).
+                body(travelAgent).
+        when().
+                post().
+        then().
+                statusCode(500);
+
+        TravelAgentSaga saga = awaitCompensatedSaga();
+        assertEquals(TravelAgentSaga.StepStatus.CANCELLED, saga.getHotelStep());
+        assertEquals(TravelAgentSaga.StepStatus.CANCELLED, saga.getFlightStep());
+        assertEquals(TravelAgentSaga.StepStatus.NOT_BOOKED, saga.getTaxiStep());
+        assertEquals(1, saga.getAttempts(), "Failed flight cancellation was not retried once");
+        assertTrue(UpstreamStubResource.cancelled("flight").contains(saga.getFlightBookingId()));
+
+        // the hotel booking was cancelled straight away, so the same date can be booked again
+        book(3);
+    }
+
+    @Test
+    @Order(4)
+    public void testAsyncBookingIsAcceptedAndConfirmed() throws InterruptedException {
+        TravelAgentBooking pending = given().
+                header("Prefer", "respond-async").
+                contentType(ContentType.JSON).
+                body(travelAgent(4)).
+        when().
+                post().
+        then().
+                statusCode(202).
+                header("Location", matchesPattern(".*/travelAgent/[0-9]+/status")).
+                extract().as(TravelAgentBooking.class);
+        assertEquals(TravelAgentBooking.Status.PENDING, pending.getStatus());
+
+        TravelAgentBooking confirmed = awaitStatus(pending.getId(), TravelAgentBooking.Status.CONFIRMED);
+        assertNotNull(confirmed.getHotelBookingId());
+        assertNotNull(confirmed.getFlightBookingId());
+        assertNotNull(confirmed.getTaxiBookingId());
+    }
+
+    @Test
+    @Order(5)
+    public void testAsyncBookingRecordsFailure() throws InterruptedException {
+        Map<String, Object> travelAgent = travelAgent(5);
+        travelAgent.put("taxiId", UpstreamStubResource.REJECTED_ID);
+        long id = given().
+                header("Prefer", "respond-async").
+                contentType(ContentType.JSON).
+                body(travelAgent).
+        when().
+                post().
+        then().
+                statusCode(202).
+                extract().jsonPath().getLong("id");
+
+        TravelAgentBooking failed = awaitStatus(id, TravelAgentBooking.Status.FAILED);
+        assertNotNull(failed.getFailureReason());
+    }
+
+    @Test
+    @Order(6)
+    public void testAsyncBookingRejectsUnknownHotelStraightAway() {
+        Map<String, Object> travelAgent = travelAgent(6);
+        travelAgent.put("hotelId", Long.MAX_VALUE);
+        given().
+                header("Prefer", "respond-async").
+                contentType(ContentType.JSON).
+                body(travelAgent).
+        when().
+                post().
+        then().
+                statusCode(404);
+    }
+
+    @Test
+    @Order(7)
+    public void testRetriesWithIdempotencyKeyAreReplayed() throws Exception {
+        Map<String, Object> travelAgent = travelAgent(7);
+        travelAgent.put("email", "idempotent@travel.test");
+
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Long>> concurrent = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                concurrent.add(clients.submit(() -> bookWithKey("retry-7", travelAgent)));
+            }
+            long id = concurrent.get(0).get();
+            assertEquals(id, concurrent.get(1).get());
+            assertEquals(id, bookWithKey("retry-7", travelAgent));
+        } finally {
+            clients.shutdownNow();
+        }
+
+        assertEquals(1, UpstreamStubResource.lookups("flight", "idempotent@travel.test"), "Booking was made again");
+        assertEquals(1, UpstreamStubResource.lookups("taxi", "idempotent@travel.test"), "Booking was made again");
+
+        travelAgent.put("taxiBookingDate", LocalDate.now().plusDays(8).toString());
+        given().
+                header(IdempotencyStore.HEADER, "retry-7").
+                contentType(ContentType.JSON).
+                body(travelAgent).
+        when().
+                post().
+        then().
+                statusCode(409);
+    }
+
+    @Test
+    @Order(8)
+    public void testSlowUpstreamCallTimesOut() throws InterruptedException {
+        long timeouts = upstreamStat("'taxi-api'.timeouts");
+        UpstreamStubResource.delay("taxi", 1500);
+        try {
+            given().
+                    contentType(ContentType.JSON).
+                    body(travelAgent(8)).
+            when().
+                    post().
+            then().
+                    statusCode(500);
+        } finally {
+            UpstreamStubResource.delay("taxi", 0);
+        }
+        assertTrue(upstreamStat("'taxi-api'.timeouts") > timeouts, "Slow taxi call was not counted as a timeout");
+
+        // let the circuit breaker close again if the timeout opened it
+        Thread.sleep(1100);
+        book(8);
+    }
+
+    @Test
+    @Order(9)
+    public void testUnhealthyUpstreamFailsFastUntilItRecovers() throws InterruptedException {
+        UpstreamStubResource.failRequests("taxi", true);
+        try {
+            int attempts = 0;
+            int status;
+            int requests;
+            do {
+                assertTrue(++attempts <= 5, "Taxi circuit breaker did not open");
+                requests = UpstreamStubResource.requests("taxi");
+                status = given().
+                        contentType(ContentType.JSON).
+                        body(travelAgent(9)).
+                when().
+                        post().
+                then().
+                        extract().statusCode();
+            } while (status == 500);
+            assertEquals(503, status);
+            assertEquals(requests, UpstreamStubResource.requests("taxi"), "Open circuit still called the taxi API");
+            assertEquals("OPEN", given().
+                    basePath("upstreams").
+            when().
+                    get("stats").
+            then().
+                    statusCode(200).
+                    extract().jsonPath().getString("'taxi-api'.state"));
+            assertTrue(upstreamStat("'taxi-api'.circuitOpenRejections") > 0);
+        } finally {
+            UpstreamStubResource.failRequests("taxi", false);
+        }
+
+        Thread.sleep(1100);
+        book(9);
+        assertEquals("CLOSED", given().
+                basePath("upstreams").
+        when().
+                get("stats").
+        then().
+                statusCode(200).
+                extract().jsonPath().getString("'taxi-api'.state"));
+    }
+
+    @Test
+    @Order(10)
+    public void testBulkheadBoundsConcurrentAndWaitingCalls() throws Exception {
+        UpstreamGuard guard = upstreamGuards.get("bulkhead-test");
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = executor.submit(() -> guard.call(() -> {
+                running.countDown();
+                return release.await(5, TimeUnit.SECONDS);
+            }, e -> UpstreamGuard.Outcome.FAILURE));
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+
+            // the second call waits for the slot and gives up after max-wait, a third one is refused straight away
+            Future<Object> second = executor.submit(() -> guard.call(() -> true, e -> UpstreamGuard.Outcome.FAILURE));
+            while (((Number) guard.stats().get("waiting")).intValue() == 0 && !second.isDone()) {
+                Thread.sleep(10);
+            }
+            assertThrows(UpstreamUnavailableException.class,
+                    () -> guard.call(() -> true, e -> UpstreamGuard.Outcome.FAILURE));
+            ExecutionException timedOut = assertThrows(ExecutionException.class, second::get);
+            assertTrue(timedOut.getCause() instanceof UpstreamUnavailableException);
+
+            release.countDown();
+            assertEquals(true, first.get());
+            assertEquals(true, guard.call(() -> true, e -> UpstreamGuard.Outcome.FAILURE));
+            assertEquals(2L, guard.stats().get("bulkheadRejections"));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @Order(11)
+    public void testBookingsAreFilteredByCustomerAndPaged() {
+        TravelAgentBooking latest = book(11);
+
+        TravelAgentBooking[] all = given().
+                queryParam("hotelCustomerId", latest.getHotelCustomerId()).
+                queryParam("flightCustomerId", latest.getFlightCustomerId()).
+        when().
+                get().
+        then().
+                statusCode(200).
+                extract().as(TravelAgentBooking[].class);
+        assertTrue(all.length >= 3, "Expected the earlier bookings of the same customer");
+        for (int i = 0; i < all.length; i++) {
+            assertEquals(latest.getHotelCustomerId(), all[i].getHotelCustomerId());
+            assertEquals(latest.getFlightCustomerId(), all[i].getFlightCustomerId());
+            assertTrue(i == 0 || all[i - 1].getId() < all[i].getId(), "Bookings are not sorted by id");
+        }
+        assertEquals(latest.getId(), all[all.length - 1].getId());
+
+        TravelAgentBooking[] page = given().
+                queryParam("taxiCustomerId", latest.getTaxiCustomerId()).
+                queryParam("offset", 1).
+                queryParam("limit", 1).
+        when().
+                get().
+        then().
+                statusCode(200).
+                extract().as(TravelAgentBooking[].class);
+        assertEquals(1, page.length);
+        assertEquals(all[1].getId(), page[0].getId());
+
+        given().
+                queryParam("hotelCustomerId", -1).
+        when().
+                get().
+        then().
+                statusCode(200).
+                body("size()", is(0));
+
+        given().
+                queryParam("offset", -1).
+        when().
+                get().
+        then().
+                statusCode(400);
+    }
+
+    @Test
+    @Order(12)
+    public void testBookingsArePagedByCursorAndStreamed() {
+        TravelAgentBooking latest = book(12);
+
+        List<Long> all = given().
+                queryParam("hotelCustomerId", latest.getHotelCustomerId()).
+        when().
+                get().
+        then().
+                statusCode(200).
+                extract().jsonPath().getList("id", Long.class);
+        assertTrue(all.size() >= 2, "Expected the earlier bookings of the same customer");
+
+        List<Long> paged = new ArrayList<>();
+        Long after = 0L;
+        while (after != null) {
+            Response page = given().
+                    queryParam("hotelCustomerId", latest.getHotelCustomerId()).
+                    queryParam("after", after).
+                    queryParam("limit", 1).
+            when().
+                    get().
+            then().
+                    statusCode(200).
+                    extract().response();
+            paged.addAll(page.jsonPath().getList("id", Long.class));
+            assertTrue(paged.size() <= all.size(), "Paging does not end");
+            String next = page.header(KeysetPage.NEXT_CURSOR_HEADER);
+            after = next == null ? null : Long.valueOf(next);
+        }
+        assertEquals(all, paged);
+
+        List<Long> streamed = given().
+                queryParam("hotelCustomerId", latest.getHotelCustomerId()).
+                queryParam("stream", true).
+        when().
+                get().
+        then().
+                statusCode(200).
+                extract().jsonPath().getList("id", Long.class);
+        assertEquals(all, streamed);
+
+        given().
+                queryParam("after", -1).
+        when().
+                get().
+        then().
+                statusCode(400);
+    }
+
+    @Test
+    @Order(13)
+    public void testNoConnectionIsHeldAcrossRemoteCalls() {
+        dataSourceStats();
+        UpstreamStubResource.delay("taxi", 500);
+        long began = System.currentTimeMillis();
+        try {
+            book(13);
+        } finally {
+            UpstreamStubResource.delay("taxi", 0);
+        }
+        assertTrue(System.currentTimeMillis() - began >= 500, "Taxi booking was not delayed");
+
+        Response stats = dataSourceStats();
+        assertTrue(stats.jsonPath().getLong("holdTimeMillis.count") >= 3, "Expected a hold per local transaction");
+        double longest = stats.jsonPath().getDouble("holdTimeMillis.max");
+        assertTrue(longest < 500, "A connection was held across the taxi booking for " + longest + "ms");
+    }
+
+    @Test
+    @Order(14)
+    public void testMetricsAreScraped() {
+        given().
+                contentType(ContentType.JSON).
+                body(travelAgent(13)).
+        when().
+                post().
+        then().
+                statusCode(409);
+
+        String metrics = given().
+                basePath("/").
+        when().
+                get("q/metrics").
+        then().
+                statusCode(200).
+                extract().asString();
+
+        assertTrue(metrics.contains("http_server_requests_seconds_count{method=\"POST\",outcome=\"SUCCESS\",status=\"201\",uri=\"/travelAgent\""),
+                "No timer of the travel agent endpoint");
+        assertTrue(metrics.contains("app_service_seconds_count{class=\"uk.ac.newcastle.enterprisemiddleware.booking.BookingService\",exception=\"none\",method=\"create\""),
+                "No timer of the service methods");
+        assertTrue(metrics.contains("app_repository_seconds_count{class=\"uk.ac.newcastle.enterprisemiddleware.booking.BookingRepository\",exception=\"none\",method=\"create\""),
+                "No timer of the repository methods");
+        assertTrue(metrics.contains("upstream_calls_seconds_count{api=\"taxi-api\",method=\"createTaxiGuestBooking\",outcome=\"success\""),
+                "No timer of the upstream calls");
+        assertTrue(metrics.contains("upstream_errors_total{api=\"taxi-api\""), "No counter of the failed upstream calls");
+        assertTrue(metrics.contains("booking_conflicts_total{check=\"validation\""), "No counter of booking conflicts");
+        assertTrue(metrics.contains("datasource_connection_hold_seconds{quantile=\"0.99\""), "No percentiles of the hold times");
+        assertTrue(metrics.contains("agroal_active_count"), "No connection pool gauges");
+        assertTrue(metrics.contains("hibernate_sessions_open_total"), "No Hibernate statistics");
+    }
+
+    @Test
+    @Order(15)
+    public void testBookingIsTracedStepByStep() throws InterruptedException {
+        String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        given().
+                header("traceparent", "00-" + traceId + "-00f067aa0ba902b7-01").
+                contentType(ContentType.JSON).
+                body(travelAgent(15)).
+        when().
+                post().
+        then().
+                statusCode(201);
+
+        List<Map<String, Object>> spans = awaitTrace(traceId);
+        Map<String, Object> book = span(spans, "travelAgent.book");
+        for (String step : new String[]{"travelAgent.reserveHotel", "travelAgent.flightLeg", "travelAgent.taxiLeg",
+                "travelAgent.recordLegs", "travelAgent.finalise"}) {
+            assertEquals(book.get("spanId"), span(spans, step).get("parentSpanId"), step + " is not a step of the booking");
+        }
+        Object flightLeg = span(spans, "travelAgent.flightLeg").get("spanId");
+        assertTrue(spans.stream().anyMatch(span -> "CLIENT".equals(span.get("kind")) && flightLeg.equals(span.get("parentSpanId"))),
+                "The flight API call was not traced within the flight leg");
+        assertTrue(spans.stream().anyMatch(span -> "h2".equals(((Map<?, ?>) span.get("attributes")).get("db.system"))),
+                "No JDBC statement was traced");
+    }
+
+    @Test
+    @Order(16)
+    public void testDeleteCancelsRemoteBookingsWithoutHoldingAConnection() throws InterruptedException {
+        TravelAgentBooking travelAgentBooking = book(16);
+
+        dataSourceStats();
+        UpstreamStubResource.delay("taxi", 500);
+        UpstreamStubResource.failCancellations("flight", 1);
+        try {
+            when().
+                    delete(travelAgentBooking.getId().toString()).
+            then().
+                    statusCode(204);
+
+            // the hotel booking is gone as soon as the delete returns, so the same date can be booked again
+            when().
+                    get(travelAgentBooking.getId() + "/status").
+            then().
+                    statusCode(404);
+            book(16);
+
+            // the flight cancellation that failed after the taxi one succeeded is retried, not lost
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!(UpstreamStubResource.cancelled("taxi").contains(travelAgentBooking.getTaxiBookingId())
+                    && UpstreamStubResource.cancelled("flight").contains(travelAgentBooking.getFlightBookingId()))
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+        } finally {
+            UpstreamStubResource.delay("taxi", 0);
+        }
+        assertTrue(UpstreamStubResource.cancelled("taxi").contains(travelAgentBooking.getTaxiBookingId()),
+                "Taxi booking was not cancelled");
+        assertTrue(UpstreamStubResource.cancelled("flight").contains(travelAgentBooking.getFlightBookingId()),
+                "Flight booking was not cancelled");
+
+        double longest = dataSourceStats().jsonPath().getDouble("holdTimeMillis.max");
+        assertTrue(longest < 500, "A connection was held across the taxi cancellation for " + longest + "ms");
+
+        when().
+                delete(travelAgentBooking.getId().toString()).
+        then().
+                statusCode(404);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> awaitTrace(String traceId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<Map<String, Object>> spans = new ArrayList<>();
+        while (System.currentTimeMillis() < deadline) {
+            Response response = given().
+                    basePath("admin/traces").
+            when().
+                    get(traceId).
+            then().
+                    extract().response();
+            if (response.statusCode() == 200) {
+                spans = response.jsonPath().getList("$");
+                if (spans.stream().anyMatch(span -> "travelAgent.finalise".equals(span.get("name")))) {
+                    break;
+                }
+            }
+            Thread.sleep(100);
+        }
+        return spans;
+    }
+
+    private static Map<String, Object> span(List<Map<String, Object>> spans, String name) {
+        return spans.stream()
+                .filter(span -> name.equals(span.get("name")))
+                .findFirst()
+                .orElseGet(() -> fail("No " + name + " span in " + spans));
+    }
+
+    private static Response dataSourceStats() {
+        return given().
+                basePath("admin/dataSource").
+        when().
+                get("stats").
+        then().
+                statusCode(200).
+                extract().response();
+    }
+
+    private static long bookWithKey(String key, Map<String, Object> travelAgent) {
+        return given().
+                header(IdempotencyStore.HEADER, key).
+                contentType(ContentType.JSON).
+                body(travelAgent).
+        when().
+                post().
+        then().
+                statusCode(201).
+                extract().jsonPath().getLong("id");
+    }
+
+    private static TravelAgentBooking awaitStatus(long id, TravelAgentBooking.Status status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        TravelAgentBooking travelAgentBooking;
+        do {
+            travelAgentBooking = when().
+                    get(id + "/status").
+            then().
+                    statusCode(200).
+                    extract().as(TravelAgentBooking.class);
+            if (travelAgentBooking.getStatus() != TravelAgentBooking.Status.PENDING) {
+                break;
+            }
+            Thread.sleep(100);
+        } while (System.currentTimeMillis() < deadline);
+        assertEquals(status, travelAgentBooking.getStatus());
+        return travelAgentBooking;
+    }
+
+    private static TravelAgentSaga awaitCompensatedSaga() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            TravelAgentSaga[] sagas = given().
+                    queryParam("status", "COMPENSATED").
+            when().
+                    get("sagas").
+            then().
+                    statusCode(200).
+                    extract().as(TravelAgentSaga[].class);
+            for (TravelAgentSaga saga : sagas) {
+                if (saga.getTaxiStep() == TravelAgentSaga.StepStatus.NOT_BOOKED) {
+                    return saga;
+                }
+            }
+            Thread.sleep(100);
+        }
+        return fail("Failed travel agent booking was not compensated");
+    }
+
+    private static TravelAgentBooking book(int days) {
+        return given().
+                contentType(ContentType.JSON).
+                body(travelAgent(days)).
+        when().
+                post().
+        then().
+                statusCode(201).
+                extract().as(TravelAgentBooking.class);
+    }
+
+    private static Map<String, Object> travelAgent(int days) {
+        String date = LocalDate.now().plusDays(days).toString();
+        Map<String, Object> travelAgent = new HashMap<>();
+        travelAgent.put("firstName", "Repeat");
+        travelAgent.put("lastName", "Tester");
+        travelAgent.put("email", EMAIL);
+        travelAgent.put("phoneNumber", "(0783)344-5434");
+        travelAgent.put("birthDate", "1990-01-01");
+        travelAgent.put("hotelId", hotelId);
+        travelAgent.put("hotelBookingDate", date);
+        travelAgent.put("flightId", 1L);
+        travelAgent.put("flightBookingDate", date);
+        travelAgent.put("taxiId", 1L);
+        travelAgent.put("taxiBookingDate", date);
+        return travelAgent;
+    }
+
+    private static long cacheStat(String path) {
+        return when().
+                get("customerCache/stats").
+        then().
+                statusCode(200).
+                extract().jsonPath().getLong(path);
+    }
+
+    private static long upstreamStat(String path) {
+        return given().
+                basePath("upstreams").
+        when().
+                get("stats").
+        then().
+                statusCode(200).
+                extract().jsonPath().getLong(path);
+    }
+}
@@ -0,0 +1,94 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.UserTransaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * <p>Measures how many Customer inserts per second the id generator allows with 1, 8 and 32 concurrent writers, each
+ * insert running in its own transaction.</p>
+ *
+ * <p>Excluded from the default build; run it with
+ * {@code mvn test -Pbenchmark -Dtest=IdGenerationBenchmarkTest}.</p>
+ */
+@QuarkusTest
+@Tag("benchmark")
+@QuarkusTestResource(H2DatabaseTestResource.class)
+public class IdGenerationBenchmarkTest {
+
+    private static final int[] WRITERS = {1, 8, 32};
+
+    private static final int INSERTS = 4000;
+
+    private static final int WARMUP_INSERTS = 1000;
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    UserTransaction transaction;
+
+    @Test
+    public void benchmarkConcurrentInserts() throws Exception {
+        run(8, WARMUP_INSERTS);
+
+        for (int writers : WRITERS) {
+            long start = System.nanoTime();
+            run(writers, INSERTS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("IdGenerationBenchmark writers=%d inserts=%d time=%.2fs throughput=%.0f inserts/s%n",
+                    writers, INSERTS, seconds, INSERTS / seconds);
+        }
+    }
+
+    private void run(int writers, int inserts) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int share = inserts / writers + (w < inserts % writers ? 1 : 0);
+                results.add(pool.submit(() -> insert(share)));
+            }
+            int inserted = 0;
+            for (Future<Integer> result : results) {
+                inserted += result.get();
+            }
+            assertEquals(inserts, inserted);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private int insert(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            int n = SEQUENCE.incrementAndGet();
+            transaction.begin();
+            try {
+                em.persist(new Customer("Bench", "Writer", "writer" + n + "@bench.test",
+                        String.format("(0783)%03d-%04d", n / 10000 % 1000, n % 10000)));
+                transaction.commit();
+            } catch (Exception e) {
+                transaction.rollback();
+                throw e;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,326 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * <p>Drives a weighted mix of HTTP operations against the application from a number of concurrent clients, and
+ * records the latency of each operation in an HdrHistogram.</p>
+ *
+ * <p>Each client sends its next request as soon as the previous one has been answered (a closed loop), picking the
+ * operation at random by weight. Nothing is recorded during the warm-up; after it, every request counts towards its
+ * operation's throughput and latency percentiles, and every answer with an unexpected status, or no answer, counts as
+ * an error.</p>
+ *
+ * <p>The report is written as JSON, one entry per operation with latencies in milliseconds, so the reports of two
+ * builds can be compared; see {@link #compare}.</p>
+ *
+ * @author Howie
+ */
+public class LoadTestHarness {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /** Highest latency that can be recorded, in microseconds; anything slower is recorded as this. */
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private final URI baseUri;
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration duration;
+    private final HttpClient client;
+    private final List<Operation> operations = new ArrayList<>();
+    private int totalWeight;
+
+    public LoadTestHarness(URI baseUri, int concurrency, Duration warmup, Duration duration) {
+        this.baseUri = baseUri;
+        this.concurrency = concurrency;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newFixedThreadPool(Math.max(2, concurrency / 4), runnable -> {
+                    Thread thread = new Thread(runnable, "load-test-http");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * <p>Adds an operation to the mix; operations with a weight of 0 are left out.</p>
+     *
+     * @param name The name of the operation in the report, e.g. "POST /customers"
+     * @param weight How often the operation is picked relative to the others
+     * @param expectedStatus The status of a successful answer
+     * @param method The HTTP method
+     * @param path Picks the path of a request, relative to the base URI
+     * @param body Picks the body of a request, sent as JSON; or returns null to send none
+     * @return This LoadTestHarness
+     */
+    public LoadTestHarness add(String name, int weight, int expectedStatus, String method,
+                               Function<Random, String> path, Function<Random, Object> body) {
+        if (weight > 0) {
+            operations.add(new Operation(name, weight, expectedStatus,
+                    random -> request(method, path.apply(random), body.apply(random))));
+            totalWeight += weight;
+        }
+        return this;
+    }
+
+    /**
+     * <p>Sends a request straight away, e.g. to set up the data the operations need.</p>
+     *
+     * @param method The HTTP method
+     * @param path The path, relative to the base URI
+     * @param body The body, sent as JSON; or null
+     * @return The answer, as JSON
+     * @throws IOException If the request fails or is answered with an error status
+     */
+    public JsonNode send(String method, String path, Object body) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request(method, path, body), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            throw new IOException("Setup request failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response.body().isEmpty() ? MAPPER.nullNode() : MAPPER.readTree(response.body());
+    }
+
+    /**
+     * <p>Runs the warm-up and then the measured load.</p>
+     *
+     * @return The report of the measured load
+     */
+    public ObjectNode run() throws InterruptedException {
+        if (operations.isEmpty()) {
+            throw new IllegalStateException("No operations to run");
+        }
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        AtomicInteger seeds = new AtomicInteger();
+
+        List<Future<Map<String, Result>>> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            workers.add(clients.submit(() -> work(new Random(seeds.incrementAndGet()), measureFrom, end)));
+        }
+
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (Operation operation : operations) {
+            results.put(operation.name, new Result());
+        }
+        try {
+            for (Future<Map<String, Result>> worker : workers) {
+                worker.get().forEach((name, result) -> results.get(name).add(result));
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load test client failed", e.getCause());
+        } finally {
+            clients.shutdownNow();
+        }
+        return report(results);
+    }
+
+    private Map<String, Result> work(Random random, long measureFrom, long end) {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (Operation operation : operations) {
+            results.put(operation.name, new Result());
+        }
+        long now;
+        while ((now = System.nanoTime()) < end) {
+            Operation operation = pick(random);
+            HttpRequest request = operation.request.apply(random);
+            boolean ok;
+            try {
+                ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == operation.expectedStatus;
+            } catch (IOException e) {
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (now >= measureFrom) {
+                results.get(operation.name).record((System.nanoTime() - now) / 1000, ok);
+            }
+        }
+        return results;
+    }
+
+    private Operation pick(Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Operation operation : operations) {
+            ticket -= operation.weight;
+            if (ticket < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private HttpRequest request(String method, String path, Object body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(baseUri.resolve(path)).timeout(Duration.ofMinutes(1));
+        if (body == null) {
+            return request.method(method, HttpRequest.BodyPublishers.noBody()).build();
+        }
+        try {
+            return request.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not serialize request body", e);
+        }
+    }
+
+    private ObjectNode report(Map<String, Result> results) {
+        double seconds = duration.toMillis() / 1000.0;
+        ObjectNode report = MAPPER.createObjectNode();
+        report.put("finishedAt", Instant.now().toString());
+        report.put("baseUri", baseUri.toString());
+        report.put("concurrency", concurrency);
+        report.put("warmupSeconds", warmup.toMillis() / 1000.0);
+        report.put("durationSeconds", seconds);
+
+        Result total = new Result();
+        ObjectNode byOperation = report.putObject("operations");
+        results.forEach((name, result) -> {
+            total.add(result);
+            byOperation.set(name, result.toJson(seconds));
+        });
+        report.set("total", total.toJson(seconds));
+        return report;
+    }
+
+    /**
+     * <p>Writes a report to a file.</p>
+     *
+     * @param report The report returned by {@link #run}
+     * @param file The file to write it to
+     */
+    public static void write(ObjectNode report, Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        MAPPER.writeValue(file.toFile(), report);
+    }
+
+    /**
+     * <p>Returns a table of throughput and latency percentiles, one row per operation.</p>
+     *
+     * @param report The report returned by {@link #run}
+     * @return The table
+     */
+    public static String summary(JsonNode report) {
+        StringBuilder table = new StringBuilder(String.format("%-32s %9s %7s %9s %9s %9s %9s %9s%n",
+                "operation", "req/s", "errors", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms"));
+        report.path("operations").fields().forEachRemaining(entry -> row(table, entry.getKey(), entry.getValue()));
+        row(table, "total", report.path("total"));
+        return table.toString();
+    }
+
+    private static void row(StringBuilder table, String name, JsonNode result) {
+        table.append(String.format("%-32s %9.1f %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n", name,
+                result.path("throughput").asDouble(), result.path("errors").asLong(), result.path("p50").asDouble(),
+                result.path("p95").asDouble(), result.path("p99").asDouble(), result.path("p999").asDouble(),
+                result.path("max").asDouble()));
+    }
+
+    /**
+     * <p>Returns how throughput and p99 latency of each operation changed from an earlier report.</p>
+     *
+     * @param baseline The earlier report
+     * @param report The new report
+     * @return A table of the changes, in percent
+     */
+    public static String compare(JsonNode baseline, JsonNode report) {
+        StringBuilder table = new StringBuilder(String.format("%-32s %12s %12s%n", "operation", "req/s", "p99"));
+        report.path("operations").fields().forEachRemaining(entry -> {
+            JsonNode before = baseline.path("operations").path(entry.getKey());
+            if (!before.isMissingNode()) {
+                table.append(String.format("%-32s %+11.1f%% %+11.1f%%%n", entry.getKey(),
+                        change(before.path("throughput"), entry.getValue().path("throughput")),
+                        change(before.path("p99"), entry.getValue().path("p99"))));
+            }
+        });
+        return table.toString();
+    }
+
+    private static double change(JsonNode before, JsonNode after) {
+        return before.asDouble() == 0 ? 0 : (after.asDouble() - before.asDouble()) * 100 / before.asDouble();
+    }
+
+    private static final class Operation {
+
+        final String name;
+        final int weight;
+        final int expectedStatus;
+        final Function<Random, HttpRequest> request;
+
+        Operation(String name, int weight, int expectedStatus, Function<Random, HttpRequest> request) {
+            this.name = name;
+            this.weight = weight;
+            this.expectedStatus = expectedStatus;
+            this.request = request;
+        }
+    }
+
+    /**
+     * <p>The latencies and errors of one operation; used by one client at a time, then merged.</p>
+     */
+    private static final class Result {
+
+        final Histogram latencies = new Histogram(MAX_LATENCY_MICROS, 3);
+        long errors;
+
+        void record(long micros, boolean ok) {
+            latencies.recordValue(Math.min(Math.max(micros, 0), MAX_LATENCY_MICROS));
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void add(Result other) {
+            latencies.add(other.latencies);
+            errors += other.errors;
+        }
+
+        ObjectNode toJson(double seconds) {
+            ObjectNode json = MAPPER.createObjectNode();
+            json.put("requests", latencies.getTotalCount());
+            json.put("errors", errors);
+            json.put("throughput", latencies.getTotalCount() / seconds);
+            json.put("mean", latencies.getMean() / 1000);
+            json.put("p50", latencies.getValueAtPercentile(50) / 1000.0);
+            json.put("p95", latencies.getValueAtPercentile(95) / 1000.0);
+            json.put("p99", latencies.getValueAtPercentile(99) / 1000.0);
+            json.put("p999", latencies.getValueAtPercentile(99.9) / 1000.0);
+            json.put("max", latencies.getMaxValue() / 1000.0);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.hibernate.Session;
+import org.hibernate.engine.query.spi.HQLQueryPlan;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import uk.ac.newcastle.enterprisemiddleware.booking.Booking;
+import uk.ac.newcastle.enterprisemiddleware.customer.Customer;
+import uk.ac.newcastle.enterprisemiddleware.hotel.Hotel;
+import uk.ac.newcastle.enterprisemiddleware.travelAgent.TravelAgentSaga;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>Translates the lookup queries of the repositories to SQL and asks H2 how it would run them, failing if any of
+ * them would scan a whole table, or a whole index, instead of looking its rows up in an index.</p>
+ *
+ * <p>Named queries are taken from the entities; the criteria queries built by the repositories are written out here
+ * as the equivalent JPQL, so a change to a repository lookup has to be mirrored below.</p>
+ */
+@QuarkusTest
+@QuarkusTestResource(H2DatabaseTestResource.class)
+public class RepositoryQueryPlanTest {
+
+    /** How H2 shows a table read through an index by a condition, e.g. "PUBLIC.IDX_HOTEL_POSTCODE: POSTCODE = ?1". */
+    private static final Pattern INDEX_LOOKUP = Pattern.compile("/\\* PUBLIC\\.\\w+: ");
+
+    @Inject
+    EntityManager em;
+
+    static Stream<Arguments> lookups() {
+        return Stream.of(
+                Arguments.of("CustomerRepository.findByEmail", named(Customer.FIND_BY_EMAIL), new Object[]{"a@b.com"}),
+                Arguments.of("CustomerRepository.findByPhoneNumber",
+                        "SELECT c FROM Customer c WHERE c.phoneNumber = :phoneNumber", new Object[]{"(0201) 222-3333"}),
+                Arguments.of("CustomerRepository.findAllByFirstName",
+                        "SELECT c FROM Customer c WHERE c.firstName = :firstName", new Object[]{"Jane"}),
+                Arguments.of("CustomerRepository.findAllByLastName",
+                        "SELECT c FROM Customer c WHERE c.lastName = :lastName", new Object[]{"Doe"}),
+                Arguments.of("CustomerRepository.findByFilter",
+                        "SELECT c FROM Customer c WHERE c.lastName = :lastName AND c.id > :after ORDER BY c.id",
+                        new Object[]{"Doe", 100L}),
+                Arguments.of("HotelRepository.findByPhoneNumber", named(Hotel.FIND_BY_PHONE_NUMBER),
+                        new Object[]{"(0201) 222-3333"}),
+                Arguments.of("HotelRepository.findByHotelName",
+                        "SELECT h FROM Hotel h WHERE h.hotelName = :hotelName", new Object[]{"Grand"}),
+                Arguments.of("HotelRepository.findByPostcode",
+                        "SELECT h FROM Hotel h WHERE h.postcode = :postcode", new Object[]{"NE17RU"}),
+                Arguments.of("BookingRepository.findByHotelAndDate", named(Booking.FIND_BY_HOTEL_AND_DATE),
+                        new Object[]{1L, java.sql.Date.valueOf("2030-01-01")}),
+                Arguments.of("BookingRepository.findByHotelId",
+                        "SELECT b FROM Booking b WHERE b.hotelId = :hotelId", new Object[]{1L}),
+                Arguments.of("BookingRepository.findByCustomerId",
+                        "SELECT b FROM Booking b WHERE b.customerId = :customerId", new Object[]{1L}),
+                Arguments.of("BookingRepository.findByFilter",
+                        "SELECT b FROM Booking b LEFT JOIN FETCH b.travelAgentBooking"
+                                + " WHERE b.hotelId = :hotelId AND b.id > :after ORDER BY b.id",
+                        new Object[]{1L, 100L}),
+                Arguments.of("TravelAgentBookingRepository.findByHotelCustomerId",
+                        "SELECT t FROM TravelAgentBooking t WHERE t.hotelCustomerId = :id", new Object[]{1L}),
+                Arguments.of("TravelAgentBookingRepository.findByFlightCustomerId",
+                        "SELECT t FROM TravelAgentBooking t WHERE t.flightCustomerId = :id", new Object[]{1L}),
+                Arguments.of("TravelAgentBookingRepository.findByTaxiCustomerId",
+                        "SELECT t FROM TravelAgentBooking t WHERE t.taxiCustomerId = :id", new Object[]{1L}),
+                Arguments.of("TravelAgentBookingRepository.findByFilter",
+                        "SELECT t FROM TravelAgentBooking t LEFT JOIN FETCH t.booking"
+                                + " WHERE t.hotelCustomerId = :hotel AND t.flightCustomerId = :flight ORDER BY t.id",
+                        new Object[]{1L, 1L}),
+                Arguments.of("TravelAgentSagaRepository.findByStatus", named(TravelAgentSaga.FIND_BY_STATUS),
+                        new Object[]{"COMPENSATING"}),
+                Arguments.of("TravelAgentSagaRepository.findDue", named(TravelAgentSaga.FIND_DUE),
+                        new Object[]{"COMPENSATING", new Timestamp(System.currentTimeMillis())})
+        );
+    }
+
+    /**
+     * <p>Marks a lookup whose JPQL is the named query of that name, looked up when the test runs.</p>
+     */
+    static String named(String name) {
+        return "named:" + name;
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("lookups")
+    public void testLookupUsesIndex(String lookup, String query, Object[] parameters) {
+        String plan = explain(jpql(query), parameters);
+
+        assertFalse(plan.contains(".tableScan"), lookup + " scans a whole table:\n" + plan);
+        assertTrue(INDEX_LOOKUP.matcher(plan).find(), lookup + " reads no index by condition:\n" + plan);
+    }
+
+    private String jpql(String query) {
+        if (!query.startsWith("named:")) {
+            return query;
+        }
+        return em.createNamedQuery(query.substring("named:".length()))
+                .unwrap(org.hibernate.query.Query.class)
+                .getQueryString();
+    }
+
+    private String explain(String jpql, Object[] parameters) {
+        SessionFactoryImplementor sessionFactory = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+        String sql = new HQLQueryPlan(jpql, false, Collections.emptyMap(), sessionFactory).getSqlStrings()[0];
+        return em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        plan.append(rows.getString(1)).append('\n');
+                    }
+                }
+                return plan.toString();
+            }
+        });
+    }
+}
@@ -0,0 +1,143 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import java.util.Random;
+
+/**
+ * <p>How unhealthy an upstream stub pretends to be: how long it takes to answer and how often it fails.</p>
+ *
+ * <p>The latency is drawn from a distribution given as one of</p>
+ * <ul>
+ *     <li>{@code none}: answer straight away;</li>
+ *     <li>{@code fixed:<ms>}: always take that long;</li>
+ *     <li>{@code uniform:<min ms>:<max ms>}: anything between the two, equally likely;</li>
+ *     <li>{@code lognormal:<median ms>:<p99 ms>}: mostly around the median with a long tail, like real services.</li>
+ * </ul>
+ *
+ * <p>Each request fails with {@code errorStatus} with probability {@code errorRate}. Draws come from a seeded random
+ * generator, so a run with the same seed sees the same sequence of latencies and failures.</p>
+ *
+ * @author Howie
+ * @see UpstreamStubServer
+ */
+public class StubBehaviour {
+
+    /** How many standard deviations the 99th percentile of a normal distribution is above its median. */
+    private static final double Z_99 = 2.3263;
+
+    private final Random random;
+
+    private volatile String latency = "none";
+    private double median;
+    private double spread;
+    private char kind = 'n';
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+
+    public StubBehaviour(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * <p>Sets the latency distribution.</p>
+     *
+     * @param distribution The distribution, in the format described above
+     * @return This StubBehaviour
+     * @throws IllegalArgumentException If the distribution cannot be parsed
+     */
+    public StubBehaviour latency(String distribution) {
+        String[] parts = distribution.trim().split(":");
+        try {
+            switch (parts[0]) {
+                case "none":
+                    set('n', 0, 0);
+                    break;
+                case "fixed":
+                    set('f', Double.parseDouble(parts[1]), 0);
+                    break;
+                case "uniform":
+                    double min = Double.parseDouble(parts[1]);
+                    set('u', min, Double.parseDouble(parts[2]) - min);
+                    break;
+                case "lognormal":
+                    double p50 = Double.parseDouble(parts[1]);
+                    set('l', p50, Math.log(Double.parseDouble(parts[2]) / p50) / Z_99);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown latency distribution " + distribution);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid latency distribution " + distribution, e);
+        }
+        latency = distribution;
+        return this;
+    }
+
+    private synchronized void set(char kind, double median, double spread) {
+        this.kind = kind;
+        this.median = median;
+        this.spread = spread;
+    }
+
+    /**
+     * <p>Sets how often requests fail.</p>
+     *
+     * @param errorRate The probability, between 0 and 1, that a request fails
+     * @return This StubBehaviour
+     */
+    public StubBehaviour errorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1: " + errorRate);
+        }
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * <p>Sets the status of failed requests.</p>
+     *
+     * @param errorStatus The HTTP status, 503 by default
+     * @return This StubBehaviour
+     */
+    public StubBehaviour errorStatus(int errorStatus) {
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    /**
+     * <p>Draws the latency of the next request.</p>
+     *
+     * @return How long to wait before answering, in milliseconds
+     */
+    public synchronized long nextLatency() {
+        switch (kind) {
+            case 'f':
+                return Math.round(median);
+            case 'u':
+                return Math.round(median + random.nextDouble() * spread);
+            case 'l':
+                return Math.round(median * Math.exp(spread * random.nextGaussian()));
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * <p>Draws whether the next request fails.</p>
+     *
+     * @return The status to fail the request with; or 0 if it should be answered normally
+     */
+    public int nextError() {
+        double rate = errorRate;
+        if (rate <= 0) {
+            return 0;
+        }
+        synchronized (this) {
+            return random.nextDouble() < rate ? errorStatus : 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "latency=" + latency + ", error-rate=" + errorRate + ", error-status=" + errorStatus;
+    }
+}
@@ -0,0 +1,151 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Responses of the real upstream services, recorded by an {@link UpstreamStubServer} in record mode and served
+ * again in replay mode.</p>
+ *
+ * <p>Responses are keyed by API, method, path and request body, and saved as a JSON file that can be checked in, so
+ * a benchmark replays exactly what the real services answered.</p>
+ *
+ * @author Howie
+ */
+public class StubRecording {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Path file;
+
+    private final Map<String, Response> responses = new TreeMap<>();
+
+    private StubRecording(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * <p>Loads a recording, or starts an empty one if the file does not exist yet.</p>
+     *
+     * @param file The recording file
+     * @return The StubRecording
+     */
+    public static StubRecording load(Path file) {
+        StubRecording recording = new StubRecording(file);
+        if (Files.exists(file)) {
+            try {
+                recording.responses.putAll(MAPPER.readValue(file.toFile(), new TypeReference<Map<String, Response>>() {}));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read recording " + file, e);
+            }
+        }
+        return recording;
+    }
+
+    /**
+     * <p>Returns the key a request is recorded under.</p>
+     *
+     * @param api The API the request was sent to, e.g. "flight"
+     * @param method The HTTP method
+     * @param path The path and query below the API
+     * @param body The request body; or an empty string
+     * @return The key
+     */
+    public static String key(String api, String method, String path, String body) {
+        return api + ' ' + method + ' ' + path + (body.isEmpty() ? "" : ' ' + body);
+    }
+
+    /**
+     * <p>Returns the recorded response to a request.</p>
+     *
+     * @param key The key of the request
+     * @return The recorded Response; or null if the request has not been recorded
+     */
+    public synchronized Response find(String key) {
+        return responses.get(key);
+    }
+
+    /**
+     * <p>Records the response to a request, replacing any earlier one.</p>
+     *
+     * @param key The key of the request
+     * @param response The Response of the real service
+     */
+    public synchronized void record(String key, Response response) {
+        responses.put(key, response);
+    }
+
+    /**
+     * <p>Returns the number of recorded responses.</p>
+     *
+     * @return The number of recorded responses
+     */
+    public synchronized int size() {
+        return responses.size();
+    }
+
+    /**
+     * <p>Writes the recording to its file.</p>
+     */
+    public synchronized void save() {
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            MAPPER.writeValue(file.toFile(), responses);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write recording " + file, e);
+        }
+    }
+
+    /**
+     * <p>A recorded response.</p>
+     */
+    public static class Response {
+
+        private int status;
+        private String contentType;
+        private String body;
+
+        public Response() {
+        }
+
+        public Response(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public void setContentType(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        public void setBody(String body) {
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.common.ResourceArg;
+import io.quarkus.test.common.http.TestHTTPResource;
+import io.quarkus.test.h2.H2DatabaseTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * <p>Drives a realistic mix of customer, hotel, booking, guest booking and travel agent traffic through
+ * {@link LoadTestHarness} and writes a report with the throughput and p50/p95/p99/p99.9 latency of each operation.</p>
+ *
+ * <p>The flight, taxi and area APIs are served by local stubs with long-tailed latencies. Excluded from the default
+ * build; run it with {@code mvn test -Pload-test} and these optional
+ * system properties:</p>
+ * <ul>
+ *     <li>{@code load.concurrency}: concurrent clients, 16 by default;</li>
+ *     <li>{@code load.warmup} and {@code load.duration}: ISO-8601 durations, PT10S and PT30S by default;</li>
+ *     <li>{@code load.mix}: weights by operation, e.g. {@code customers-create=0,travelAgent-create=50};</li>
+ *     <li>{@code load.base-url}: an application that is already running, instead of the test instance;</li>
+ *     <li>{@code load.report}: where to write the report, {@code target/load-test-report.json} by default;</li>
+ *     <li>{@code load.baseline}: an earlier report to compare with.</li>
+ * </ul>
+ */
+@QuarkusTest
+@Tag("load")
+@QuarkusTestResource(value = H2DatabaseTestResource.class, restrictToAnnotatedClass = true)
+@QuarkusTestResource(value = UpstreamStubResource.class, restrictToAnnotatedClass = true, initArgs = {
+        @ResourceArg(name = "upstream-stub.flight.latency", value = "lognormal:15:120"),
+        @ResourceArg(name = "upstream-stub.taxi.latency", value = "lognormal:15:120"),
+        @ResourceArg(name = "upstream-stub.area.latency", value = "lognormal:5:40")
+})
+public class TrafficMixLoadTest {
+
+    private static final int HOTELS = 20;
+
+    private static final int CUSTOMERS = 100;
+
+    private static final Map<String, Integer> DEFAULT_MIX = Map.of(
+            "customers-create", 10,
+            "customers-get", 20,
+            "hotels-list", 5,
+            "hotels-get", 15,
+            "bookings-create", 20,
+            "guestBooking-create", 15,
+            "travelAgent-create", 15);
+
+    @TestHTTPResource("/")
+    URI testUri;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final List<Long> hotelIds = new ArrayList<>();
+
+    private final List<Long> customerIds = new ArrayList<>();
+
+    /** The next free booking day of each hotel, so concurrent bookings never ask for the same hotel and date. */
+    private final Map<Long, AtomicLong> nextDay = new HashMap<>();
+
+    @Test
+    public void runTrafficMix() throws Exception {
+        String baseUrl = System.getProperty("load.base-url");
+        LoadTestHarness harness = new LoadTestHarness(baseUrl == null ? testUri : URI.create(baseUrl + "/"),
+                Integer.getInteger("load.concurrency", 16),
+                Duration.parse(System.getProperty("load.warmup", "PT10S")),
+                Duration.parse(System.getProperty("load.duration", "PT30S")));
+
+        long run = System.currentTimeMillis() % 100_000;
+        for (int i = 0; i < HOTELS; i++) {
+            Map<String, Object> hotel = new HashMap<>();
+            hotel.put("hotelName", "Load Inn " + i);
+            hotel.put("phoneNumber", phoneNumber(run * 100 + i));
+            hotel.put("postcode", "NE17RU");
+            long id = harness.send("POST", "hotels", hotel).path("id").asLong();
+            hotelIds.add(id);
+            nextDay.put(id, new AtomicLong());
+        }
+        for (int i = 0; i < CUSTOMERS; i++) {
+            customerIds.add(harness.send("POST", "customers", customer(run + "-seed-" + i)).path("id").asLong());
+        }
+
+        Map<String, Integer> mix = mix();
+        harness.add("POST /customers", mix.get("customers-create"), 201, "POST",
+                        random -> "customers", random -> customer(run + "-" + sequence.incrementAndGet())).
+                add("GET /customers/id/{id}", mix.get("customers-get"), 200, "GET",
+                        random -> "customers/id/" + pick(customerIds, random.nextInt()), random -> null).
+                add("GET /hotels", mix.get("hotels-list"), 200, "GET",
+                        random -> "hotels", random -> null).
+                add("GET /hotels/id/{id}", mix.get("hotels-get"), 200, "GET",
+                        random -> "hotels/id/" + pick(hotelIds, random.nextInt()), random -> null).
+                add("POST /bookings/createBooking", mix.get("bookings-create"), 201, "POST",
+                        random -> "bookings/createBooking", random -> {
+                            long hotelId = pick(hotelIds, random.nextInt());
+                            Map<String, Object> booking = new HashMap<>();
+                            booking.put("hotelId", hotelId);
+                            booking.put("customerId", pick(customerIds, random.nextInt()));
+                            booking.put("bookingDate", nextDate(hotelId));
+                            return booking;
+                        }).
+                add("POST /guestBooking", mix.get("guestBooking-create"), 201, "POST",
+                        random -> "guestBooking", random -> {
+                            long hotelId = pick(hotelIds, random.nextInt());
+                            Map<String, Object> guestBooking = customer(run + "-" + sequence.incrementAndGet());
+                            guestBooking.put("hotelId", hotelId);
+                            guestBooking.put("bookingDate", nextDate(hotelId));
+                            return guestBooking;
+                        }).
+                add("POST /travelAgent", mix.get("travelAgent-create"), 201, "POST",
+                        random -> "travelAgent", random -> {
+                            long hotelId = pick(hotelIds, random.nextInt());
+                            String date = nextDate(hotelId);
+                            Map<String, Object> travelAgent = customer(run + "-" + sequence.incrementAndGet());
+                            travelAgent.put("birthDate", "1990-01-01");
+                            travelAgent.put("hotelId", hotelId);
+                            travelAgent.put("hotelBookingDate", date);
+                            travelAgent.put("flightBookingDate", date);
+                            travelAgent.put("taxiId", 1L);
+                            travelAgent.put("taxiBookingDate", date);
+                            return travelAgent;
+                        });
+
+        ObjectNode report = harness.run();
+        Path reportFile = Paths.get(System.getProperty("load.report", "target/load-test-report.json"));
+        LoadTestHarness.write(report, reportFile);
+        System.out.println("TrafficMixLoadTest report written to " + reportFile.toAbsolutePath());
+        System.out.print(LoadTestHarness.summary(report));
+
+        String baseline = System.getProperty("load.baseline");
+        if (baseline != null && Files.exists(Paths.get(baseline))) {
+            System.out.println("Change from " + baseline + ":");
+            System.out.print(LoadTestHarness.compare(new ObjectMapper().readTree(Paths.get(baseline).toFile()), report));
+        }
+
+        assertTrue(report.path("total").path("requests").asLong() > 0, "No requests were measured");
+    }
+
+    private static Map<String, Integer> mix() {
+        Map<String, Integer> mix = new HashMap<>(DEFAULT_MIX);
+        String override = System.getProperty("load.mix", "");
+        for (String entry : override.split(",")) {
+            if (!entry.isBlank()) {
+                String[] weight = entry.split("=");
+                if (!mix.containsKey(weight[0].trim())) {
+                    throw new IllegalArgumentException("Unknown operation " + weight[0] + " in load.mix");
+                }
+                mix.put(weight[0].trim(), Integer.parseInt(weight[1].trim()));
+            }
+        }
+        return mix;
+    }
+
+    private String nextDate(long hotelId) {
+        return LocalDate.now().plusDays(1 + nextDay.get(hotelId).getAndIncrement()).toString();
+    }
+
+    private static long pick(List<Long> ids, int random) {
+        return ids.get(Math.floorMod(random, ids.size()));
+    }
+
+    private static Map<String, Object> customer(String suffix) {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("firstName", "Load");
+        customer.put("lastName", "Tester");
+        customer.put("email", "load" + suffix + "@load.test");
+        customer.put("phoneNumber", "(0783)344-5434");
+        return customer;
+    }
+
+    private static String phoneNumber(long n) {
+        return String.format("(0783)%03d-%04d", n / 10_000 % 1000, n % 10_000);
+    }
+}
@@ -0,0 +1,119 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import io.quarkus.test.common.QuarkusTestResourceLifecycleManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Starts an {@link UpstreamStubServer} standing in for the flight, taxi and area APIs, and points the
+ * {@code flight-api}, {@code taxi-api} and {@code area-api} REST clients at it.</p>
+ *
+ * <p>The server takes its {@code upstream-stub.*} settings from the init args of the resource and from system
+ * properties, e.g. {@code -Dupstream-stub.taxi.latency=lognormal:20:200}. The static methods let a test look at and
+ * change the running stubs.</p>
+ *
+ * @author Howie
+ */
+public class UpstreamStubResource implements QuarkusTestResourceLifecycleManager {
+
+    /** Taxi id for which the taxi stub refuses every booking with a 400 response. */
+    public static final long REJECTED_ID = UpstreamStubServer.REJECTED_ID;
+
+    private static volatile UpstreamStubServer server;
+
+    private final Map<String, String> settings = new HashMap<>();
+
+    @Override
+    public void init(Map<String, String> initArgs) {
+        settings.putAll(initArgs);
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("upstream-stub."))
+                .forEach(name -> settings.put(name, System.getProperty(name)));
+    }
+
+    @Override
+    public Map<String, String> start() {
+        server = new UpstreamStubServer(settings).start();
+        return server.clientConfig();
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * <p>Returns how many times a stub has been asked for the customer with the given email.</p>
+     *
+     * @param api Either "flight" or "taxi"
+     * @param email The email that was looked up
+     * @return The number of lookups received
+     */
+    public static int lookups(String api, String email) {
+        return server.lookups(api, email);
+    }
+
+    /**
+     * <p>Returns the ids of the bookings a stub has been asked to cancel.</p>
+     *
+     * @param api Either "flight" or "taxi"
+     * @return The cancelled booking ids
+     */
+    public static Set<Long> cancelled(String api) {
+        return server.cancelled(api);
+    }
+
+    /**
+     * <p>Makes the next cancellations of a stub fail with a 503 response.</p>
+     *
+     * @param api Either "flight" or "taxi"
+     * @param count The number of cancellations to fail
+     */
+    public static void failCancellations(String api, int count) {
+        server.failCancellations(api, count);
+    }
+
+    /**
+     * <p>Returns how many requests a stub has received.</p>
+     *
+     * @param api Either "flight", "taxi" or "area"
+     * @return The number of requests received
+     */
+    public static int requests(String api) {
+        return server.requests(api);
+    }
+
+    /**
+     * <p>Makes a stub wait before answering each request.</p>
+     *
+     * @param api Either "flight", "taxi" or "area"
+     * @param millis How long to wait; or 0 to answer straight away
+     */
+    public static void delay(String api, long millis) {
+        server.behaviour(api).latency(millis > 0 ? "fixed:" + millis : "none");
+    }
+
+    /**
+     * <p>Makes a stub answer every request with a 503 response, or stops it doing so.</p>
+     *
+     * @param api Either "flight", "taxi" or "area"
+     * @param failing Whether to fail every request
+     */
+    public static void failRequests(String api, boolean failing) {
+        server.behaviour(api).errorRate(failing ? 1 : 0);
+    }
+
+    /**
+     * <p>Returns the behaviour of a stub, to give it a latency distribution or error rate.</p>
+     *
+     * @param api Either "flight", "taxi" or "area"
+     * @return Its StubBehaviour
+     */
+    public static StubBehaviour behaviour(String api) {
+        return server.behaviour(api);
+    }
+}
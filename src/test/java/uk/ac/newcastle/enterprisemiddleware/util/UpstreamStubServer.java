@@ -0,0 +1,476 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>In-process HTTP server standing in for the flight, taxi and area APIs, so the application can be tested and
+ * benchmarked on one machine without the public services.</p>
+ *
+ * <p>Each API is served below its own path, {@code /flight}, {@code /taxi} and {@code /area}, and implements the
+ * contract of {@code FlightService}, {@code TaxiService} and {@code AreaService}: customers created through guest
+ * bookings can be looked up by email, bookings get increasing ids and can be cancelled, and the area codes are those
+ * of {@code area-codes.json}. Taxi bookings for {@link #REJECTED_ID} are refused.</p>
+ *
+ * <p>The server is configured with {@code upstream-stub.*} settings:</p>
+ * <ul>
+ *     <li>{@code port}: the port to listen on, 0 for any free port;</li>
+ *     <li>{@code threads}: how many requests are served at the same time, 64 by default;</li>
+ *     <li>{@code seed}: seeds the latency and error draws, see {@link StubBehaviour};</li>
+ *     <li>{@code <api>.latency}, {@code <api>.error-rate} and {@code <api>.error-status}: how unhealthy an API is;</li>
+ *     <li>{@code mode}: {@code stub} to answer from the built-in contracts, {@code record} to forward every request to
+ *     {@code <api>.target} and record the responses in the {@code recording} file, or {@code replay} to answer from
+ *     that file, falling back to the built-in contracts for requests that were not recorded.</li>
+ * </ul>
+ *
+ * <p>Run {@link #main} to start a server on its own, e.g. for {@code quarkus:dev} with the {@code stub} profile.</p>
+ *
+ * @author Howie
+ * @see UpstreamStubResource
+ */
+public class UpstreamStubServer {
+
+    /** Taxi id for which the taxi stub refuses every booking with a 400 response. */
+    public static final long REJECTED_ID = 999L;
+
+    public static final List<String> APIS = List.of("flight", "taxi", "area");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String PREFIX = "upstream-stub.";
+
+    private final Map<String, String> settings;
+    private final String mode;
+    private final StubRecording recording;
+    private final HttpClient forwarder;
+
+    private final Map<String, StubBehaviour> behaviours = new HashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> cancelled = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failingCancellations = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param settings The {@code upstream-stub.*} settings; any others are ignored
+     */
+    public UpstreamStubServer(Map<String, String> settings) {
+        this.settings = settings;
+        this.mode = setting("mode", "stub");
+        if (!List.of("stub", "record", "replay").contains(mode)) {
+            throw new IllegalArgumentException("Unknown " + PREFIX + "mode " + mode);
+        }
+        this.recording = mode.equals("stub") ? null
+                : StubRecording.load(Paths.get(setting("recording", "target/upstream-recording.json")));
+        this.forwarder = mode.equals("record")
+                ? HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build() : null;
+
+        long seed = Long.parseLong(setting("seed", "42"));
+        for (String api : APIS) {
+            behaviours.put(api, new StubBehaviour(seed + api.hashCode())
+                    .latency(setting(api + ".latency", "none"))
+                    .errorRate(Double.parseDouble(setting(api + ".error-rate", "0")))
+                    .errorStatus(Integer.parseInt(setting(api + ".error-status", "503"))));
+        }
+    }
+
+    private String setting(String name, String defaultValue) {
+        return settings.getOrDefault(PREFIX + name, defaultValue);
+    }
+
+    /**
+     * <p>Starts the server.</p>
+     *
+     * @return This UpstreamStubServer
+     */
+    public UpstreamStubServer start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("localhost", Integer.parseInt(setting("port", "0"))), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start upstream stub server", e);
+        }
+        server.createContext("/flight", new ApiHandler("flight",
+                new BookingApiStub("flight", "/contacts/email/", "/guest_bookings", "contactId")));
+        server.createContext("/taxi", new ApiHandler("taxi",
+                new BookingApiStub("taxi", "/customers/email/", "/guestBookings", "customerId")));
+        server.createContext("/area", new ApiHandler("area", new AreaApiStub()));
+        executor = Executors.newFixedThreadPool(Integer.parseInt(setting("threads", "64")));
+        server.setExecutor(executor);
+        server.start();
+        return this;
+    }
+
+    /**
+     * <p>Stops the server, saving the recording in record mode.</p>
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+        if (mode.equals("record")) {
+            recording.save();
+        }
+    }
+
+    /**
+     * <p>Returns the base URL of an API, as the REST client of that API expects it.</p>
+     *
+     * @param api One of {@link #APIS}
+     * @return The base URL, ending with a slash
+     */
+    public String url(String api) {
+        return "http://localhost:" + server.getAddress().getPort() + "/" + api + "/";
+    }
+
+    /**
+     * <p>Returns the settings that point the application's REST clients at this server.</p>
+     *
+     * @return The {@code quarkus.rest-client.<api>-api.url} settings
+     */
+    public Map<String, String> clientConfig() {
+        Map<String, String> config = new LinkedHashMap<>();
+        for (String api : APIS) {
+            config.put("quarkus.rest-client." + api + "-api.url", url(api));
+        }
+        return config;
+    }
+
+    /**
+     * <p>Returns the behaviour of an API, which can be changed while the server runs.</p>
+     *
+     * @param api One of {@link #APIS}
+     * @return Its StubBehaviour
+     */
+    public StubBehaviour behaviour(String api) {
+        return behaviours.get(api);
+    }
+
+    /**
+     * <p>Returns how many requests an API has received.</p>
+     *
+     * @param api One of {@link #APIS}
+     * @return The number of requests received
+     */
+    public int requests(String api) {
+        AtomicInteger count = requests.get(api);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * <p>Returns how many times an API has been asked for the customer with the given email.</p>
+     *
+     * @param api Either "flight" or "taxi"
+     * @param email The email that was looked up
+     * @return The number of lookups received
+     */
+    public int lookups(String api, String email) {
+        AtomicInteger count = lookups.get(api + email);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * <p>Returns the ids of the bookings an API has been asked to cancel.</p>
+     *
+     * @param api Either "flight" or "taxi"
+     * @return The cancelled booking ids
+     */
+    public Set<Long> cancelled(String api) {
+        return cancelled.computeIfAbsent(api, key -> ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * <p>Makes the next cancellations of an API fail with a 503 response.</p>
+     *
+     * @param api Either "flight" or "taxi"
+     * @param count The number of cancellations to fail
+     */
+    public void failCancellations(String api, int count) {
+        failingCancellations.computeIfAbsent(api, key -> new AtomicInteger()).set(count);
+    }
+
+    /**
+     * <p>Starts a server configured by the {@code upstream-stub.*} system properties, listening on port 8089 unless
+     * told otherwise, and runs it until the JVM is stopped.</p>
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(PREFIX + "port", "8089");
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PREFIX))
+                .forEach(name -> settings.put(name, System.getProperty(name)));
+
+        UpstreamStubServer stub = new UpstreamStubServer(settings).start();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            stub.stop();
+            stopped.countDown();
+        }));
+
+        System.out.println("Upstream stub server running in " + stub.mode + " mode. Point the application at it with:");
+        stub.clientConfig().forEach((name, value) -> System.out.println("  " + name + "=" + value));
+        for (String api : APIS) {
+            System.out.println("  " + api + ": " + stub.behaviour(api));
+        }
+        stopped.await();
+    }
+
+    /**
+     * <p>Serves one API: counts the request, applies the latency and error rate of the API, then answers from the
+     * recording or the built-in contract.</p>
+     */
+    private final class ApiHandler implements HttpHandler {
+
+        private final String api;
+        private final Route stub;
+
+        ApiHandler(String api, Route stub) {
+            this.api = api;
+            this.stub = stub;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            requests.computeIfAbsent(api, key -> new AtomicInteger()).incrementAndGet();
+            try {
+                StubBehaviour behaviour = behaviours.get(api);
+                long latency = behaviour.nextLatency();
+                if (latency > 0) {
+                    Thread.sleep(latency);
+                }
+                int error = behaviour.nextError();
+                if (error != 0) {
+                    respond(exchange, error, null);
+                    return;
+                }
+
+                String path = exchange.getRequestURI().getPath().substring(api.length() + 1);
+                String query = exchange.getRequestURI().getRawQuery();
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                String key = StubRecording.key(api, exchange.getRequestMethod(),
+                        query == null ? path : path + "?" + query, body);
+
+                if (mode.equals("record")) {
+                    StubRecording.Response response = forward(exchange, query == null ? path : path + "?" + query, body);
+                    recording.record(key, response);
+                    respond(exchange, response);
+                    return;
+                }
+                if (mode.equals("replay")) {
+                    StubRecording.Response response = recording.find(key);
+                    if (response != null) {
+                        respond(exchange, response);
+                        return;
+                    }
+                }
+                stub.route(exchange, path, body);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                respond(exchange, 503, null);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                respond(exchange, 500, null);
+            }
+        }
+
+        private StubRecording.Response forward(HttpExchange exchange, String path, String body)
+                throws IOException, InterruptedException {
+            String target = settings.get(PREFIX + api + ".target");
+            if (target == null) {
+                throw new IllegalStateException(PREFIX + api + ".target is needed to record the " + api + " API");
+            }
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(target.replaceAll("/$", "") + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .method(exchange.getRequestMethod(), body.isEmpty()
+                            ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null) {
+                request.header("Content-Type", contentType);
+            }
+            HttpResponse<String> response = forwarder.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            return new StubRecording.Response(response.statusCode(),
+                    response.headers().firstValue("Content-Type").orElse(null), response.body());
+        }
+    }
+
+    /**
+     * <p>The built-in contract of an API.</p>
+     */
+    private interface Route {
+        void route(HttpExchange exchange, String path, String body) throws IOException;
+    }
+
+    /**
+     * <p>Minimal implementation of the booking API contract shared by the flight and taxi services.</p>
+     */
+    private final class BookingApiStub implements Route {
+
+        private final String api;
+        private final String customerLookupPath;
+        private final String guestBookingPath;
+        private final String customerIdField;
+
+        private final Map<String, Long> customerIds = new ConcurrentHashMap<>();
+        private final AtomicLong customerSequence = new AtomicLong();
+        private final AtomicLong bookingSequence = new AtomicLong();
+
+        BookingApiStub(String api, String customerLookupPath, String guestBookingPath, String customerIdField) {
+            this.api = api;
+            this.customerLookupPath = customerLookupPath;
+            this.guestBookingPath = guestBookingPath;
+            this.customerIdField = customerIdField;
+        }
+
+        @Override
+        public void route(HttpExchange exchange, String path, String body) throws IOException {
+            String method = exchange.getRequestMethod();
+
+            if ("GET".equals(method) && path.startsWith(customerLookupPath)) {
+                String email = path.substring(customerLookupPath.length());
+                lookups.computeIfAbsent(api + email, key -> new AtomicInteger()).incrementAndGet();
+                Long id = customerIds.get(email);
+                if (id == null) {
+                    respond(exchange, 404, null);
+                    return;
+                }
+                ObjectNode customer = MAPPER.createObjectNode();
+                customer.put("id", id);
+                customer.put("email", email);
+                respond(exchange, 200, customer);
+            } else if ("POST".equals(method) && path.equals(guestBookingPath)) {
+                ObjectNode guestBooking = (ObjectNode) MAPPER.readTree(body);
+                if (rejected(guestBooking)) {
+                    respond(exchange, 400, null);
+                    return;
+                }
+                long customerId = customerIds.computeIfAbsent(guestBooking.get("email").asText(),
+                        email -> customerSequence.incrementAndGet());
+                guestBooking.remove(List.of("firstName", "lastName", "email", "phoneNumber", "birthDate"));
+                guestBooking.put("id", bookingSequence.incrementAndGet());
+                guestBooking.put(customerIdField, customerId);
+                respond(exchange, 201, guestBooking);
+            } else if ("POST".equals(method) && path.equals("/bookings")) {
+                ObjectNode booking = (ObjectNode) MAPPER.readTree(body);
+                if (rejected(booking)) {
+                    respond(exchange, 400, null);
+                    return;
+                }
+                booking.put("id", bookingSequence.incrementAndGet());
+                respond(exchange, 201, booking);
+            } else if ("DELETE".equals(method) && path.startsWith("/bookings/")) {
+                AtomicInteger failing = failingCancellations.get(api);
+                if (failing != null && failing.getAndUpdate(n -> Math.max(n - 1, 0)) > 0) {
+                    respond(exchange, 503, null);
+                    return;
+                }
+                cancelled(api).add(Long.valueOf(path.substring("/bookings/".length())));
+                respond(exchange, 204, null);
+            } else {
+                respond(exchange, 404, null);
+            }
+        }
+
+        private boolean rejected(ObjectNode booking) {
+            return booking.path("taxiId").asLong() == REJECTED_ID;
+        }
+    }
+
+    /**
+     * <p>Implementation of the area API contract, serving the area codes of {@code area-codes.json}.</p>
+     */
+    private static final class AreaApiStub implements Route {
+
+        private final ArrayNode areas;
+
+        AreaApiStub() {
+            try (InputStream in = UpstreamStubServer.class.getResourceAsStream("/area-codes.json")) {
+                areas = in == null ? MAPPER.createArrayNode() : (ArrayNode) MAPPER.readTree(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read area-codes.json", e);
+            }
+        }
+
+        @Override
+        public void route(HttpExchange exchange, String path, String body) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, null);
+            } else if (path.equals("/areas")) {
+                respond(exchange, 200, areas);
+            } else if (path.matches("/areas/[0-9]+")) {
+                int id = Integer.parseInt(path.substring("/areas/".length()));
+                for (JsonNode area : areas) {
+                    if (area.path("id").asInt() == id) {
+                        respond(exchange, 200, area);
+                        return;
+                    }
+                }
+                respond(exchange, 404, null);
+            } else {
+                respond(exchange, 404, null);
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, StubRecording.Response response) throws IOException {
+        byte[] bytes = response.getBody() == null ? new byte[0] : response.getBody().getBytes(StandardCharsets.UTF_8);
+        if (response.getContentType() != null) {
+            exchange.getResponseHeaders().add("Content-Type", response.getContentType());
+        }
+        send(exchange, response.getStatus(), bytes);
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        if (body == null) {
+            send(exchange, status, new byte[0]);
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        send(exchange, status, MAPPER.writeValueAsBytes(body));
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] bytes) throws IOException {
+        // the JDK server drops idle keep-alive connections without warning, so never let the client reuse one
+        exchange.getResponseHeaders().add("Connection", "close");
+        if (bytes.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package uk.ac.newcastle.enterprisemiddleware.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UpstreamStubServerTest {
+
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRecordedResponsesAreReplayed() throws Exception {
+        Path file = tempDir.resolve("recording.json");
+        String guestBooking = "{\"email\":\"record@replay.test\",\"taxiId\":1,\"bookingDate\":\"2030-01-01\"}";
+
+        UpstreamStubServer upstream = new UpstreamStubServer(new HashMap<>()).start();
+        String recorded;
+        try {
+            Map<String, String> settings = new HashMap<>();
+            settings.put("upstream-stub.mode", "record");
+            settings.put("upstream-stub.recording", file.toString());
+            settings.put("upstream-stub.taxi.target", upstream.url("taxi"));
+            UpstreamStubServer recorder = new UpstreamStubServer(settings).start();
+            try {
+                recorded = post(recorder.url("taxi") + "guestBookings", guestBooking).body();
+                assertEquals(1, upstream.requests("taxi"));
+            } finally {
+                recorder.stop();
+            }
+        } finally {
+            upstream.stop();
+        }
+
+        Map<String, String> settings = new HashMap<>();
+        settings.put("upstream-stub.mode", "replay");
+        settings.put("upstream-stub.recording", file.toString());
+        UpstreamStubServer replayer = new UpstreamStubServer(settings).start();
+        try {
+            // the built-in stub would hand out a new booking id; the replay answers with the recorded one
+            post(replayer.url("taxi") + "guestBookings", "{\"email\":\"other@replay.test\"}");
+            HttpResponse<String> replayed = post(replayer.url("taxi") + "guestBookings", guestBooking);
+            assertEquals(201, replayed.statusCode());
+            assertEquals(recorded, replayed.body());
+        } finally {
+            replayer.stop();
+        }
+    }
+
+    @Test
+    public void testErrorRateAndLatencyAreApplied() throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        settings.put("upstream-stub.area.error-rate", "0.5");
+        settings.put("upstream-stub.area.latency", "uniform:5:15");
+        UpstreamStubServer stub = new UpstreamStubServer(settings).start();
+        try {
+            int failures = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < 40; i++) {
+                HttpResponse<String> response = CLIENT.send(HttpRequest.newBuilder(URI.create(stub.url("area") + "areas/201")).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 503) {
+                    failures++;
+                } else {
+                    assertEquals(200, response.statusCode());
+                }
+            }
+            assertTrue(failures > 5 && failures < 35, "Unexpected number of failures " + failures);
+            assertTrue(System.nanoTime() - start >= 40 * 5_000_000L, "Latency was not applied");
+        } finally {
+            stub.stop();
+        }
+    }
+
+    private static HttpResponse<String> post(String url, String body) throws IOException, InterruptedException {
+        return CLIENT.send(HttpRequest.newBuilder(URI.create(url))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}